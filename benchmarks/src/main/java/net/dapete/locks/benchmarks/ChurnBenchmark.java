@@ -0,0 +1,50 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedLocks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/// Threads locking a new key for every operation, so each operation creates a new lock, and the locks which are no longer used have to be removed after
+/// garbage collections. This measures the cost of creating locks and of the cleanup.
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx512m"})
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChurnBenchmark {
+
+    @Param
+    public LocksImplementation implementation;
+
+    private KeyedLocks<Integer, ? extends Lock> locks;
+
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        locks = implementation.create();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        int next;
+
+        @Setup
+        public void setup(ChurnBenchmark benchmark) {
+            // every thread uses its own range of keys
+            next = benchmark.nextThread.getAndIncrement() << 28;
+        }
+
+    }
+
+    @Benchmark
+    public void lockUnlockNewKey(ThreadKeys threadKeys) {
+        locks.lock(threadKeys.next++).unlock();
+    }
+
+}
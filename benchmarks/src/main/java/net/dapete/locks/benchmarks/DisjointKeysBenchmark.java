@@ -0,0 +1,49 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedLocks;
+import net.dapete.locks.Locks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/// Many threads sharing one [Locks] instance, but each of them using its own key, so they never wait for each other's locks.
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DisjointKeysBenchmark {
+
+    @Param
+    public LocksImplementation implementation;
+
+    private KeyedLocks<Integer, ? extends Lock> locks;
+
+    private final AtomicInteger nextKey = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        locks = implementation.create();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+
+        Integer key;
+
+        @Setup
+        public void setup(DisjointKeysBenchmark benchmark) {
+            key = benchmark.nextKey.getAndIncrement();
+        }
+
+    }
+
+    @Benchmark
+    public void lockUnlock(ThreadKey threadKey) {
+        locks.lock(threadKey.key).unlock();
+    }
+
+}
@@ -0,0 +1,45 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedLocks;
+import net.dapete.locks.Locks;
+
+import java.util.concurrent.locks.Lock;
+
+/// The [Locks] implementations compared by the benchmarks.
+public enum LocksImplementation {
+
+    /// [Locks#reentrant()].
+    REENTRANT {
+        @Override
+        KeyedLocks<Integer, ? extends Lock> create() {
+            return Locks.reentrant();
+        }
+    },
+
+    /// [Locks#reentrant(boolean, int)] with 16 segments.
+    SEGMENTED {
+        @Override
+        KeyedLocks<Integer, ? extends Lock> create() {
+            return Locks.reentrant(false, 16);
+        }
+    },
+
+    /// [Locks#striped(int)] with 1024 stripes.
+    STRIPED {
+        @Override
+        KeyedLocks<Integer, ? extends Lock> create() {
+            return Locks.striped(1024);
+        }
+    },
+
+    /// [Locks#virtualThreadFriendly()].
+    VIRTUAL_THREAD_FRIENDLY {
+        @Override
+        KeyedLocks<Integer, ? extends Lock> create() {
+            return Locks.virtualThreadFriendly();
+        }
+    };
+
+    abstract KeyedLocks<Integer, ? extends Lock> create();
+
+}
@@ -0,0 +1,44 @@
+package net.dapete.locks.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/// Runs the benchmarks. Accepts the same command line options as the JMH runner.
+///
+/// Unless a benchmark mode is specified on the command line, every benchmark is run twice: once measuring the throughput in operations per second, and
+/// once sampling the time per operation in nanoseconds, which reports percentiles of the latency.
+public final class Main {
+
+    private Main() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        final var commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList() || commandLineOptions.shouldListProfilers()
+                || commandLineOptions.shouldListResultFormats() || commandLineOptions.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        if (!commandLineOptions.getBenchModes().isEmpty()) {
+            new Runner(commandLineOptions).run();
+            return;
+        }
+
+        new Runner(options(commandLineOptions).mode(Mode.Throughput).timeUnit(TimeUnit.SECONDS).build()).run();
+        new Runner(options(commandLineOptions).mode(Mode.SampleTime).timeUnit(TimeUnit.NANOSECONDS).build()).run();
+    }
+
+    private static ChainedOptionsBuilder options(CommandLineOptions commandLineOptions) {
+        return new OptionsBuilder().parent(commandLineOptions);
+    }
+
+}
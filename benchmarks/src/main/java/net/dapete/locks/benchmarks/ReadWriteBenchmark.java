@@ -0,0 +1,60 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedReadWriteLocks;
+import net.dapete.locks.ReadWriteLocks;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/// A read-heavy mix on [ReadWriteLocks]: seven threads taking read locks and one thread taking write locks on random keys out of a small set.
+@State(Scope.Group)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReadWriteBenchmark {
+
+    @Param
+    public ReadWriteLocksImplementation implementation;
+
+    @Param({"16"})
+    public int keys;
+
+    @Param({"10"})
+    public int work;
+
+    private KeyedReadWriteLocks<Integer, ? extends ReadWriteLock> locks;
+
+    @Setup
+    public void setup() {
+        locks = implementation.create();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(7)
+    public void read() {
+        final var lock = locks.readLock(ThreadLocalRandom.current().nextInt(keys));
+        try {
+            Blackhole.consumeCPU(work);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public void write() {
+        final var lock = locks.writeLock(ThreadLocalRandom.current().nextInt(keys));
+        try {
+            Blackhole.consumeCPU(work);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedReadWriteLocks;
+import net.dapete.locks.ReadWriteLocks;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+/// The [ReadWriteLocks] implementations compared by the benchmarks.
+public enum ReadWriteLocksImplementation {
+
+    /// [ReadWriteLocks#reentrant()].
+    REENTRANT {
+        @Override
+        KeyedReadWriteLocks<Integer, ? extends ReadWriteLock> create() {
+            return ReadWriteLocks.reentrant();
+        }
+    },
+
+    /// [ReadWriteLocks#reentrant(boolean, int)] with 16 segments.
+    SEGMENTED {
+        @Override
+        KeyedReadWriteLocks<Integer, ? extends ReadWriteLock> create() {
+            return ReadWriteLocks.reentrant(false, 16);
+        }
+    },
+
+    /// [ReadWriteLocks#striped(int)] with 1024 stripes.
+    STRIPED {
+        @Override
+        KeyedReadWriteLocks<Integer, ? extends ReadWriteLock> create() {
+            return ReadWriteLocks.striped(1024);
+        }
+    },
+
+    /// [ReadWriteLocks#distributed()].
+    DISTRIBUTED {
+        @Override
+        KeyedReadWriteLocks<Integer, ? extends ReadWriteLock> create() {
+            return ReadWriteLocks.distributed();
+        }
+    };
+
+    abstract KeyedReadWriteLocks<Integer, ? extends ReadWriteLock> create();
+
+}
@@ -0,0 +1,46 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedLocks;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/// Many threads locking random keys out of a small set, so they frequently wait for each other. Each lock is held for a short amount of work.
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SharedKeysBenchmark {
+
+    @Param
+    public LocksImplementation implementation;
+
+    @Param({"4", "64"})
+    public int keys;
+
+    @Param({"10"})
+    public int work;
+
+    private KeyedLocks<Integer, ? extends Lock> locks;
+
+    @Setup
+    public void setup() {
+        locks = implementation.create();
+    }
+
+    @Benchmark
+    public void lockUnlock() {
+        final var lock = locks.lock(ThreadLocalRandom.current().nextInt(keys));
+        try {
+            Blackhole.consumeCPU(work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
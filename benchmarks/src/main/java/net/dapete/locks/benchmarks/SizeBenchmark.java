@@ -0,0 +1,45 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedLocks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/// Calling [KeyedLocks#size()] while other threads lock and unlock random keys out of a large set.
+@State(Scope.Group)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SizeBenchmark {
+
+    @Param
+    public LocksImplementation implementation;
+
+    @Param({"100000"})
+    public int keys;
+
+    private KeyedLocks<Integer, ? extends Lock> locks;
+
+    @Setup
+    public void setup() {
+        locks = implementation.create();
+    }
+
+    @Benchmark
+    @Group("sizeUnderLoad")
+    @GroupThreads(3)
+    public void lockUnlock() {
+        locks.lock(ThreadLocalRandom.current().nextInt(keys)).unlock();
+    }
+
+    @Benchmark
+    @Group("sizeUnderLoad")
+    @GroupThreads(1)
+    public int size() {
+        return locks.size();
+    }
+
+}
@@ -0,0 +1,39 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedLocks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/// A single thread locking and unlocking the same key over and over.
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UncontendedBenchmark {
+
+    private static final Integer HOT_KEY = 42;
+
+    @Param
+    public LocksImplementation implementation;
+
+    private KeyedLocks<Integer, ? extends Lock> locks;
+
+    @Setup
+    public void setup() {
+        locks = implementation.create();
+    }
+
+    @Benchmark
+    public void lockUnlock() {
+        locks.lock(HOT_KEY).unlock();
+    }
+
+    @Benchmark
+    public Lock get() {
+        return locks.get(HOT_KEY);
+    }
+
+}
@@ -0,0 +1,55 @@
+package net.dapete.locks.benchmarks;
+
+import net.dapete.locks.KeyedLocks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/// A single thread running a small action under the lock of the same key over and over, comparing an explicit `lock`/`unlock` in a
+/// `try`/`finally` block with `withLock`, using both a capturing `Supplier` and a non-capturing `Function`.
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WithLockBenchmark {
+
+    private static final Function<Integer, Integer> INCREMENT = key -> key + 1;
+
+    @Param
+    public LocksImplementation implementation;
+
+    // not a constant, so the actions cannot be folded
+    public Integer key = 42;
+
+    private KeyedLocks<Integer, ? extends Lock> locks;
+
+    @Setup
+    public void setup() {
+        locks = implementation.create();
+    }
+
+    @Benchmark
+    public Integer tryFinally() {
+        final var lock = locks.lock(key);
+        try {
+            return key + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Benchmark
+    public Integer withLockSupplier() {
+        final var current = key;
+        return locks.withLock(current, () -> current + 1);
+    }
+
+    @Benchmark
+    public Integer withLockFunction() {
+        return locks.withLock(key, INCREMENT);
+    }
+
+}
@@ -10,6 +10,7 @@ import org.jspecify.annotations.NullMarked;
 @NullMarked
 module net.dapete.locks {
     requires static transitive org.apiguardian.api;
+    requires static java.management;
     requires org.jspecify;
     exports net.dapete.locks;
 }
@@ -0,0 +1,127 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Common settings of all builders for instances keeping a value per key, like [LocksBuilder], [ReadWriteLocksBuilder] and [AsyncLocksBuilder]. These
+/// only affect how the values are managed, not the values themselves.
+///
+/// @param <B> the builder type.
+///
+abstract class AbstractKeyedBuilder<B extends AbstractKeyedBuilder<B>> {
+
+    final Settings settings = new Settings();
+
+    AbstractKeyedBuilder() {
+    }
+
+    abstract B self();
+
+    ///
+    /// Set the number of segments the keys are partitioned into by their hash code. Each segment manages its locks independently, including removing locks
+    /// which are no longer used. The default is 1.
+    ///
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @return this builder.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public B concurrencyLevel(int concurrencyLevel) {
+        if (concurrencyLevel < 1 || concurrencyLevel > WeakKeyReferences.MAX_CONCURRENCY_LEVEL) {
+            throw new IllegalArgumentException(
+                    "concurrencyLevel must be between 1 and " + WeakKeyReferences.MAX_CONCURRENCY_LEVEL + ": " + concurrencyLevel);
+        }
+        settings.concurrencyLevel = concurrencyLevel;
+        return self();
+    }
+
+    ///
+    /// Set the maximum number of unused locks removed by a single call to a method like `get`, `lock` or `readLock`. Any others are left for later calls,
+    /// so the cost of removing a large number of locks after a garbage collection is spread over several callers. The default is no limit.
+    ///
+    /// This has no effect while a [cleaner][#cleaner(ReferenceCleaner)] is running, and methods returning the size always remove all unused locks.
+    ///
+    /// @param cleanupLimit the maximum number of unused locks removed by a single call.
+    /// @return this builder.
+    /// @throws IllegalArgumentException if `cleanupLimit` is less than 1.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public B cleanupLimit(int cleanupLimit) {
+        if (cleanupLimit < 1) {
+            throw new IllegalArgumentException("cleanupLimit must be at least 1: " + cleanupLimit);
+        }
+        settings.cleanupLimit = cleanupLimit;
+        return self();
+    }
+
+    ///
+    /// Set the number of keys an instance is expected to hold at the same time. The maps holding the locks are sized for this many keys when the instance
+    /// is created, so they do not have to grow repeatedly while it fills up. The default is 0, which starts with small maps.
+    ///
+    /// Growing a map never blocks the whole instance: by default, a [java.util.concurrent.ConcurrentHashMap] grows incrementally while it remains
+    /// readable, and with [#virtualThreadFriendly()] only the segment containing the map is locked while it grows.
+    ///
+    /// @param expectedKeys the number of keys an instance is expected to hold.
+    /// @return this builder.
+    /// @throws IllegalArgumentException if `expectedKeys` is negative.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public B expectedKeys(int expectedKeys) {
+        if (expectedKeys < 0) {
+            throw new IllegalArgumentException("expectedKeys must not be negative: " + expectedKeys);
+        }
+        settings.expectedKeys = expectedKeys;
+        return self();
+    }
+
+    ///
+    /// Set the load factor of the maps holding the locks, which is the number of keys per bucket a map holds before it grows. A higher value needs less
+    /// memory, while a lower value makes collisions less likely. The default is 0.75.
+    ///
+    /// A [java.util.concurrent.ConcurrentHashMap] only uses this for its initial size (see [#expectedKeys(int)]), later it always grows at 0.75.
+    ///
+    /// @param loadFactor the load factor.
+    /// @return this builder.
+    /// @throws IllegalArgumentException if `loadFactor` is not a positive number.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public B loadFactor(float loadFactor) {
+        if (!(loadFactor > 0) || Float.isInfinite(loadFactor)) {
+            throw new IllegalArgumentException("loadFactor must be a positive number: " + loadFactor);
+        }
+        settings.loadFactor = loadFactor;
+        return self();
+    }
+
+    ///
+    /// Set a [ReferenceCleaner] removing unused locks in the background. While it is running, callers do not remove unused locks themselves.
+    ///
+    /// @param cleaner the cleaner.
+    /// @return this builder.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public B cleaner(ReferenceCleaner cleaner) {
+        settings.cleaner = cleaner;
+        return self();
+    }
+
+    ///
+    /// Manage the locks in a way that is friendly to virtual threads.
+    ///
+    /// By default, locks are managed in a [java.util.concurrent.ConcurrentHashMap], which uses monitors (`synchronized`) internally when adding or removing
+    /// entries and calls the lock supplier while holding one. Depending on the JDK version, a virtual thread blocking while holding a monitor pins its
+    /// carrier thread. With this setting, each segment uses a map guarded by a [java.util.concurrent.locks.ReentrantLock] instead, so a virtual thread
+    /// waiting for it is unmounted from its carrier. In exchange, looking up an existing lock requires taking the segment's lock, so this should usually be
+    /// combined with a [concurrency level][#concurrencyLevel(int)] greater than 1.
+    ///
+    /// @return this builder.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public B virtualThreadFriendly() {
+        settings.virtualThreadFriendly = true;
+        return self();
+    }
+
+}
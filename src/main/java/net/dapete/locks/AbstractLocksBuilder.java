@@ -0,0 +1,55 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Common settings of [LocksBuilder] and [ReadWriteLocksBuilder], adding metrics and diagnostics of the locks to the settings of [AbstractKeyedBuilder].
+///
+/// @param <B> the builder type.
+///
+abstract class AbstractLocksBuilder<B extends AbstractLocksBuilder<B>> extends AbstractKeyedBuilder<B> {
+
+    AbstractLocksBuilder() {
+    }
+
+    ///
+    /// Record [LockMetrics] for the instance, which can be retrieved using `getMetrics()`.
+    ///
+    /// Without this setting, no metrics are recorded and the methods locking and looking up locks do not do any additional work.
+    ///
+    /// @return this builder.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public B metrics() {
+        settings.metrics = true;
+        return self();
+    }
+
+    ///
+    /// Make [LockDiagnostics] available for the instance, which can be retrieved using `getDiagnostics()`, to find out which keys are locked by which
+    /// threads, detect deadlocks and report locks held for a long time.
+    ///
+    /// The diagnostics inspect the locks only when they are called, so this does not add any work to locking and unlocking. It requires locks which
+    /// expose their owner, so it is only supported by the builder methods creating reentrant locks.
+    ///
+    /// @return this builder.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public B diagnostics() {
+        settings.diagnostics = true;
+        return self();
+    }
+
+    ///
+    /// Throw an [IllegalStateException] if [diagnostics][#diagnostics()] have been requested, because they are not supported for locks created by a
+    /// supplier.
+    ///
+    final void checkNoDiagnostics() {
+        if (settings.diagnostics) {
+            throw new IllegalStateException("diagnostics are only supported for reentrant locks");
+        }
+    }
+
+}
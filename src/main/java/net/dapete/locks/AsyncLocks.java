@@ -0,0 +1,268 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking which never blocks a thread. Instead of waiting for a lock, callers receive a [CompletableFuture] which is completed with a [Permit]
+/// once they hold the lock for the key:
+///
+/// ```
+/// final var locks = AsyncLocks.<String>create();
+/// locks.acquire(url)
+///         .thenCompose(permit -> fetch(url).whenComplete((result, e) -> permit.release()));
+/// ```
+///
+/// For each key, at most one permit is held at any given time. The callers waiting for a key are queued, and the next one is completed when the permit is
+/// released, without any thread being parked. The future of a waiting caller can be cancelled, or completed using
+/// [CompletableFuture#orTimeout(long, java.util.concurrent.TimeUnit)], in which case it is skipped.
+///
+/// Futures are completed by the thread releasing the previous permit, or by the thread acquiring the permit if it is available, so dependent actions
+/// which are not `async` run on that thread. Releasing a permit from such an action does not recurse into the next one; it is run after the current one
+/// has returned.
+///
+/// Like with [Locks], the state for a key is only kept as long as it is referenced, which is the case while a permit for it is held or a caller waits for
+/// it, so keys which are no longer used are removed automatically. The permits are not reentrant: a holder of a permit acquiring the same key again waits
+/// until its own permit is released.
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class AsyncLocks<K> extends WeakKeyReferences<K, AsyncLocks.KeyState> {
+
+    AsyncLocks(Settings settings) {
+        super(KeyState::new, settings);
+    }
+
+    ///
+    /// Return a new instance.
+    ///
+    /// @param <K> the key type.
+    /// @return a new instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> AsyncLocks<K> create() {
+        return new AsyncLocks<>(new Settings());
+    }
+
+    ///
+    /// Return a new instance partitioned into `concurrencyLevel` segments. See [Locks#withSupplier(java.util.function.Supplier, int)].
+    ///
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <K>              the key type.
+    /// @return a new instance.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> AsyncLocks<K> create(int concurrencyLevel) {
+        return AsyncLocks.<K>builder().concurrencyLevel(concurrencyLevel).create();
+    }
+
+    ///
+    /// Return an [AsyncLocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param <K> the key type.
+    /// @return an `AsyncLocksBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> AsyncLocksBuilder<K> builder() {
+        return new AsyncLocksBuilder<>();
+    }
+
+    ///
+    /// Return an [AsyncLocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param keyClass the class for the key type.
+    /// @param <K>      the key type.
+    /// @return an `AsyncLocksBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> AsyncLocksBuilder<K> builder(@SuppressWarnings("unused") Class<K> keyClass) {
+        return builder();
+    }
+
+    ///
+    /// Acquire the permit for `key`. The returned future is completed with the permit once it is available, which may already be the case when this method
+    /// returns.
+    ///
+    /// @param key the key.
+    /// @return a future which is completed with the permit for `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public CompletableFuture<Permit> acquire(K key) {
+        return get(key).acquire();
+    }
+
+    ///
+    /// Acquire the permit for `key` if it is available right now.
+    ///
+    /// @param key the key.
+    /// @return the permit for `key`, or `null` if it is held by someone else.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable Permit tryAcquire(K key) {
+        return get(key).tryAcquire();
+    }
+
+    ///
+    /// Return the current number of keys with a permit which is held or waited for.
+    ///
+    /// @return the current number of keys managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public int size() {
+        return super.size();
+    }
+
+    ///
+    /// The permit to use a key of [AsyncLocks], which has to be [released][#release()] again. It can also be used in a `try`-with-resources statement.
+    ///
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final class Permit implements AutoCloseable {
+
+        private static final VarHandle RELEASED;
+
+        static {
+            try {
+                RELEASED = MethodHandles.lookup().findVarHandle(Permit.class, "released", boolean.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        // keeps the state of the key referenced while the permit is held
+        private final KeyState keyState;
+
+        @SuppressWarnings("unused") // accessed using RELEASED
+        private volatile boolean released;
+
+        private Permit(KeyState keyState) {
+            this.keyState = keyState;
+        }
+
+        ///
+        /// Release this permit, so the next caller waiting for the key can acquire it. Calling this more than once has no further effect.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public void release() {
+            if (RELEASED.compareAndSet(this, false, true)) {
+                keyState.release();
+            }
+        }
+
+        ///
+        /// Return `true` if this permit has been released.
+        ///
+        /// @return `true` if this permit has been released.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isReleased() {
+            return released;
+        }
+
+        ///
+        /// Release this permit. See [#release()].
+        ///
+        @Override
+        public void close() {
+            release();
+        }
+
+    }
+
+    ///
+    /// The state of a key: the number of callers holding or waiting for the permit, and a queue of the futures of the waiting callers.
+    ///
+    /// A caller first adds its future to the queue and then increments the count. Whoever changes the count from 0 to 1, or releases the permit while the
+    /// count stays above 0, hands the permit to the first future in the queue. Because every future is added before the count is incremented, the queue
+    /// is never empty at that point, although the first future may belong to a different caller.
+    ///
+    static final class KeyState {
+
+        private static final VarHandle COUNT;
+
+        private static final VarHandle HAND_OFFS;
+
+        private static final VarHandle QUEUE;
+
+        static {
+            try {
+                final var lookup = MethodHandles.lookup();
+                COUNT = lookup.findVarHandle(KeyState.class, "count", int.class);
+                HAND_OFFS = lookup.findVarHandle(KeyState.class, "handOffs", int.class);
+                QUEUE = lookup.findVarHandle(KeyState.class, "queue", Queue.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @SuppressWarnings("unused") // accessed using COUNT
+        private volatile int count;
+
+        // the number of pending hand-offs; only the thread incrementing this from 0 performs them, so completing a future never recurses
+        @SuppressWarnings("unused") // accessed using HAND_OFFS
+        private volatile int handOffs;
+
+        @SuppressWarnings("unused") // accessed using QUEUE
+        private volatile @Nullable Queue<CompletableFuture<Permit>> queue;
+
+        CompletableFuture<Permit> acquire() {
+            final var future = new CompletableFuture<Permit>();
+            waiters().add(future);
+            if ((int) COUNT.getAndAdd(this, 1) == 0) {
+                handOff();
+            }
+            return future;
+        }
+
+        @Nullable Permit tryAcquire() {
+            return COUNT.compareAndSet(this, 0, 1) ? new Permit(this) : null;
+        }
+
+        void release() {
+            if ((int) COUNT.getAndAdd(this, -1) > 1) {
+                handOff();
+            }
+        }
+
+        private void handOff() {
+            if ((int) HAND_OFFS.getAndAdd(this, 1) != 0) {
+                return;
+            }
+            final var waiters = waiters();
+            do {
+                final var future = waiters.poll();
+                // never null, see the class documentation
+                if (future != null && !future.complete(new Permit(this)) && (int) COUNT.getAndAdd(this, -1) > 1) {
+                    // the future has been completed by its caller (cancelled or timed out), so hand the permit to the next one
+                    HAND_OFFS.getAndAdd(this, 1);
+                }
+            } while ((int) HAND_OFFS.getAndAdd(this, -1) > 1);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Queue<CompletableFuture<Permit>> waiters() {
+            final var waiters = queue;
+            if (waiters != null) {
+                return waiters;
+            }
+            final Queue<CompletableFuture<Permit>> newWaiters = new ConcurrentLinkedQueue<>();
+            final var witness = (Queue<CompletableFuture<Permit>>) QUEUE.compareAndExchange(this, null, newWaiters);
+            return witness != null ? witness : newWaiters;
+        }
+
+    }
+
+}
@@ -0,0 +1,42 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Builder for instances of [AsyncLocks] with custom settings.
+///
+/// Instances can be created using [AsyncLocks#builder()] and [AsyncLocks#builder(Class)], for example:
+///
+/// ```
+/// final var locks = AsyncLocks.<String>builder()
+///         .concurrencyLevel(16)
+///         .create();
+/// ```
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class AsyncLocksBuilder<K> extends AbstractKeyedBuilder<AsyncLocksBuilder<K>> {
+
+    AsyncLocksBuilder() {
+    }
+
+    @Override
+    AsyncLocksBuilder<K> self() {
+        return this;
+    }
+
+    ///
+    /// Return an [AsyncLocks] instance with the settings of this builder.
+    ///
+    /// @return an `AsyncLocks` instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public AsyncLocks<K> create() {
+        return new AsyncLocks<>(settings);
+    }
+
+}
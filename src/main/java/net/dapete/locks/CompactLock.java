@@ -0,0 +1,161 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// A reentrant [Lock] which needs considerably less memory than a [ReentrantLock] while it is not contended.
+///
+/// The state of the lock is a single object with an `int` state word, the owning thread and the hold count. A queue for waiting threads is only created
+/// once a thread actually has to wait for the lock. This makes it suitable for a large number of locks which are usually held by at most one thread at a
+/// time, as returned by [Locks#compact()].
+///
+/// Compared to `ReentrantLock`, there are some limitations:
+///
+/// - The lock is not fair. When it is released, the thread which has been waiting longest is woken up, but a thread which has not been waiting can still
+///   acquire the lock first.
+/// - [Conditions][#newCondition()] are not supported.
+///
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class CompactLock extends CompactSynchronizer implements Lock {
+
+    private static final int LOCKED = 1;
+
+    // only written by the owning thread; other threads can never see themselves as the owner
+    private @Nullable Thread owner;
+
+    private int holds;
+
+    ///
+    /// Create an unlocked instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public CompactLock() {
+        // nothing to initialize
+    }
+
+    @Override
+    boolean tryAcquire(int mode) {
+        final var current = Thread.currentThread();
+        if (owner == current) {
+            if (holds == Integer.MAX_VALUE) {
+                throw new Error("Maximum lock count exceeded");
+            }
+            holds++;
+            return true;
+        }
+        final int state = getState();
+        if ((state & ~WAITERS) == 0 && compareAndSetState(state, state | LOCKED)) {
+            owner = current;
+            holds = 1;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void lock() {
+        acquire(0);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        acquireInterruptibly(0);
+    }
+
+    @Override
+    public boolean tryLock() {
+        return tryAcquire(0);
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        return tryAcquireNanos(0, unit.toNanos(time));
+    }
+
+    ///
+    /// Release the lock. If the current thread has acquired it more than once, this only decrements the hold count.
+    ///
+    /// @throws IllegalMonitorStateException if the current thread does not hold this lock.
+    ///
+    @Override
+    public void unlock() {
+        if (owner != Thread.currentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+        if (--holds == 0) {
+            owner = null;
+            // this only fails if the WAITERS bit has changed in the meantime
+            while (!release(LOCKED, 0, true)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    ///
+    /// Not supported.
+    ///
+    /// @return never.
+    /// @throws UnsupportedOperationException always.
+    ///
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException("CompactLock does not support conditions");
+    }
+
+    ///
+    /// Return `true` if this lock is held by any thread.
+    ///
+    /// @return `true` if this lock is held by any thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean isLocked() {
+        return (getState() & LOCKED) != 0;
+    }
+
+    ///
+    /// Return `true` if this lock is held by the current thread.
+    ///
+    /// @return `true` if this lock is held by the current thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean isHeldByCurrentThread() {
+        return owner == Thread.currentThread();
+    }
+
+    ///
+    /// Return the number of holds on this lock by the current thread.
+    ///
+    /// @return the number of holds on this lock by the current thread, or 0 if it is not held by the current thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int getHoldCount() {
+        return isHeldByCurrentThread() ? holds : 0;
+    }
+
+    ///
+    /// Return `true` if there may be threads waiting to acquire this lock.
+    ///
+    /// @return `true` if there may be threads waiting to acquire this lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean hasQueuedThreads() {
+        return hasWaitingThreads();
+    }
+
+    @Override
+    public String toString() {
+        final var currentOwner = owner;
+        return super.toString() + (currentOwner == null ? "[Unlocked]" : "[Locked by thread " + currentOwner.getName() + "]");
+    }
+
+}
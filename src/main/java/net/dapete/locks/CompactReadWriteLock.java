@@ -0,0 +1,303 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// A reentrant [ReadWriteLock] which needs considerably less memory than a [ReentrantReadWriteLock] while it is not contended.
+///
+/// The state of the lock is a single object with an `int` state word holding the number of read holds and whether the write lock is held, the thread
+/// holding the write lock and its hold count. A queue for waiting threads is only created once a thread actually has to wait for the lock. The
+/// [read lock][#readLock()] and [write lock][#writeLock()] are lightweight views which are only created when they are first requested. This makes it
+/// suitable for a large number of locks which are usually not contended, as returned by [ReadWriteLocks#compact()].
+///
+/// Like `ReentrantReadWriteLock`, both locks are reentrant, and the thread holding the write lock can also acquire the read lock, which allows downgrading
+/// from the write lock to the read lock. Upgrading from the read lock to the write lock is not possible. Compared to `ReentrantReadWriteLock`, there are
+/// some limitations:
+///
+/// - The lock is not fair, and does not prefer writers, so a lock which is continuously read locked can keep writers waiting. When it is released, the
+///   thread which has been waiting longest is woken up, and a reader acquiring it wakes up the next one, but a thread which has not been waiting can
+///   still acquire the lock first.
+/// - Read holds are not tracked per thread, so unlocking the read lock from a thread which does not hold it is not detected as long as any other thread
+///   holds it.
+/// - [Conditions][Lock#newCondition()] are not supported.
+///
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class CompactReadWriteLock extends CompactSynchronizer implements ReadWriteLock {
+
+    private static final int READ = 0;
+
+    private static final int WRITE = 1;
+
+    private static final int WRITE_LOCKED = 1 << 30;
+
+    private static final int READ_HOLDS = WRITE_LOCKED - 1;
+
+    // only written by the thread holding the write lock; other threads can never see themselves as the writer
+    private @Nullable Thread writer;
+
+    private int writeHolds;
+
+    // the views, only accessed using View.READ_VIEW and View.WRITE_VIEW, which publish them safely
+    @SuppressWarnings("unused")
+    private @Nullable Object readView;
+
+    @SuppressWarnings("unused")
+    private @Nullable Object writeView;
+
+    ///
+    /// Create an unlocked instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public CompactReadWriteLock() {
+        // nothing to initialize
+    }
+
+    @Override
+    boolean tryAcquire(int mode) {
+        return mode == READ ? tryAcquireRead() : tryAcquireWrite();
+    }
+
+    @Override
+    boolean isShared(int mode) {
+        return mode == READ;
+    }
+
+    private boolean tryAcquireRead() {
+        while (true) {
+            final int state = getState();
+            if ((state & WRITE_LOCKED) != 0 && writer != Thread.currentThread()) {
+                return false;
+            }
+            if ((state & READ_HOLDS) == READ_HOLDS) {
+                throw new Error("Maximum lock count exceeded");
+            }
+            if (compareAndSetState(state, state + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean tryAcquireWrite() {
+        final var current = Thread.currentThread();
+        if (writer == current) {
+            if (writeHolds == Integer.MAX_VALUE) {
+                throw new Error("Maximum lock count exceeded");
+            }
+            writeHolds++;
+            return true;
+        }
+        while (true) {
+            final int state = getState();
+            if ((state & ~WAITERS) != 0) {
+                return false;
+            }
+            if (compareAndSetState(state, state | WRITE_LOCKED)) {
+                writer = current;
+                writeHolds = 1;
+                return true;
+            }
+        }
+    }
+
+    private void releaseRead() {
+        while (true) {
+            final int state = getState() & ~WAITERS;
+            if ((state & READ_HOLDS) == 0) {
+                throw new IllegalMonitorStateException();
+            }
+            final int newState = state - 1;
+            // waiting threads can only be writers, which need all read holds to be released
+            if (release(state, newState, newState == 0)) {
+                return;
+            }
+        }
+    }
+
+    private void releaseWrite() {
+        if (writer != Thread.currentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+        if (--writeHolds == 0) {
+            writer = null;
+            while (true) {
+                final int state = getState() & ~WAITERS;
+                if (release(state, state & ~WRITE_LOCKED, true)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    ///
+    /// Return the lock used for reading. It is created when it is first requested, and every call returns the same instance.
+    ///
+    /// @return the lock used for reading.
+    ///
+    @Override
+    public Lock readLock() {
+        return View.of(this, READ);
+    }
+
+    ///
+    /// Return the lock used for writing. It is created when it is first requested, and every call returns the same instance.
+    ///
+    /// @return the lock used for writing.
+    ///
+    @Override
+    public Lock writeLock() {
+        return View.of(this, WRITE);
+    }
+
+    ///
+    /// Return the number of read holds on this lock, by all threads.
+    ///
+    /// @return the number of read holds on this lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int getReadLockCount() {
+        return getState() & READ_HOLDS;
+    }
+
+    ///
+    /// Return `true` if the write lock is held by any thread.
+    ///
+    /// @return `true` if the write lock is held by any thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean isWriteLocked() {
+        return (getState() & WRITE_LOCKED) != 0;
+    }
+
+    ///
+    /// Return `true` if the write lock is held by the current thread.
+    ///
+    /// @return `true` if the write lock is held by the current thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean isWriteLockedByCurrentThread() {
+        return writer == Thread.currentThread();
+    }
+
+    ///
+    /// Return the number of holds on the write lock by the current thread.
+    ///
+    /// @return the number of holds on the write lock by the current thread, or 0 if it is not held by the current thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int getWriteHoldCount() {
+        return isWriteLockedByCurrentThread() ? writeHolds : 0;
+    }
+
+    ///
+    /// Return `true` if there may be threads waiting to acquire the read or write lock.
+    ///
+    /// @return `true` if there may be threads waiting to acquire the read or write lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean hasQueuedThreads() {
+        return hasWaitingThreads();
+    }
+
+    @Override
+    public String toString() {
+        final int state = getState();
+        return super.toString() + "[Write locks = " + ((state & WRITE_LOCKED) != 0 ? 1 : 0) + ", Read locks = " + (state & READ_HOLDS) + "]";
+    }
+
+    ///
+    /// The read or write lock of a [CompactReadWriteLock].
+    ///
+    private static final class View implements Lock {
+
+        private static final VarHandle READ_VIEW;
+
+        private static final VarHandle WRITE_VIEW;
+
+        static {
+            try {
+                final var lookup = MethodHandles.lookup();
+                READ_VIEW = lookup.findVarHandle(CompactReadWriteLock.class, "readView", Object.class);
+                WRITE_VIEW = lookup.findVarHandle(CompactReadWriteLock.class, "writeView", Object.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final CompactReadWriteLock lock;
+
+        private final int mode;
+
+        private View(CompactReadWriteLock lock, int mode) {
+            this.lock = lock;
+            this.mode = mode;
+        }
+
+        ///
+        /// Return the view of `lock` for `mode`, creating it if it does not exist yet.
+        ///
+        static View of(CompactReadWriteLock lock, int mode) {
+            final var handle = mode == READ ? READ_VIEW : WRITE_VIEW;
+            final var view = (View) handle.getAcquire(lock);
+            if (view != null) {
+                return view;
+            }
+            final var newView = new View(lock, mode);
+            final var witness = (View) handle.compareAndExchange(lock, null, newView);
+            return witness != null ? witness : newView;
+        }
+
+        @Override
+        public void lock() {
+            lock.acquire(mode);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            lock.acquireInterruptibly(mode);
+        }
+
+        @Override
+        public boolean tryLock() {
+            return lock.tryAcquire(mode);
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return lock.tryAcquireNanos(mode, unit.toNanos(time));
+        }
+
+        @Override
+        public void unlock() {
+            if (mode == READ) {
+                lock.releaseRead();
+            } else {
+                lock.releaseWrite();
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("CompactReadWriteLock does not support conditions");
+        }
+
+        @Override
+        public String toString() {
+            return lock + (mode == READ ? ".readLock" : ".writeLock");
+        }
+
+    }
+
+}
@@ -0,0 +1,249 @@
+package net.dapete.locks;
+
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+///
+/// The common state of [CompactLock], [CompactReadWriteLock] and [IntentLock]: a single `int` state word and a queue of waiting threads, which is only
+/// created once a thread actually has to wait.
+///
+/// The highest bit of the state is set while there may be waiting threads. Subclasses use the remaining bits for their lock state, and call
+/// [#release(int, int, boolean)] to change them when unlocking, which wakes up a waiting thread if necessary.
+///
+/// Waiting threads are queued in the order they started waiting, and releasing the lock only wakes up the first of them. A thread which acquires the lock
+/// after waiting passes the wake-up on to the next one if it acquired the lock in a [shared][#isShared(int)] mode, so waiting readers are released one
+/// after the other instead of all waiting threads competing for the lock at once. The lock is still not fair: a thread which has not been waiting can
+/// acquire the lock before the woken thread, which then waits again at the head of the queue.
+///
+abstract class CompactSynchronizer {
+
+    ///
+    /// The bit of the state which is set while there may be waiting threads.
+    ///
+    static final int WAITERS = 1 << 31;
+
+    private static final VarHandle STATE;
+
+    private static final VarHandle QUEUE;
+
+    static {
+        try {
+            final var lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(CompactSynchronizer.class, "state", int.class);
+            QUEUE = lookup.findVarHandle(CompactSynchronizer.class, "queue", Queue.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @SuppressWarnings("unused") // accessed using STATE
+    private volatile int state;
+
+    @SuppressWarnings("unused") // accessed using QUEUE
+    private volatile @Nullable Queue<Thread> queue;
+
+    final int getState() {
+        return (int) STATE.getVolatile(this);
+    }
+
+    final boolean compareAndSetState(int expectedValue, int newValue) {
+        return STATE.compareAndSet(this, expectedValue, newValue);
+    }
+
+    ///
+    /// Try to acquire the lock in the given `mode` without waiting.
+    ///
+    /// @param mode the mode, as defined by the subclass.
+    /// @return `true` if the lock was acquired.
+    ///
+    abstract boolean tryAcquire(int mode);
+
+    ///
+    /// Return `true` if other threads can hold the lock at the same time as a thread holding it in the given `mode`, so a thread which acquired it in
+    /// this mode after waiting also wakes up the next waiting thread.
+    ///
+    /// @param mode the mode, as defined by the subclass.
+    /// @return `true` if the mode is shared.
+    ///
+    boolean isShared(int mode) {
+        return false;
+    }
+
+    ///
+    /// Acquire the lock in the given `mode`, waiting if necessary.
+    ///
+    /// @param mode the mode, as defined by the subclass.
+    ///
+    final void acquire(int mode) {
+        if (!tryAcquire(mode)) {
+            boolean interrupted = false;
+            final var waiters = waiters();
+            final var thread = Thread.currentThread();
+            waiters.add(thread);
+            boolean acquired = false;
+            try {
+                while (!(acquired = tryAcquireOrAnnounce(mode))) {
+                    LockSupport.park(this);
+                    interrupted |= Thread.interrupted();
+                }
+            } finally {
+                leaveQueue(waiters, thread, mode, acquired);
+            }
+            if (interrupted) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    ///
+    /// Acquire the lock in the given `mode`, waiting if necessary, unless the current thread is interrupted.
+    ///
+    /// @param mode the mode, as defined by the subclass.
+    /// @throws InterruptedException if the current thread is interrupted.
+    ///
+    final void acquireInterruptibly(int mode) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (!tryAcquire(mode)) {
+            awaitAcquire(mode, false, 0);
+        }
+    }
+
+    ///
+    /// Acquire the lock in the given `mode`, waiting at most `nanos` nanoseconds, unless the current thread is interrupted.
+    ///
+    /// @param mode  the mode, as defined by the subclass.
+    /// @param nanos the maximum time to wait.
+    /// @return `true` if the lock was acquired, `false` if the waiting time elapsed first.
+    /// @throws InterruptedException if the current thread is interrupted.
+    ///
+    final boolean tryAcquireNanos(int mode, long nanos) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        return tryAcquire(mode) || nanos > 0 && awaitAcquire(mode, true, System.nanoTime() + nanos);
+    }
+
+    private boolean awaitAcquire(int mode, boolean timed, long deadline) throws InterruptedException {
+        final var waiters = waiters();
+        final var thread = Thread.currentThread();
+        waiters.add(thread);
+        boolean acquired = false;
+        try {
+            while (!(acquired = tryAcquireOrAnnounce(mode))) {
+                if (timed) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            leaveQueue(waiters, thread, mode, acquired);
+        }
+    }
+
+    ///
+    /// Remove `thread` from the queue of waiting threads, and wake up the next one if necessary.
+    ///
+    private void leaveQueue(Queue<Thread> waiters, Thread thread, int mode, boolean acquired) {
+        waiters.remove(thread);
+        if (!acquired) {
+            // this thread may have consumed the wake-up meant for the first waiting thread, so pass it on
+            wakeFirst(waiters);
+        } else if (!waiters.isEmpty()) {
+            // the thread which woke up this one cleared the WAITERS bit, so set it again for the remaining waiting threads
+            announce();
+            if (isShared(mode)) {
+                wakeFirst(waiters);
+            }
+        }
+    }
+
+    ///
+    /// Try to acquire the lock; if that fails, set the [#WAITERS] bit and try once more, so a thread releasing the lock in between cannot miss this
+    /// thread.
+    ///
+    private boolean tryAcquireOrAnnounce(int mode) {
+        if (tryAcquire(mode)) {
+            return true;
+        }
+        announce();
+        return tryAcquire(mode);
+    }
+
+    private void announce() {
+        int state;
+        do {
+            state = getState();
+        } while ((state & WAITERS) == 0 && !compareAndSetState(state, state | WAITERS));
+    }
+
+    ///
+    /// Atomically change the state from `expectedValue` to `newValue`, keeping the [#WAITERS] bit as it is. If it was set and `wake` is `true`, it is
+    /// cleared and the first waiting thread is woken up.
+    ///
+    /// @param expectedValue the expected state, without the `WAITERS` bit.
+    /// @param newValue      the new state, without the `WAITERS` bit.
+    /// @param wake          whether waiting threads may be able to acquire the lock in the new state.
+    /// @return `true` if the state was changed.
+    ///
+    final boolean release(int expectedValue, int newValue, boolean wake) {
+        if (compareAndSetState(expectedValue, newValue)) {
+            return true;
+        }
+        if (!wake) {
+            return compareAndSetState(expectedValue | WAITERS, newValue | WAITERS);
+        }
+        if (compareAndSetState(expectedValue | WAITERS, newValue)) {
+            final var waiters = queue;
+            if (waiters != null) {
+                wakeFirst(waiters);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    ///
+    /// Return `true` if there may be threads waiting to acquire the lock.
+    ///
+    /// @return `true` if there may be threads waiting to acquire the lock.
+    ///
+    final boolean hasWaitingThreads() {
+        final var waiters = queue;
+        return waiters != null && !waiters.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Queue<Thread> waiters() {
+        final var waiters = queue;
+        if (waiters != null) {
+            return waiters;
+        }
+        final Queue<Thread> newWaiters = new ConcurrentLinkedQueue<>();
+        final var witness = (Queue<Thread>) QUEUE.compareAndExchange(this, null, newWaiters);
+        return witness != null ? witness : newWaiters;
+    }
+
+    private static void wakeFirst(Queue<Thread> waiters) {
+        final var thread = waiters.peek();
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+}
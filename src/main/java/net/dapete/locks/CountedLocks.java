@@ -0,0 +1,276 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking where the lock for a key is removed as soon as it is no longer locked, instead of when the garbage collector has found it to be
+/// unreachable.
+///
+/// The lock for a key counts the callers which have acquired it or are waiting for it. When the last of them unlocks it, it is removed immediately, so the
+/// number of locks always matches the number of keys which are currently in use, independent of when garbage collections happen. The locks are only
+/// available as a [LockHandle] which has been locked already, because any lock returned without being counted could be removed while it is still used:
+///
+/// ```
+/// final var locks = CountedLocks.<String>reentrant();
+/// try (final var handle = locks.acquire(url)) {
+///     // do something with the URL
+/// }
+/// ```
+///
+/// In return for this, every call updates the count of its lock, which is a shared write for all callers using the same key, and creating or removing a
+/// lock locks a bin of the underlying [ConcurrentHashMap].
+///
+/// @param <K> the key type.
+/// @param <L> the [Lock] type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class CountedLocks<K, L extends Lock> {
+
+    private final ConcurrentMap<K, CountedLock<K, L>> lockMap = new ConcurrentHashMap<>();
+
+    private final Supplier<L> lockSupplier;
+
+    private CountedLocks(Supplier<L> lockSupplier) {
+        this.lockSupplier = lockSupplier;
+    }
+
+    ///
+    /// Return an instance using [Lock] instances created by `lockSupplier`.
+    ///
+    /// @param lockSupplier a `Supplier` for instances of [L] (usually the constructor of a class implementing `Lock`).
+    /// @param <K>          the key type.
+    /// @param <L>          the `Lock` type.
+    /// @return an instance using `Lock` instances created by `lockSupplier`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K, L extends Lock> CountedLocks<K, L> withSupplier(Supplier<L> lockSupplier) {
+        return new CountedLocks<>(lockSupplier);
+    }
+
+    ///
+    /// Return an instance using [ReentrantLock].
+    ///
+    /// @param <K> the key type.
+    /// @return an instance using `ReentrantLock`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> CountedLocks<K, ReentrantLock> reentrant() {
+        return withSupplier(ReentrantLock::new);
+    }
+
+    ///
+    /// Return the lock for `key` after incrementing its count. If there is no lock for the key, or the current one has just been released by its last
+    /// holder, a new lock is created.
+    ///
+    private CountedLock<K, L> retain(K key) {
+        final var existing = lockMap.get(key);
+        if (existing != null && existing.tryRetain()) {
+            return existing;
+        }
+        return lockMap.compute(key, (k, current) -> current != null && current.tryRetain() ? current : new CountedLock<>(this, k, lockSupplier.get()));
+    }
+
+    private void remove(CountedLock<K, L> countedLock) {
+        lockMap.remove(countedLock.key, countedLock);
+    }
+
+    ///
+    /// Lock the lock for `key` using [Lock#lock()] and return a [LockHandle] to unlock it again, which also removes the lock if no other caller holds it
+    /// or waits for it.
+    ///
+    /// @param key the key.
+    /// @return a `LockHandle` for the lock already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public LockHandle<L> acquire(K key) {
+        final var countedLock = retain(key);
+        countedLock.lock();
+        return countedLock.handle();
+    }
+
+    ///
+    /// Lock the lock for `key` using [Lock#lockInterruptibly()] and return a [LockHandle] to unlock it again. See [#acquire(Object)].
+    ///
+    /// @param key the key.
+    /// @return a `LockHandle` for the lock already locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public LockHandle<L> acquireInterruptibly(K key) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var countedLock = retain(key);
+        countedLock.lockInterruptibly();
+        return countedLock.handle();
+    }
+
+    ///
+    /// Lock the lock for `key` using [Lock#tryLock()] if it is available right now. See [#acquire(Object)].
+    ///
+    /// @param key the key.
+    /// @return a `LockHandle` for the lock already locked, or `null` if it is not available.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable LockHandle<L> tryAcquire(K key) {
+        final var countedLock = retain(key);
+        return countedLock.tryLock() ? countedLock.handle() : null;
+    }
+
+    ///
+    /// Lock the lock for `key` using [Lock#tryLock(long, TimeUnit)], waiting at most the given time. See [#acquire(Object)].
+    ///
+    /// @param key  the key.
+    /// @param time the maximum time to wait.
+    /// @param unit the time unit of `time`.
+    /// @return a `LockHandle` for the lock already locked, or `null` if it has not become available in time.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable LockHandle<L> tryAcquire(K key, long time, TimeUnit unit) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var countedLock = retain(key);
+        return countedLock.tryLock(time, unit) ? countedLock.handle() : null;
+    }
+
+    ///
+    /// Return the current number of locks managed by this instance, which is the number of keys which are locked or waited for.
+    ///
+    /// @return the current number of locks managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int size() {
+        return lockMap.size();
+    }
+
+    ///
+    /// A lock with the number of callers holding it or waiting for it. Failing to lock it, or unlocking it, decrements the count, and the one decrementing
+    /// it to 0 removes it. Once the count is 0, it can never be incremented again, so a caller finding it in the map afterwards creates a new lock instead.
+    ///
+    private static final class CountedLock<K, L extends Lock> implements Lock {
+
+        private static final VarHandle COUNT;
+
+        static {
+            try {
+                COUNT = MethodHandles.lookup().findVarHandle(CountedLock.class, "count", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final CountedLocks<K, L> owner;
+
+        private final K key;
+
+        private final L lock;
+
+        @SuppressWarnings("unused") // accessed using COUNT
+        private volatile int count = 1;
+
+        CountedLock(CountedLocks<K, L> owner, K key, L lock) {
+            this.owner = owner;
+            this.key = key;
+            this.lock = lock;
+        }
+
+        boolean tryRetain() {
+            while (true) {
+                final int current = (int) COUNT.getVolatile(this);
+                if (current == 0) {
+                    return false;
+                }
+                if (COUNT.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            if ((int) COUNT.getAndAdd(this, -1) == 1) {
+                owner.remove(this);
+            }
+        }
+
+        LockHandle<L> handle() {
+            return new LockHandle<>(lock, this);
+        }
+
+        @Override
+        public void lock() {
+            boolean locked = false;
+            try {
+                lock.lock();
+                locked = true;
+            } finally {
+                if (!locked) {
+                    release();
+                }
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            boolean locked = false;
+            try {
+                lock.lockInterruptibly();
+                locked = true;
+            } finally {
+                if (!locked) {
+                    release();
+                }
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            boolean locked = false;
+            try {
+                locked = lock.tryLock();
+                return locked;
+            } finally {
+                if (!locked) {
+                    release();
+                }
+            }
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            boolean locked = false;
+            try {
+                locked = lock.tryLock(time, unit);
+                return locked;
+            } finally {
+                if (!locked) {
+                    release();
+                }
+            }
+        }
+
+        @Override
+        public void unlock() {
+            lock.unlock();
+            release();
+        }
+
+        @Override
+        public Condition newCondition() {
+            return lock.newCondition();
+        }
+
+    }
+
+}
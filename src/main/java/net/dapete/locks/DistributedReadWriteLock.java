@@ -0,0 +1,515 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// A [ReadWriteLock] for locks which are read locked by many threads at the same time, whose read lock scales with the number of processors.
+///
+/// Every thread acquiring the read lock of a [ReentrantReadWriteLock] updates the same counter, so with many concurrent readers the cache line holding it
+/// keeps moving between processors. This lock instead counts readers in several slots, each on its own cache line, and a reader only updates the slot
+/// selected by its thread. A writer first announces itself, so new readers wait for it, and then waits until the readers counted in all slots have
+/// released the lock. Readers waiting for a writer are all released at once when it unlocks. This makes acquiring the write lock considerably more
+/// expensive, so it is intended for locks which are mostly read locked, as returned by [ReadWriteLocks#distributed()].
+///
+/// There is one slot per available processor (rounded up to a power of two, at most 64), and each needs 64 bytes, so a lock needs up to about 4 KiB, much
+/// more memory than a `ReentrantReadWriteLock`.
+///
+/// Both locks are reentrant. The read holds of each thread are counted in an object kept in a [ThreadLocal], which holds the lock whose read lock the thread
+/// acquired first and its hold count, so locking and unlocking the read lock does not allocate anything. Only threads holding the read locks of several
+/// locks at the same time count the others in a map. Only the first read hold of a thread updates its slot, and further read holds never wait for a
+/// writer. The thread holding the
+/// write lock can also acquire the read lock, which allows downgrading from the write lock to the read lock. Compared to `ReentrantReadWriteLock`, there
+/// are some limitations:
+///
+/// - The lock is not fair. Writers are preferred over new readers, and a writer waiting for readers to release the lock checks the slots periodically
+///   instead of being woken up by them.
+/// - [Conditions][Lock#newCondition()] are not supported.
+///
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class DistributedReadWriteLock implements ReadWriteLock {
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final VarHandle WRITER_ACTIVE;
+
+    static {
+        try {
+            WRITER_ACTIVE = MethodHandles.lookup().findVarHandle(DistributedReadWriteLock.class, "writerActive", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // 16 ints are 64 bytes, the most common cache line size
+    private static final int SLOT_STRIDE = 16;
+
+    private static final int MAX_SLOTS = 64;
+
+    private static final int SLOT_MASK = slotCount() - 1;
+
+    // the number of times a waiting writer checks the slots before it starts to park
+    private static final int SPINS = 64;
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // the read holds of the slots, at indexes which are multiples of SLOT_STRIDE, the first one padded from the array header as well
+    private final int[] slots = new int[(SLOT_MASK + 2) * SLOT_STRIDE];
+
+    // the read holds of the current thread; a lock is only contained while the thread holds its read lock
+    private static final ThreadLocal<ReadHolds> READ_HOLDS = ThreadLocal.withInitial(ReadHolds::new);
+
+    // the write lock of writerGate is held by the writer; new readers wait for it using the read lock, so they are all released at once when it unlocks
+    private final ReentrantReadWriteLock writerGate = new ReentrantReadWriteLock();
+
+    private final ReentrantReadWriteLock.WriteLock writerLock = writerGate.writeLock();
+
+    @SuppressWarnings("unused") // accessed using WRITER_ACTIVE
+    private volatile boolean writerActive;
+
+    private final Lock readLock = new ReadLock();
+
+    private final Lock writeLock = new WriteLock();
+
+    ///
+    /// Create an unlocked instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public DistributedReadWriteLock() {
+        // nothing to initialize
+    }
+
+    private static int slotCount() {
+        final int processors = Math.min(Runtime.getRuntime().availableProcessors(), MAX_SLOTS);
+        return processors == 1 ? 1 : Integer.highestOneBit(processors - 1) << 1;
+    }
+
+    private static int slotIndex() {
+        // the identity hash code of a thread never changes, so a thread always releases the slot it acquired
+        final int hash = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+        return ((hash >>> 16 & SLOT_MASK) + 1) * SLOT_STRIDE;
+    }
+
+    private boolean isWriterActive() {
+        return (boolean) WRITER_ACTIVE.getVolatile(this);
+    }
+
+    private void setWriterActive(boolean active) {
+        WRITER_ACTIVE.setVolatile(this, active);
+    }
+
+    ///
+    /// Try to acquire a read hold without waiting.
+    ///
+    /// Only the first read hold of a thread is counted in its slot. Further read holds must not wait for a writer, because the writer in turn waits for
+    /// the first one to be released.
+    ///
+    private boolean tryAcquireRead() {
+        final var readHolds = READ_HOLDS.get();
+        if (readHolds.increment(this)) {
+            return true;
+        }
+        if (!tryAcquireSlot(slotIndex())) {
+            return false;
+        }
+        readHolds.add(this);
+        return true;
+    }
+
+    ///
+    /// Try to count a reader in the slot at `index` without waiting.
+    ///
+    /// Both this and [#readersReleased()] use volatile accesses only: either the writer sees this read hold, or this reader sees the writer.
+    ///
+    private boolean tryAcquireSlot(int index) {
+        SLOTS.getAndAdd(slots, index, 1);
+        if (!isWriterActive() || writerLock.isHeldByCurrentThread()) {
+            return true;
+        }
+        SLOTS.getAndAdd(slots, index, -1);
+        return false;
+    }
+
+    private void acquireRead() {
+        while (!tryAcquireRead()) {
+            // wait for the writer to release its lock
+            writerGate.readLock().lock();
+            writerGate.readLock().unlock();
+        }
+    }
+
+    private void acquireReadInterruptibly() throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        while (!tryAcquireRead()) {
+            writerGate.readLock().lockInterruptibly();
+            writerGate.readLock().unlock();
+        }
+    }
+
+    private boolean tryAcquireReadNanos(long nanos) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final long deadline = System.nanoTime() + nanos;
+        while (!tryAcquireRead()) {
+            if (!writerGate.readLock().tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+            writerGate.readLock().unlock();
+        }
+        return true;
+    }
+
+    private void releaseRead() {
+        if (READ_HOLDS.get().decrement(this)) {
+            SLOTS.getAndAdd(slots, slotIndex(), -1);
+        }
+    }
+
+    private boolean readersReleased() {
+        for (int index = SLOT_STRIDE; index < slots.length; index += SLOT_STRIDE) {
+            if ((int) SLOTS.getVolatile(slots, index) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ///
+    /// Announce the writer holding `writerLock` for the first time, and wait until all readers have released the lock or the deadline has passed.
+    ///
+    /// @param deadline the deadline as in [System#nanoTime()], or `Long.MAX_VALUE` for no deadline.
+    /// @param interruptible whether to throw an [InterruptedException] if the current thread is interrupted.
+    /// @return `true` if all readers have released the lock, `false` if the deadline has passed.
+    ///
+    private boolean awaitReaders(long deadline, boolean interruptible) throws InterruptedException {
+        setWriterActive(true);
+        long parkNanos = 1;
+        for (int spins = 0; !readersReleased(); spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            final long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(parkNanos, remaining));
+            parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+            if (interruptible && Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    private void acquireWrite() {
+        writerLock.lock();
+        if (writerLock.getHoldCount() == 1) {
+            try {
+                awaitReaders(Long.MAX_VALUE, false);
+            } catch (InterruptedException e) {
+                // cannot happen, not interruptible
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private boolean tryAcquireWrite(long deadline, boolean interruptible) throws InterruptedException {
+        if (writerLock.getHoldCount() > 1) {
+            return true;
+        }
+        boolean acquired = false;
+        try {
+            acquired = awaitReaders(deadline, interruptible);
+        } finally {
+            if (!acquired) {
+                setWriterActive(false);
+                writerLock.unlock();
+            }
+        }
+        return acquired;
+    }
+
+    private void releaseWrite() {
+        if (!writerLock.isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException();
+        }
+        if (writerLock.getHoldCount() == 1) {
+            setWriterActive(false);
+        }
+        writerLock.unlock();
+    }
+
+    ///
+    /// Return the lock used for reading.
+    ///
+    /// @return the lock used for reading.
+    ///
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    ///
+    /// Return the lock used for writing.
+    ///
+    /// @return the lock used for writing.
+    ///
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    ///
+    /// Return the number of threads holding the read lock; a thread holding it more than once is only counted once. This sums up all slots, so it is only
+    /// an estimate while the lock is in use.
+    ///
+    /// @return the number of threads holding the read lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int getReadLockCount() {
+        int count = 0;
+        for (int index = SLOT_STRIDE; index < slots.length; index += SLOT_STRIDE) {
+            count += (int) SLOTS.getVolatile(slots, index);
+        }
+        return count;
+    }
+
+    ///
+    /// Return the number of holds on the read lock by the current thread.
+    ///
+    /// @return the number of holds on the read lock by the current thread, or 0 if it is not held by the current thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int getReadHoldCount() {
+        return READ_HOLDS.get().count(this);
+    }
+
+    ///
+    /// Return `true` if the write lock is held by any thread.
+    ///
+    /// @return `true` if the write lock is held by any thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean isWriteLocked() {
+        return writerGate.isWriteLocked();
+    }
+
+    ///
+    /// Return `true` if the write lock is held by the current thread.
+    ///
+    /// @return `true` if the write lock is held by the current thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean isWriteLockedByCurrentThread() {
+        return writerLock.isHeldByCurrentThread();
+    }
+
+    ///
+    /// Return the number of holds on the write lock by the current thread.
+    ///
+    /// @return the number of holds on the write lock by the current thread, or 0 if it is not held by the current thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int getWriteHoldCount() {
+        return writerLock.getHoldCount();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[Write locks = " + (isWriteLocked() ? 1 : 0) + ", Read locks = " + getReadLockCount() + "]";
+    }
+
+    ///
+    /// The read lock of a [DistributedReadWriteLock].
+    ///
+    /// The read holds of a thread. The lock whose read lock the thread acquired first is kept in a field, like `firstReader` of [ReentrantReadWriteLock],
+    /// so a thread holding a single read lock never allocates or uses a map. The read holds of further locks are counted in a map which is only created
+    /// when a thread holds the read locks of several locks at the same time.
+    ///
+    private static final class ReadHolds {
+
+        private @Nullable DistributedReadWriteLock firstLock;
+
+        private int firstCount;
+
+        private @Nullable Map<DistributedReadWriteLock, int[]> otherLocks;
+
+        ///
+        /// Add a read hold of `lock` if the thread already holds its read lock.
+        ///
+        /// @return `true` if the thread already held the read lock of `lock`.
+        ///
+        boolean increment(DistributedReadWriteLock lock) {
+            if (firstLock == lock) {
+                firstCount++;
+                return true;
+            }
+            final int[] holdCount = otherLocks == null ? null : otherLocks.get(lock);
+            if (holdCount != null) {
+                holdCount[0]++;
+                return true;
+            }
+            return false;
+        }
+
+        ///
+        /// Add the first read hold of `lock`.
+        ///
+        void add(DistributedReadWriteLock lock) {
+            if (firstLock == null) {
+                firstLock = lock;
+                firstCount = 1;
+            } else {
+                var others = otherLocks;
+                if (others == null) {
+                    others = new IdentityHashMap<>();
+                    otherLocks = others;
+                }
+                others.put(lock, new int[] {1});
+            }
+        }
+
+        ///
+        /// Remove a read hold of `lock`.
+        ///
+        /// @return `true` if this was the last read hold of `lock`.
+        /// @throws IllegalMonitorStateException if the thread does not hold the read lock of `lock`.
+        ///
+        boolean decrement(DistributedReadWriteLock lock) {
+            if (firstLock == lock) {
+                if (--firstCount == 0) {
+                    firstLock = null;
+                    return true;
+                }
+                return false;
+            }
+            final var others = otherLocks;
+            final int[] holdCount = others == null ? null : others.get(lock);
+            if (others == null || holdCount == null) {
+                throw new IllegalMonitorStateException();
+            }
+            if (--holdCount[0] == 0) {
+                others.remove(lock);
+                return true;
+            }
+            return false;
+        }
+
+        int count(DistributedReadWriteLock lock) {
+            if (firstLock == lock) {
+                return firstCount;
+            }
+            final int[] holdCount = otherLocks == null ? null : otherLocks.get(lock);
+            return holdCount == null ? 0 : holdCount[0];
+        }
+
+    }
+
+    ///
+    private final class ReadLock implements Lock {
+
+        @Override
+        public void lock() {
+            acquireRead();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            acquireReadInterruptibly();
+        }
+
+        @Override
+        public boolean tryLock() {
+            return tryAcquireRead();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return tryAcquireReadNanos(unit.toNanos(time));
+        }
+
+        @Override
+        public void unlock() {
+            releaseRead();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("DistributedReadWriteLock does not support conditions");
+        }
+
+        @Override
+        public String toString() {
+            return DistributedReadWriteLock.this + ".readLock";
+        }
+
+    }
+
+    ///
+    /// The write lock of a [DistributedReadWriteLock].
+    ///
+    private final class WriteLock implements Lock {
+
+        @Override
+        public void lock() {
+            acquireWrite();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            writerLock.lockInterruptibly();
+            tryAcquireWrite(Long.MAX_VALUE, true);
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!writerLock.tryLock()) {
+                return false;
+            }
+            try {
+                return tryAcquireWrite(System.nanoTime(), false);
+            } catch (InterruptedException e) {
+                // cannot happen, not interruptible
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(time);
+            return writerLock.tryLock(time, unit) && tryAcquireWrite(deadline, true);
+        }
+
+        @Override
+        public void unlock() {
+            releaseWrite();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("DistributedReadWriteLock does not support conditions");
+        }
+
+        @Override
+        public String toString() {
+            return DistributedReadWriteLock.this + ".writeLock";
+        }
+
+    }
+
+}
@@ -0,0 +1,334 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking for paths in a hierarchy, like file paths or tenants and their entities, where locking a path also covers all paths below it:
+///
+/// ```
+/// final var locks = HierarchicalLocks.<String>create();
+/// try (final var pathLock = locks.acquireExclusive(List.of("tenant", "a"))) {
+///     // no other thread holds a lock on tenant/a or any path below it, like tenant/a/x
+/// }
+/// ```
+///
+/// A path is a list of keys, one for each level. Locking a path locks every prefix of it, using multiple granularity locking: the path itself is locked
+/// shared or exclusive, and each of its ancestors with a shared or exclusive _intent_. Intent locks are compatible with each other, so paths which only
+/// share ancestors, like `tenant/a` and `tenant/b`, can be locked in parallel, while a path which is locked exclusively blocks both locking its ancestors
+/// and any path below it.
+///
+/// The prefixes are always locked from the top of the hierarchy downwards, so a thread only ever waits for a path while holding locks on its ancestors.
+/// Because of this, threads which each hold at most one [PathLock] can never deadlock. Like the locks returned by [Locks#compact()], the locks of a path
+/// are not fair and do not track holds per thread: a thread holding a `PathLock` must not lock a path overlapping it in a conflicting mode, for example a
+/// path below a path it holds exclusively, because it would wait for itself.
+///
+/// Like with [Locks], the lock for each prefix is only kept as long as it is referenced, which is the case while a `PathLock` using it is held.
+///
+/// @param <K> the type of the keys in a path.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class HierarchicalLocks<K> {
+
+    private final PrefixLocks<K> prefixLocks;
+
+    HierarchicalLocks(Settings settings) {
+        this.prefixLocks = new PrefixLocks<>(settings);
+    }
+
+    ///
+    /// Return a new instance.
+    ///
+    /// @param <K> the type of the keys in a path.
+    /// @return a new instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> HierarchicalLocks<K> create() {
+        return new HierarchicalLocks<>(new Settings());
+    }
+
+    ///
+    /// Return a new instance partitioned into `concurrencyLevel` segments. See [Locks#withSupplier(java.util.function.Supplier, int)].
+    ///
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <K>              the type of the keys in a path.
+    /// @return a new instance.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> HierarchicalLocks<K> create(int concurrencyLevel) {
+        return HierarchicalLocks.<K>builder().concurrencyLevel(concurrencyLevel).create();
+    }
+
+    ///
+    /// Return a [HierarchicalLocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param <K> the type of the keys in a path.
+    /// @return a `HierarchicalLocksBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> HierarchicalLocksBuilder<K> builder() {
+        return new HierarchicalLocksBuilder<>();
+    }
+
+    ///
+    /// Return a [HierarchicalLocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param keyClass the class for the key type.
+    /// @param <K>      the type of the keys in a path.
+    /// @return a `HierarchicalLocksBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> HierarchicalLocksBuilder<K> builder(@SuppressWarnings("unused") Class<K> keyClass) {
+        return builder();
+    }
+
+    ///
+    /// Lock `path` shared, waiting if necessary. Other threads can lock the same path shared as well, but not lock it or any path below it exclusively.
+    ///
+    /// @param path the path.
+    /// @return the lock of the path, already locked.
+    /// @throws IllegalArgumentException if `path` is empty.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public PathLock acquireShared(List<? extends K> path) {
+        return acquire(path, IntentLock.SHARED);
+    }
+
+    ///
+    /// Lock `path` exclusively, waiting if necessary. No other thread can lock the same path, any path below it, or any of its ancestors shared or
+    /// exclusively.
+    ///
+    /// @param path the path.
+    /// @return the lock of the path, already locked.
+    /// @throws IllegalArgumentException if `path` is empty.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public PathLock acquireExclusive(List<? extends K> path) {
+        return acquire(path, IntentLock.EXCLUSIVE);
+    }
+
+    ///
+    /// Lock `path` shared, waiting if necessary, unless the current thread is interrupted. See [#acquireShared(List)].
+    ///
+    /// @param path the path.
+    /// @return the lock of the path, already locked.
+    /// @throws InterruptedException     if the current thread is interrupted while waiting.
+    /// @throws IllegalArgumentException if `path` is empty.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public PathLock acquireSharedInterruptibly(List<? extends K> path) throws InterruptedException {
+        return acquireInterruptibly(path, IntentLock.SHARED);
+    }
+
+    ///
+    /// Lock `path` exclusively, waiting if necessary, unless the current thread is interrupted. See [#acquireExclusive(List)].
+    ///
+    /// @param path the path.
+    /// @return the lock of the path, already locked.
+    /// @throws InterruptedException     if the current thread is interrupted while waiting.
+    /// @throws IllegalArgumentException if `path` is empty.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public PathLock acquireExclusiveInterruptibly(List<? extends K> path) throws InterruptedException {
+        return acquireInterruptibly(path, IntentLock.EXCLUSIVE);
+    }
+
+    ///
+    /// Lock `path` shared if this is possible right now. See [#acquireShared(List)].
+    ///
+    /// @param path the path.
+    /// @return the lock of the path, already locked, or `null` if the path or one of its ancestors is locked in a conflicting mode.
+    /// @throws IllegalArgumentException if `path` is empty.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable PathLock tryAcquireShared(List<? extends K> path) {
+        return tryAcquire(path, IntentLock.SHARED);
+    }
+
+    ///
+    /// Lock `path` exclusively if this is possible right now. See [#acquireExclusive(List)].
+    ///
+    /// @param path the path.
+    /// @return the lock of the path, already locked, or `null` if the path, one of its ancestors or a path below it is locked in a conflicting mode.
+    /// @throws IllegalArgumentException if `path` is empty.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable PathLock tryAcquireExclusive(List<? extends K> path) {
+        return tryAcquire(path, IntentLock.EXCLUSIVE);
+    }
+
+    private PathLock acquire(List<? extends K> path, int mode) {
+        final var pathLock = new PathLock(locksFor(path), mode);
+        final var locks = pathLock.locks;
+        int acquired = 0;
+        try {
+            for (; acquired < locks.length; acquired++) {
+                locks[acquired].acquire(pathLock.modeAt(acquired));
+            }
+        } finally {
+            if (acquired < locks.length) {
+                pathLock.releaseFrom(acquired - 1);
+            }
+        }
+        return pathLock;
+    }
+
+    private PathLock acquireInterruptibly(List<? extends K> path, int mode) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var pathLock = new PathLock(locksFor(path), mode);
+        final var locks = pathLock.locks;
+        int acquired = 0;
+        try {
+            for (; acquired < locks.length; acquired++) {
+                locks[acquired].acquireInterruptibly(pathLock.modeAt(acquired));
+            }
+        } finally {
+            if (acquired < locks.length) {
+                pathLock.releaseFrom(acquired - 1);
+            }
+        }
+        return pathLock;
+    }
+
+    private @Nullable PathLock tryAcquire(List<? extends K> path, int mode) {
+        final var pathLock = new PathLock(locksFor(path), mode);
+        final var locks = pathLock.locks;
+        for (int i = 0; i < locks.length; i++) {
+            if (!locks[i].tryAcquire(pathLock.modeAt(i))) {
+                pathLock.releaseFrom(i - 1);
+                return null;
+            }
+        }
+        return pathLock;
+    }
+
+    ///
+    /// Return the locks for all prefixes of `path`, starting with the shortest one.
+    ///
+    private IntentLock[] locksFor(List<? extends K> path) {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("path must not be empty");
+        }
+        final List<K> keys = List.copyOf(path);
+        final var prefixes = new ArrayList<List<K>>(keys.size());
+        for (int i = 1; i <= keys.size(); i++) {
+            prefixes.add(keys.subList(0, i));
+        }
+        return prefixLocks.getAll(prefixes).toArray(new IntentLock[0]);
+    }
+
+    ///
+    /// Return the current number of locks managed by this instance, which is one for each distinct prefix of the paths currently locked.
+    ///
+    /// @return the current number of locks managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int size() {
+        return prefixLocks.size();
+    }
+
+    int getConcurrencyLevel() {
+        return prefixLocks.getConcurrencyLevel();
+    }
+
+    ///
+    /// The locks of the prefixes of all paths, by prefix.
+    ///
+    private static final class PrefixLocks<K> extends WeakKeyReferences<List<K>, IntentLock> {
+
+        PrefixLocks(Settings settings) {
+            super(IntentLock::new, settings);
+        }
+
+    }
+
+    ///
+    /// The lock of a path acquired from a [HierarchicalLocks] instance, which has to be [released][#release()] again. It can also be used in a
+    /// `try`-with-resources statement.
+    ///
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final class PathLock implements AutoCloseable {
+
+        // the locks of all prefixes of the path, which are kept referenced while the path is locked
+        private final IntentLock[] locks;
+
+        private final int mode;
+
+        private boolean released;
+
+        private PathLock(IntentLock[] locks, int mode) {
+            this.locks = locks;
+            this.mode = mode;
+        }
+
+        ///
+        /// Return the mode the lock of the prefix at `index` is held in: the mode of the path itself for the last one, the matching intent for the others.
+        ///
+        private int modeAt(int index) {
+            if (index == locks.length - 1) {
+                return mode;
+            }
+            return mode == IntentLock.SHARED ? IntentLock.INTENT_SHARED : IntentLock.INTENT_EXCLUSIVE;
+        }
+
+        ///
+        /// Release the locks of the prefixes from `index` up to the shortest one, in the reverse order they were acquired in.
+        ///
+        private void releaseFrom(int index) {
+            for (int i = index; i >= 0; i--) {
+                locks[i].release(modeAt(i));
+            }
+        }
+
+        ///
+        /// Return `true` if the path is locked exclusively, `false` if it is locked shared.
+        ///
+        /// @return `true` if the path is locked exclusively.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isExclusive() {
+            return mode == IntentLock.EXCLUSIVE;
+        }
+
+        ///
+        /// Unlock the path. Calling this more than once has no further effect.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public void release() {
+            if (!released) {
+                released = true;
+                releaseFrom(locks.length - 1);
+            }
+        }
+
+        ///
+        /// Return `true` if the path has been unlocked.
+        ///
+        /// @return `true` if the path has been unlocked.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isReleased() {
+            return released;
+        }
+
+        ///
+        /// Unlock the path, same as [#release()].
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        @Override
+        public void close() {
+            release();
+        }
+
+    }
+
+}
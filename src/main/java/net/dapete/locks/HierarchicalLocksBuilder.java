@@ -0,0 +1,42 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Builder for instances of [HierarchicalLocks] with custom settings.
+///
+/// Instances can be created using [HierarchicalLocks#builder()] and [HierarchicalLocks#builder(Class)], for example:
+///
+/// ```
+/// final var locks = HierarchicalLocks.<String>builder()
+///         .concurrencyLevel(16)
+///         .create();
+/// ```
+///
+/// @param <K> the type of the keys in a path.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class HierarchicalLocksBuilder<K> extends AbstractKeyedBuilder<HierarchicalLocksBuilder<K>> {
+
+    HierarchicalLocksBuilder() {
+    }
+
+    @Override
+    HierarchicalLocksBuilder<K> self() {
+        return this;
+    }
+
+    ///
+    /// Return a [HierarchicalLocks] instance with the settings of this builder.
+    ///
+    /// @return a `HierarchicalLocks` instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public HierarchicalLocks<K> create() {
+        return new HierarchicalLocks<>(settings);
+    }
+
+}
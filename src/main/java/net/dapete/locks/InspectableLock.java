@@ -0,0 +1,33 @@
+package net.dapete.locks;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+
+///
+/// A lock whose holders and waiting threads can be inspected by [LockDiagnostics].
+///
+interface InspectableLock {
+
+    ///
+    /// Return the thread holding this lock exclusively, if any.
+    ///
+    /// @return the thread holding this lock exclusively, or `null`.
+    ///
+    @Nullable Thread getExclusiveOwner();
+
+    ///
+    /// Return the number of shared holds of this lock, by all threads.
+    ///
+    /// @return the number of shared holds of this lock.
+    ///
+    int getSharedHolds();
+
+    ///
+    /// Return the threads which may be waiting to acquire this lock.
+    ///
+    /// @return the threads which may be waiting to acquire this lock.
+    ///
+    Collection<Thread> getWaitingThreads();
+
+}
@@ -0,0 +1,35 @@
+package net.dapete.locks;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+///
+/// A [ReentrantLock] which makes its owner and waiting threads available to [LockDiagnostics]. It behaves exactly like a `ReentrantLock`, and does not do
+/// any additional work while it is used.
+///
+final class InspectableReentrantLock extends ReentrantLock implements InspectableLock {
+
+    private static final long serialVersionUID = 1L;
+
+    InspectableReentrantLock(boolean fair) {
+        super(fair);
+    }
+
+    @Override
+    public @Nullable Thread getExclusiveOwner() {
+        return getOwner();
+    }
+
+    @Override
+    public int getSharedHolds() {
+        return 0;
+    }
+
+    @Override
+    public Collection<Thread> getWaitingThreads() {
+        return getQueuedThreads();
+    }
+
+}
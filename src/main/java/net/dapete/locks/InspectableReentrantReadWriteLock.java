@@ -0,0 +1,37 @@
+package net.dapete.locks;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+///
+/// A [ReentrantReadWriteLock] which makes its owner and waiting threads available to [LockDiagnostics]. It behaves exactly like a
+/// `ReentrantReadWriteLock`, and does not do any additional work while it is used.
+///
+/// The threads holding the read lock are not known, only their number.
+///
+final class InspectableReentrantReadWriteLock extends ReentrantReadWriteLock implements InspectableLock {
+
+    private static final long serialVersionUID = 1L;
+
+    InspectableReentrantReadWriteLock(boolean fair) {
+        super(fair);
+    }
+
+    @Override
+    public @Nullable Thread getExclusiveOwner() {
+        return getOwner();
+    }
+
+    @Override
+    public int getSharedHolds() {
+        return getReadLockCount();
+    }
+
+    @Override
+    public Collection<Thread> getWaitingThreads() {
+        return getQueuedThreads();
+    }
+
+}
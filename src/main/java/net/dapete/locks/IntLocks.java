@@ -0,0 +1,178 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking with implementations of [Lock], using primitive `int` keys.
+///
+/// This is a view of a [LongLocks] instance which only accepts `int` keys: every key is widened to `long`, and all methods behave exactly like the
+/// corresponding methods of `LongLocks`. The keys are never boxed, so this avoids allocating objects to look up a lock, and uses considerably less memory
+/// per lock than `Locks<Integer, ...>`.
+///
+/// @param <L> the `Lock` type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class IntLocks<L extends Lock> {
+
+    private final LongLocks<L> locks;
+
+    private IntLocks(LongLocks<L> locks) {
+        this.locks = locks;
+    }
+
+    ///
+    /// Return an instance using [Lock] implementations created by the specified `lockSupplier`. See [LongLocks#withSupplier(Supplier)].
+    ///
+    /// @param lockSupplier a `Supplier` for instances of [L] (usually the constructor of a class implementing `Lock`)
+    /// @param <L>          the `Lock` type
+    /// @return an instance using `Lock` implementations created by the specified `lockSupplier`
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <L extends Lock> IntLocks<L> withSupplier(Supplier<L> lockSupplier) {
+        return new IntLocks<>(LongLocks.withSupplier(lockSupplier));
+    }
+
+    ///
+    /// Return an instance using [Lock] implementations created by the specified `lockSupplier`, partitioned into `concurrencyLevel` segments. See
+    /// [LongLocks#withSupplier(Supplier, int)].
+    ///
+    /// @param lockSupplier     a `Supplier` for instances of [L] (usually the constructor of a class implementing `Lock`)
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <L>              the `Lock` type
+    /// @return an instance using `Lock` implementations created by the specified `lockSupplier`
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <L extends Lock> IntLocks<L> withSupplier(Supplier<L> lockSupplier, int concurrencyLevel) {
+        return new IntLocks<>(LongLocks.withSupplier(lockSupplier, concurrencyLevel));
+    }
+
+    ///
+    /// Return an instance using [ReentrantLock].
+    ///
+    /// @return an instance using `ReentrantLock`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static IntLocks<ReentrantLock> reentrant() {
+        return new IntLocks<>(LongLocks.reentrant());
+    }
+
+    ///
+    /// Return an instance using [ReentrantLock] with the given fairness policy.
+    ///
+    /// @param fair `true` if the locks should use a fair ordering policy.
+    /// @return an instance using `ReentrantLock`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static IntLocks<ReentrantLock> reentrant(boolean fair) {
+        return new IntLocks<>(LongLocks.reentrant(fair));
+    }
+
+    ///
+    /// Return an instance using [ReentrantLock] with the given fairness policy, partitioned into `concurrencyLevel` segments.
+    ///
+    /// @param fair             `true` if the locks should use a fair ordering policy.
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @return an instance using `ReentrantLock`.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static IntLocks<ReentrantLock> reentrant(boolean fair, int concurrencyLevel) {
+        return new IntLocks<>(LongLocks.reentrant(fair, concurrencyLevel));
+    }
+
+    ///
+    /// Return a lock for `key`. See [LongLocks#get(long)].
+    ///
+    /// @param key the key
+    /// @return a lock for `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L get(int key) {
+        return locks.get(key);
+    }
+
+    ///
+    /// Return a lock for `key` already locked. See [LongLocks#lock(long)].
+    ///
+    /// @param key the key
+    /// @return a lock for `key` already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L lock(int key) {
+        return locks.lock(key);
+    }
+
+    ///
+    /// Return a lock for `key` already locked, or `null` if the lock was not available. See [LongLocks#tryLock(long)].
+    ///
+    /// @param key the key
+    /// @return a lock for `key` already locked, or `null` if the lock was not available.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable L tryLock(int key) {
+        return locks.tryLock(key);
+    }
+
+    ///
+    /// Return a lock for `key` already locked, or `null` if the waiting time elapsed before the lock was acquired. See
+    /// [LongLocks#tryLock(long, long, TimeUnit)].
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return a lock for `key` already locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable L tryLock(int key, long time, TimeUnit unit) throws InterruptedException {
+        return locks.tryLock(key, time, unit);
+    }
+
+    ///
+    /// Return a lock for `key` already locked using [Lock#lockInterruptibly()]. See [LongLocks#lockInterruptibly(long)].
+    ///
+    /// @param key the key
+    /// @return a lock for `key` already locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L lockInterruptibly(int key) throws InterruptedException {
+        return locks.lockInterruptibly(key);
+    }
+
+    ///
+    /// Lock the lock for `key` and return a [LockHandle] to unlock it again. See [LongLocks#acquire(long)].
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the lock already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public LockHandle<L> acquire(int key) {
+        return locks.acquire(key);
+    }
+
+    ///
+    /// Return the current number of locks managed by this instance.
+    ///
+    /// @return the current number of locks managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int size() {
+        return locks.size();
+    }
+
+    int getConcurrencyLevel() {
+        return locks.getConcurrencyLevel();
+    }
+
+}
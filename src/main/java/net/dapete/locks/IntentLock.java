@@ -0,0 +1,141 @@
+package net.dapete.locks;
+
+///
+/// A lock with the four modes of multiple granularity locking, as used by [HierarchicalLocks] for each node of a path:
+///
+/// - [#INTENT_SHARED] is held on the ancestors of a node locked in [#SHARED] mode.
+/// - [#INTENT_EXCLUSIVE] is held on the ancestors of a node locked in [#EXCLUSIVE] mode.
+/// - [#SHARED] allows other shared and intent shared holders.
+/// - [#EXCLUSIVE] does not allow any other holders.
+///
+/// So a node locked exclusively blocks locking any of its descendants, because their intent locks conflict with it, and a node with a descendant locked
+/// exclusively cannot be locked shared or exclusive, while unrelated descendants can be locked in parallel.
+///
+/// Holds are not tracked per thread; the lock is not reentrant in the sense that a thread holding it in a mode conflicting with another mode it requests
+/// waits for itself. Like [CompactReadWriteLock], it is not fair, so exclusive waiters can be kept waiting by a continuous stream of compatible holders.
+///
+final class IntentLock extends CompactSynchronizer {
+
+    static final int INTENT_SHARED = 0;
+
+    static final int INTENT_EXCLUSIVE = 1;
+
+    static final int SHARED = 2;
+
+    static final int EXCLUSIVE = 3;
+
+    private static final int EXCLUSIVE_LOCKED = 1 << 30;
+
+    // intent exclusive and shared holds conflict with each other, so they share one count; this bit is set while it counts shared holds
+    private static final int GROUP_SHARED = 1 << 29;
+
+    private static final int GROUP_SHIFT = 15;
+
+    private static final int GROUP_UNIT = 1 << GROUP_SHIFT;
+
+    private static final int GROUP_HOLDS = (GROUP_SHARED - 1) & ~(GROUP_UNIT - 1);
+
+    private static final int INTENT_SHARED_HOLDS = GROUP_UNIT - 1;
+
+    @Override
+    boolean isShared(int mode) {
+        return mode != EXCLUSIVE;
+    }
+
+    @Override
+    boolean tryAcquire(int mode) {
+        while (true) {
+            final int state = getState();
+            final int lockState = state & ~WAITERS;
+            final int newState;
+            if (mode == INTENT_SHARED) {
+                if ((lockState & EXCLUSIVE_LOCKED) != 0) {
+                    return false;
+                }
+                checkMaximum(lockState & INTENT_SHARED_HOLDS, INTENT_SHARED_HOLDS);
+                newState = state + 1;
+            } else if (mode == EXCLUSIVE) {
+                if (lockState != 0) {
+                    return false;
+                }
+                newState = state | EXCLUSIVE_LOCKED;
+            } else {
+                final int groupHolds = lockState & GROUP_HOLDS;
+                // the group must be empty or already counting holds of the same mode
+                if ((lockState & EXCLUSIVE_LOCKED) != 0 || groupHolds != 0 && ((lockState & GROUP_SHARED) != 0) != (mode == SHARED)) {
+                    return false;
+                }
+                checkMaximum(groupHolds, GROUP_HOLDS);
+                newState = (state + GROUP_UNIT) | (mode == SHARED ? GROUP_SHARED : 0);
+            }
+            if (compareAndSetState(state, newState)) {
+                return true;
+            }
+        }
+    }
+
+    private static void checkMaximum(int holds, int maximum) {
+        if (holds == maximum) {
+            throw new Error("Maximum lock count exceeded");
+        }
+    }
+
+    ///
+    /// Release one hold of the lock in the given `mode`.
+    ///
+    /// @param mode the mode.
+    /// @throws IllegalMonitorStateException if the lock is not held in this mode.
+    ///
+    void release(int mode) {
+        while (true) {
+            final int state = getState() & ~WAITERS;
+            final int newState;
+            if (mode == INTENT_SHARED) {
+                if ((state & INTENT_SHARED_HOLDS) == 0) {
+                    throw new IllegalMonitorStateException();
+                }
+                newState = state - 1;
+            } else if (mode == EXCLUSIVE) {
+                if ((state & EXCLUSIVE_LOCKED) == 0) {
+                    throw new IllegalMonitorStateException();
+                }
+                newState = state & ~EXCLUSIVE_LOCKED;
+            } else {
+                if ((state & GROUP_HOLDS) == 0 || ((state & GROUP_SHARED) != 0) != (mode == SHARED)) {
+                    throw new IllegalMonitorStateException();
+                }
+                final int released = state - GROUP_UNIT;
+                newState = (released & GROUP_HOLDS) == 0 ? released & ~GROUP_SHARED : released;
+            }
+            // intent shared holds only keep exclusive waiters waiting, which need the lock to be free; the group keeps everyone but intent shared waiting
+            final boolean wake = mode == INTENT_SHARED ? newState == 0 : (newState & GROUP_HOLDS) == 0;
+            if (release(state, newState, wake)) {
+                return;
+            }
+        }
+    }
+
+    ///
+    /// Return the number of holds of the lock in the given `mode`, by all threads.
+    ///
+    /// @param mode the mode.
+    /// @return the number of holds of the lock in the given `mode`.
+    ///
+    int getHoldCount(int mode) {
+        final int state = getState();
+        if (mode == INTENT_SHARED) {
+            return state & INTENT_SHARED_HOLDS;
+        } else if (mode == EXCLUSIVE) {
+            return (state & EXCLUSIVE_LOCKED) != 0 ? 1 : 0;
+        }
+        final boolean shared = (state & GROUP_SHARED) != 0;
+        return shared == (mode == SHARED) ? (state & GROUP_HOLDS) >>> GROUP_SHIFT : 0;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[Intent shared locks = " + getHoldCount(INTENT_SHARED) + ", Intent exclusive locks = " + getHoldCount(INTENT_EXCLUSIVE)
+                + ", Shared locks = " + getHoldCount(SHARED) + ", Exclusive locks = " + getHoldCount(EXCLUSIVE) + "]";
+    }
+
+}
@@ -0,0 +1,264 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Runs tasks on an [Executor] so that tasks submitted for the same key run one after the other, in the order they were submitted, while tasks for
+/// different keys can run in parallel.
+///
+/// This replaces locking a key inside a task, which keeps a thread of the executor waiting while another task holds the lock for the key:
+///
+/// ```
+/// final var executor = KeyedExecutor.<String>create(ForkJoinPool.commonPool());
+/// executor.submit(url, () -> fetch(url));
+/// ```
+///
+/// Each key has a queue of tasks. When a task is submitted to an idle key, the queue is scheduled on the executor, which then runs the tasks of that
+/// key until the queue is empty. To let other keys run, a queue which still has tasks after [#BATCH_SIZE] of them have run is scheduled again instead of
+/// continuing. No thread of the executor ever waits for a key.
+///
+/// Like with [Locks], the queue for a key is only kept as long as it is referenced, which is the case while it has tasks, so keys which are no longer
+/// used are removed automatically.
+///
+/// If the executor rejects a queue, all its tasks which have not run yet are completed exceptionally with the [RejectedExecutionException]. If
+/// [Executor#execute(Runnable)] throws anything else, for example an [OutOfMemoryError] because no thread could be started, these tasks are completed
+/// exceptionally with it as well, and it is then rethrown to the caller of `submit` (or to the executor, if the queue was being scheduled again after a
+/// batch of tasks).
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class KeyedExecutor<K> extends WeakKeyReferences<K, KeyedExecutor.SerialQueue> {
+
+    ///
+    /// The maximum number of tasks of one key which run before the queue of that key is scheduled on the executor again.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final int BATCH_SIZE = 64;
+
+    KeyedExecutor(Executor executor, Settings settings) {
+        super(() -> new SerialQueue(executor), settings);
+    }
+
+    ///
+    /// Return a new instance running tasks on `executor`.
+    ///
+    /// @param executor the executor.
+    /// @param <K>      the key type.
+    /// @return a new instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> KeyedExecutor<K> create(Executor executor) {
+        return new KeyedExecutor<>(executor, new Settings());
+    }
+
+    ///
+    /// Return a new instance running tasks on `executor`, partitioned into `concurrencyLevel` segments. See
+    /// [Locks#withSupplier(java.util.function.Supplier, int)].
+    ///
+    /// @param executor         the executor.
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <K>              the key type.
+    /// @return a new instance.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> KeyedExecutor<K> create(Executor executor, int concurrencyLevel) {
+        return KeyedExecutor.<K>builder().concurrencyLevel(concurrencyLevel).create(executor);
+    }
+
+    ///
+    /// Return a [KeyedExecutorBuilder] to create an instance with custom settings.
+    ///
+    /// @param <K> the key type.
+    /// @return a `KeyedExecutorBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> KeyedExecutorBuilder<K> builder() {
+        return new KeyedExecutorBuilder<>();
+    }
+
+    ///
+    /// Return a [KeyedExecutorBuilder] to create an instance with custom settings.
+    ///
+    /// @param keyClass the class for the key type.
+    /// @param <K>      the key type.
+    /// @return a `KeyedExecutorBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> KeyedExecutorBuilder<K> builder(@SuppressWarnings("unused") Class<K> keyClass) {
+        return builder();
+    }
+
+    ///
+    /// Submit a task for `key`. It runs after all tasks previously submitted for the same key have completed.
+    ///
+    /// Cancelling the returned future before the task has started prevents it from running. A task which is already running is not interrupted.
+    ///
+    /// @param key  the key.
+    /// @param task the task.
+    /// @param <T>  the result type of the task.
+    /// @return a future which is completed with the result of the task, or exceptionally with the exception it throws.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public <T> CompletableFuture<T> submit(K key, Callable<T> task) {
+        final var future = new CompletableFuture<T>();
+        get(key).add(new Task<>(task, future));
+        return future;
+    }
+
+    ///
+    /// Submit a task for `key`. It runs after all tasks previously submitted for the same key have completed. See [#submit(Object, Callable)].
+    ///
+    /// @param key  the key.
+    /// @param task the task.
+    /// @return a future which is completed when the task has run, or exceptionally with the exception it throws.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public CompletableFuture<@Nullable Void> submit(K key, Runnable task) {
+        return submit(key, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    ///
+    /// Return the current number of keys with tasks which are queued or running.
+    ///
+    /// @return the current number of keys managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public int size() {
+        return super.size();
+    }
+
+    ///
+    /// A task and the future for its result.
+    ///
+    private static final class Task<T> {
+
+        private final Callable<T> callable;
+
+        private final CompletableFuture<T> future;
+
+        Task(Callable<T> callable, CompletableFuture<T> future) {
+            this.callable = callable;
+            this.future = future;
+        }
+
+        void run() {
+            if (future.isDone()) {
+                // cancelled before it could run
+                return;
+            }
+            try {
+                future.complete(callable.call());
+            } catch (Throwable e) {
+                // like CompletableFuture.supplyAsync, report anything thrown by the task to the caller
+                future.completeExceptionally(e);
+            }
+        }
+
+        void reject(Throwable e) {
+            future.completeExceptionally(e);
+        }
+
+    }
+
+    ///
+    /// The queue of tasks for a key.
+    ///
+    /// Tasks are added to the queue before the count is incremented. Whoever increments the count from 0 schedules the queue on the executor, which then
+    /// runs tasks and decrements the count after each one, until it reaches 0. Because of that order, the queue always contains a task when the count is
+    /// greater than 0.
+    ///
+    static final class SerialQueue implements Runnable {
+
+        private static final VarHandle COUNT;
+
+        static {
+            try {
+                COUNT = MethodHandles.lookup().findVarHandle(SerialQueue.class, "count", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final Executor executor;
+
+        private final Queue<Task<?>> tasks = new ConcurrentLinkedQueue<>();
+
+        @SuppressWarnings("unused") // accessed using COUNT
+        private volatile int count;
+
+        SerialQueue(Executor executor) {
+            this.executor = executor;
+        }
+
+        void add(Task<?> task) {
+            tasks.add(task);
+            if ((int) COUNT.getAndAdd(this, 1) == 0) {
+                schedule();
+            }
+        }
+
+        // scheduling keeps this queue referenced until its tasks have run
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                reject(e);
+            } catch (Throwable e) {
+                // the queue has not been scheduled, so the count has to be reset to 0, or the next task would never run either
+                reject(e);
+                throw e;
+            }
+        }
+
+        ///
+        /// Complete all tasks which have not run yet exceptionally with `e`, and decrement the count for each of them, until it reaches 0. Tasks added
+        /// concurrently are either completed as well, or schedule the queue again after the count has reached 0.
+        ///
+        private void reject(Throwable e) {
+            do {
+                final var task = tasks.poll();
+                if (task != null) {
+                    task.reject(e);
+                }
+            } while ((int) COUNT.getAndAdd(this, -1) > 1);
+        }
+
+        @Override
+        public void run() {
+            for (int executed = 1; ; executed++) {
+                final var task = tasks.poll();
+                if (task != null) {
+                    task.run();
+                }
+                if ((int) COUNT.getAndAdd(this, -1) == 1) {
+                    return;
+                }
+                if (executed == BATCH_SIZE) {
+                    schedule();
+                    return;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.concurrent.Executor;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Builder for instances of [KeyedExecutor] with custom settings.
+///
+/// Instances can be created using [KeyedExecutor#builder()] and [KeyedExecutor#builder(Class)], for example:
+///
+/// ```
+/// final var executor = KeyedExecutor.<String>builder()
+///         .concurrencyLevel(16)
+///         .create(ForkJoinPool.commonPool());
+/// ```
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class KeyedExecutorBuilder<K> extends AbstractKeyedBuilder<KeyedExecutorBuilder<K>> {
+
+    KeyedExecutorBuilder() {
+    }
+
+    @Override
+    KeyedExecutorBuilder<K> self() {
+        return this;
+    }
+
+    ///
+    /// Return a [KeyedExecutor] instance running tasks on `executor`, with the settings of this builder.
+    ///
+    /// @param executor the executor.
+    /// @return a `KeyedExecutor` instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public KeyedExecutor<K> create(Executor executor) {
+        return new KeyedExecutor<>(executor, settings);
+    }
+
+}
@@ -0,0 +1,161 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking with implementations of [Lock], implemented by [Locks] and [StripedLocks].
+///
+/// Only [#get(Object)] and [#getAll(Collection)] differ between the implementations; all other methods lock the locks they return.
+///
+/// @param <K> the key type.
+/// @param <L> the [Lock] type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public interface KeyedLocks<K, L extends Lock> {
+
+    ///
+    /// Return the lock for `key`. Equal keys return the same lock as long as it is used.
+    ///
+    /// @param key the key
+    /// @return the lock for `key`.
+    ///
+    L get(K key);
+
+    ///
+    /// Return the locks for all `keys`, in the same order, as if [#get(Object)] had been called for each of them.
+    ///
+    /// @param keys the keys.
+    /// @return a list with the lock for each of `keys`, in the same order.
+    ///
+    List<L> getAll(Collection<? extends K> keys);
+
+    ///
+    /// Return the number of locks currently kept by this instance.
+    ///
+    /// @return the number of locks currently kept by this instance.
+    ///
+    int size();
+
+    ///
+    /// Return the lock for `key` already locked using [Lock#lock()].
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already locked.
+    ///
+    default L lock(K key) {
+        final var lock = get(key);
+        lock.lock();
+        return lock;
+    }
+
+    ///
+    /// Return the lock for `key` already locked using [Lock#tryLock()], or `null` if the lock was not available.
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already locked, or `null` if the lock was not available.
+    ///
+    default @Nullable L tryLock(K key) {
+        final var lock = get(key);
+        return lock.tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return the lock for `key` already locked using [Lock#tryLock(long, TimeUnit)], or `null` if the waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return the lock for `key` already locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    default @Nullable L tryLock(K key, long time, TimeUnit unit) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var lock = get(key);
+        return lock.tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return the lock for `key` already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up for the key.
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    default L lockInterruptibly(K key) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var lock = get(key);
+        lock.lockInterruptibly();
+        return lock;
+    }
+
+    ///
+    /// Lock the lock for `key` using [Lock#lock()] and return a [LockHandle] to unlock it again, see [Locks#acquire(Object)].
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the lock already locked.
+    ///
+    default LockHandle<L> acquire(K key) {
+        final var lock = lock(key);
+        return new LockHandle<>(lock, lock);
+    }
+
+    ///
+    /// Call `action` while holding the lock for `key`, and return its result, see [Locks#withLock(Object, Supplier)].
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    ///
+    default <T> T withLock(K key, Supplier<? extends T> action) {
+        final var lock = lock(key);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ///
+    /// Call `action` with `key` while holding the lock for `key`, and return its result, see [Locks#withLock(Object, Function)].
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    ///
+    default <T> T withLock(K key, Function<? super K, ? extends T> action) {
+        final var lock = lock(key);
+        try {
+            return action.apply(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ///
+    /// Lock the locks for all `keys` in a globally consistent order and return a [LockGroup] to unlock them again, see [Locks#lockAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all locks already locked.
+    ///
+    default LockGroup lockAll(Collection<? extends K> keys) {
+        return LockOrdering.lockAll(getAll(keys), Function.identity());
+    }
+
+}
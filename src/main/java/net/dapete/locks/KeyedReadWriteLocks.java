@@ -0,0 +1,285 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking with implementations of [ReadWriteLock], implemented by [ReadWriteLocks] and [StripedReadWriteLocks].
+///
+/// Only [#get(Object)] and [#getAll(Collection)] differ between the implementations; all other methods lock the locks they return.
+///
+/// @param <K> the key type.
+/// @param <L> the [ReadWriteLock] type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public interface KeyedReadWriteLocks<K, L extends ReadWriteLock> {
+
+    ///
+    /// Return the lock for `key`. Equal keys return the same lock as long as it is used.
+    ///
+    /// @param key the key
+    /// @return the lock for `key`.
+    ///
+    L get(K key);
+
+    ///
+    /// Return the locks for all `keys`, in the same order, as if [#get(Object)] had been called for each of them.
+    ///
+    /// @param keys the keys.
+    /// @return a list with the lock for each of `keys`, in the same order.
+    ///
+    List<L> getAll(Collection<? extends K> keys);
+
+    ///
+    /// Return the number of locks currently kept by this instance.
+    ///
+    /// @return the number of locks currently kept by this instance.
+    ///
+    int size();
+
+    ///
+    /// Return the lock for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#lock()].
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already read locked.
+    ///
+    default L readLock(K key) {
+        final var lock = get(key);
+        lock.readLock().lock();
+        return lock;
+    }
+
+    ///
+    /// Return the lock for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#lock()].
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already write locked.
+    ///
+    default L writeLock(K key) {
+        final var lock = get(key);
+        lock.writeLock().lock();
+        return lock;
+    }
+
+    ///
+    /// Return the lock for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#tryLock()], or `null` if the lock was not
+    /// available.
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already read locked, or `null` if the lock was not available.
+    ///
+    default @Nullable L tryReadLock(K key) {
+        final var lock = get(key);
+        return lock.readLock().tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return the lock for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#tryLock(long, TimeUnit)], or `null` if the
+    /// waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return the lock for `key` already read locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    default @Nullable L tryReadLock(K key, long time, TimeUnit unit) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var lock = get(key);
+        return lock.readLock().tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return the lock for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up for the key.
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already read locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    default L readLockInterruptibly(K key) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var lock = get(key);
+        lock.readLock().lockInterruptibly();
+        return lock;
+    }
+
+    ///
+    /// Return the lock for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#tryLock()], or `null` if the lock was not
+    /// available.
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already write locked, or `null` if the lock was not available.
+    ///
+    default @Nullable L tryWriteLock(K key) {
+        final var lock = get(key);
+        return lock.writeLock().tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return the lock for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#tryLock(long, TimeUnit)], or `null` if the
+    /// waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return the lock for `key` already write locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    default @Nullable L tryWriteLock(K key, long time, TimeUnit unit) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var lock = get(key);
+        return lock.writeLock().tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return the lock for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up for the key.
+    ///
+    /// @param key the key
+    /// @return the lock for `key` already write locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    default L writeLockInterruptibly(K key) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        final var lock = get(key);
+        lock.writeLock().lockInterruptibly();
+        return lock;
+    }
+
+    ///
+    /// Lock the [readLock][ReadWriteLock#readLock()] of the lock for `key` and return a [LockHandle] to unlock it again, see
+    /// [ReadWriteLocks#acquireRead(Object)].
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the lock already read locked.
+    ///
+    default LockHandle<L> acquireRead(K key) {
+        final var lock = readLock(key);
+        return new LockHandle<>(lock, lock.readLock());
+    }
+
+    ///
+    /// Lock the [writeLock][ReadWriteLock#writeLock()] of the lock for `key` and return a [LockHandle] to unlock it again, see
+    /// [ReadWriteLocks#acquireRead(Object)].
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the lock already write locked.
+    ///
+    default LockHandle<L> acquireWrite(K key) {
+        final var lock = writeLock(key);
+        return new LockHandle<>(lock, lock.writeLock());
+    }
+
+    ///
+    /// Call `action` while holding the [readLock][ReadWriteLock#readLock()] of the lock for `key`, and return its result, see
+    /// [ReadWriteLocks#withReadLock(Object, Supplier)].
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    ///
+    default <T> T withReadLock(K key, Supplier<? extends T> action) {
+        final var lock = readLock(key);
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ///
+    /// Call `action` with `key` while holding the [readLock][ReadWriteLock#readLock()] of the lock for `key`, and return its result, see
+    /// [ReadWriteLocks#withReadLock(Object, Function)].
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    ///
+    default <T> T withReadLock(K key, Function<? super K, ? extends T> action) {
+        final var lock = readLock(key);
+        try {
+            return action.apply(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ///
+    /// Call `action` while holding the [writeLock][ReadWriteLock#writeLock()] of the lock for `key`, and return its result, see
+    /// [ReadWriteLocks#withReadLock(Object, Supplier)].
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    ///
+    default <T> T withWriteLock(K key, Supplier<? extends T> action) {
+        final var lock = writeLock(key);
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    ///
+    /// Call `action` with `key` while holding the [writeLock][ReadWriteLock#writeLock()] of the lock for `key`, and return its result, see
+    /// [ReadWriteLocks#withReadLock(Object, Function)].
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    ///
+    default <T> T withWriteLock(K key, Function<? super K, ? extends T> action) {
+        final var lock = writeLock(key);
+        try {
+            return action.apply(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    ///
+    /// Lock the [readLock][ReadWriteLock#readLock()] of the locks for all `keys` in a globally consistent order and return a [LockGroup] to unlock them
+    /// again, see [ReadWriteLocks#readLockAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all read locks already locked.
+    ///
+    default LockGroup readLockAll(Collection<? extends K> keys) {
+        return LockOrdering.lockAll(getAll(keys), ReadWriteLock::readLock);
+    }
+
+    ///
+    /// Lock the [writeLock][ReadWriteLock#writeLock()] of the locks for all `keys` in a globally consistent order and return a [LockGroup] to unlock
+    /// them again, see [ReadWriteLocks#writeLockAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all write locks already locked.
+    ///
+    default LockGroup writeLockAll(Collection<? extends K> keys) {
+        return LockOrdering.lockAll(getAll(keys), ReadWriteLock::writeLock);
+    }
+
+}
@@ -0,0 +1,444 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Diagnostics of an instance of [Locks] or [ReadWriteLocks] which has been created with [diagnostics enabled][LocksBuilder#diagnostics()]:
+///
+/// ```
+/// final var locks = Locks.<String>builder().diagnostics().reentrant();
+/// final var diagnostics = locks.getDiagnostics();
+/// ```
+///
+/// The locks are not instrumented; instead, each call inspects the owner and the waiting threads of all locks which currently exist, so locking and
+/// unlocking costs exactly the same as without diagnostics, and only the diagnostics themselves take time proportional to the number of locks. Because of
+/// this, the time a lock has been held is sampled: a hold is first seen by the call following its acquisition, and [HeldLock#getHeldFor()] is the time
+/// since then. When calling the diagnostics periodically, for example using [#watchLongHolds(Duration, Consumer)], it is shorter than the actual time by
+/// at most the interval between two calls.
+///
+/// The threads holding a read lock are not known, only their number, so read locks are reported without an owner and never take part in a deadlock.
+///
+/// Between two calls, only weak references to the locks and the IDs of their owners are kept, so the diagnostics never keep a lock, its key or a thread
+/// from being garbage collected.
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class LockDiagnostics<K> {
+
+    // the owner ID of holds of read locks, which is never the ID of a thread
+    private static final long NO_OWNER = -1;
+
+    private final WeakKeyReferences<K, ?> instance;
+
+    // not a monitor, so a virtual thread waiting for another call is not pinned to its carrier thread
+    private final Lock diagnosticsLock = new ReentrantLock();
+
+    // the holds seen by the previous call, by lock; guarded by diagnosticsLock
+    private Map<LockReference, Observation> observations = new HashMap<>();
+
+    LockDiagnostics(WeakKeyReferences<K, ?> instance) {
+        this.instance = instance;
+    }
+
+    ///
+    /// Return all locks which are currently held, with the threads holding and waiting for them.
+    ///
+    /// The locks are inspected one after another while other threads continue to use them, so the result is not a consistent snapshot of all locks at
+    /// one point in time.
+    ///
+    /// @return all locks which are currently held.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public List<HeldLock<K>> getHeldLocks() {
+        final var samples = sample();
+        final var heldLocks = new ArrayList<HeldLock<K>>(samples.size());
+        for (final var sample : samples) {
+            heldLocks.add(sample.heldLock);
+        }
+        return heldLocks;
+    }
+
+    ///
+    /// Return all cycles of threads waiting for locks held by each other, in the same instance.
+    ///
+    /// Each cycle is returned as the list of the locks involved, where the [owner][HeldLock#getOwner()] of each lock waits for the next one, and the owner
+    /// of the last one waits for the first one. A deadlock is permanent, so it is always found; because the locks are not inspected all at once, a cycle
+    /// could also be reported for threads which have just acquired and released locks in an unlucky order, so a cycle should only be acted upon if it is
+    /// reported again by a later call.
+    ///
+    /// @return all cycles of threads waiting for each other, or an empty list if there are none.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public List<List<HeldLock<K>>> findDeadlocks() {
+        final var heldLocks = getHeldLocks();
+        final Map<Thread, HeldLock<K>> waitingFor = new HashMap<>();
+        for (final var heldLock : heldLocks) {
+            for (final var thread : heldLock.getWaitingThreads()) {
+                waitingFor.put(thread, heldLock);
+            }
+        }
+        final var deadlocks = new ArrayList<List<HeldLock<K>>>();
+        final Set<Thread> visited = new HashSet<>();
+        for (final var start : heldLocks) {
+            // follow the chain from a lock to its owner, the lock the owner waits for, its owner and so on
+            final var chain = new ArrayList<HeldLock<K>>();
+            final Map<Thread, Integer> positions = new HashMap<>();
+            @Nullable HeldLock<K> heldLock = start;
+            while (heldLock != null) {
+                final var owner = heldLock.getOwner();
+                if (owner == null || visited.contains(owner)) {
+                    break;
+                }
+                final var position = positions.get(owner);
+                if (position != null) {
+                    deadlocks.add(List.copyOf(chain.subList(position, chain.size())));
+                    break;
+                }
+                positions.put(owner, chain.size());
+                chain.add(heldLock);
+                heldLock = waitingFor.get(owner);
+            }
+            // any cycle reachable from these threads has been found now
+            visited.addAll(positions.keySet());
+        }
+        return deadlocks;
+    }
+
+    ///
+    /// Call `callback` for each lock which has been held by the same owner for at least `threshold`. Each hold is only reported once, even if it is still
+    /// held at the next call.
+    ///
+    /// @param threshold the minimum time a lock has been held.
+    /// @param callback  the callback, which is called by the current thread.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public void checkLongHolds(Duration threshold, Consumer<? super HeldLock<K>> callback) {
+        final long thresholdNanos = threshold.toNanos();
+        final var longHolds = new ArrayList<HeldLock<K>>();
+        diagnosticsLock.lock();
+        try {
+            for (final var sample : sample()) {
+                if (!sample.observation.reported && sample.heldLock.heldForNanos >= thresholdNanos) {
+                    sample.observation.reported = true;
+                    longHolds.add(sample.heldLock);
+                }
+            }
+        } finally {
+            diagnosticsLock.unlock();
+        }
+        // the callback is not called while holding the lock, so it can use the diagnostics itself
+        longHolds.forEach(callback);
+    }
+
+    ///
+    /// Start a daemon thread calling [#checkLongHolds(Duration, Consumer)] periodically, until the returned [Watch] is closed.
+    ///
+    /// The thread checks four times per `threshold`, so a lock is reported at most a quarter of `threshold` after it has been held for `threshold`. It
+    /// only keeps a weak reference to this instance, and also stops once this instance has been garbage collected.
+    ///
+    /// @param threshold the minimum time a lock has been held.
+    /// @param callback  the callback, which is called by the daemon thread.
+    /// @return a running watch.
+    /// @throws IllegalArgumentException if `threshold` is zero or negative.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public Watch watchLongHolds(Duration threshold, Consumer<? super HeldLock<K>> callback) {
+        if (threshold.isNegative() || threshold.isZero()) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        final var watch = new Watch(new WatchTask<>(this, threshold, callback));
+        watch.thread.start();
+        return watch;
+    }
+
+    ///
+    /// Inspect all locks, keeping the observations of holds which are still held by the same owner and replacing the others.
+    ///
+    private List<Sample<K>> sample() {
+        diagnosticsLock.lock();
+        try {
+            final long now = System.nanoTime();
+            final var samples = new ArrayList<Sample<K>>();
+            final var previous = observations;
+            final Map<LockReference, Observation> current = new HashMap<>();
+            instance.forEach((key, value) -> {
+                if (!(value instanceof InspectableLock)) {
+                    return;
+                }
+                final var lock = (InspectableLock) value;
+                final var owner = lock.getExclusiveOwner();
+                final int readHolds = lock.getSharedHolds();
+                if (owner == null && readHolds == 0) {
+                    return;
+                }
+                final var reference = new LockReference(value);
+                final long ownerId = owner == null ? NO_OWNER : owner.getId();
+                var observation = previous.get(reference);
+                if (observation == null || observation.ownerId != ownerId) {
+                    observation = new Observation(ownerId, now);
+                }
+                current.put(reference, observation);
+                final var heldLock = new HeldLock<>(key, owner, readHolds, lock.getWaitingThreads(), now - observation.since);
+                samples.add(new Sample<>(heldLock, observation));
+            });
+            observations = current;
+            return samples;
+        } finally {
+            diagnosticsLock.unlock();
+        }
+    }
+
+    ///
+    /// A weak reference to a lock, which is equal to other references to the same lock as long as it has not been cleared.
+    ///
+    private static final class LockReference extends WeakReference<Object> {
+
+        private final int hashCode;
+
+        LockReference(Object lock) {
+            super(lock);
+            this.hashCode = System.identityHashCode(lock);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LockReference)) {
+                return false;
+            }
+            final var lock = get();
+            return lock != null && lock == ((LockReference) obj).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+    ///
+    /// A hold of a lock as first seen by [#sample()]. As long as a lock is held by the same owner (or, for read locks, by any readers) whenever it is
+    /// inspected, it is considered the same hold.
+    ///
+    private static final class Observation {
+
+        // the ID of the owner, so the thread itself is not kept; thread IDs are never reused
+        private final long ownerId;
+
+        private final long since;
+
+        // guarded by diagnosticsLock of the LockDiagnostics instance
+        private boolean reported;
+
+        Observation(long ownerId, long since) {
+            this.ownerId = ownerId;
+            this.since = since;
+        }
+
+    }
+
+    private static final class Sample<K> {
+
+        private final HeldLock<K> heldLock;
+
+        private final Observation observation;
+
+        Sample(HeldLock<K> heldLock, Observation observation) {
+            this.heldLock = heldLock;
+            this.observation = observation;
+        }
+
+    }
+
+    ///
+    /// A lock which was held when it was inspected by [LockDiagnostics]. The values do not change anymore, even after the lock has been released.
+    ///
+    /// @param <K> the key type.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final class HeldLock<K> {
+
+        private final K key;
+
+        // the owner when the lock was inspected; only this result refers to it, the diagnostics only keep its ID
+        private final @Nullable Thread owner;
+
+        private final int readHolds;
+
+        private final List<Thread> waitingThreads;
+
+        private final long heldForNanos;
+
+        HeldLock(K key, @Nullable Thread owner, int readHolds, Collection<Thread> waitingThreads, long heldForNanos) {
+            this.key = key;
+            this.owner = owner;
+            this.readHolds = readHolds;
+            this.waitingThreads = new ArrayList<>(waitingThreads);
+            this.heldForNanos = heldForNanos;
+        }
+
+        ///
+        /// Return the key of the lock.
+        ///
+        /// @return the key of the lock.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public K getKey() {
+            return key;
+        }
+
+        ///
+        /// Return the thread holding the lock exclusively (for a read/write lock, the write lock).
+        ///
+        /// @return the thread holding the lock exclusively, or `null` if it is only held by readers.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public @Nullable Thread getOwner() {
+            return owner;
+        }
+
+        ///
+        /// Return the number of holds of the read lock, by all threads. This is always 0 for locks without a read lock.
+        ///
+        /// @return the number of holds of the read lock.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public int getReadHolds() {
+            return readHolds;
+        }
+
+        ///
+        /// Return the threads which were waiting to acquire the lock. Like [java.util.concurrent.locks.ReentrantLock#getQueuedThreads()], this is only an
+        /// estimate, because threads may stop waiting while the lock is inspected.
+        ///
+        /// @return an unmodifiable list of the threads waiting to acquire the lock.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public List<Thread> getWaitingThreads() {
+            return Collections.unmodifiableList(waitingThreads);
+        }
+
+        ///
+        /// Return the time since this hold has first been seen by the diagnostics. This is 0 when it is seen for the first time.
+        ///
+        /// @return the time since this hold has first been seen.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public Duration getHeldFor() {
+            return Duration.ofNanos(heldForNanos);
+        }
+
+        @Override
+        public String toString() {
+            final var owner = getOwner();
+            return "HeldLock[key=" + key
+                    + (owner == null ? "" : ", owner=" + owner.getName())
+                    + (readHolds == 0 ? "" : ", readHolds=" + readHolds)
+                    + ", waiting=" + waitingThreads.size()
+                    + ", heldFor=" + getHeldFor() + "]";
+        }
+
+    }
+
+    ///
+    /// A daemon thread started by [#watchLongHolds(Duration, Consumer)].
+    ///
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final class Watch implements AutoCloseable {
+
+        private final Thread thread;
+
+        private final WatchTask<?> task;
+
+        private Watch(WatchTask<?> task) {
+            this.task = task;
+            this.thread = new Thread(task, "locks-diagnostics-watch");
+            this.thread.setDaemon(true);
+        }
+
+        ///
+        /// Return `true` if this watch has not been closed, and the diagnostics it watches have not been garbage collected.
+        ///
+        /// @return `true` if this watch is running.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isRunning() {
+            return task.running && thread.isAlive();
+        }
+
+        ///
+        /// Stop this watch. This does not wait for the thread to terminate.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        @Override
+        public void close() {
+            task.running = false;
+            thread.interrupt();
+        }
+
+    }
+
+    private static final class WatchTask<K> implements Runnable {
+
+        private final WeakReference<LockDiagnostics<K>> diagnostics;
+
+        private final Duration threshold;
+
+        private final Consumer<? super HeldLock<K>> callback;
+
+        private volatile boolean running = true;
+
+        WatchTask(LockDiagnostics<K> diagnostics, Duration threshold, Consumer<? super HeldLock<K>> callback) {
+            this.diagnostics = new WeakReference<>(diagnostics);
+            this.threshold = threshold;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            final long intervalNanos = Math.max(threshold.toNanos() / 4, 1);
+            while (running) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(intervalNanos);
+                } catch (InterruptedException e) {
+                    // only used to stop the thread
+                    continue;
+                }
+                final var current = diagnostics.get();
+                if (current == null) {
+                    running = false;
+                } else {
+                    current.checkLongHolds(threshold, callback);
+                }
+            }
+        }
+
+    }
+
+}
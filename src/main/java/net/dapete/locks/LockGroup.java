@@ -0,0 +1,91 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// A group of locks which have been acquired together, as returned by methods like [Locks#lockAll(java.util.Collection)]. Unlocking the group unlocks all
+/// of them in the reverse order they were acquired in.
+///
+/// This is intended to be used in a `try`-with-resources statement, which also keeps the locks referenced while they are being used:
+///
+/// ```
+/// try (final var group = locks.lockAll(from, to)) {
+///     // do something with both keys
+/// }
+/// ```
+///
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class LockGroup implements AutoCloseable {
+
+    private final Lock[] locks;
+
+    // keeps the values the locks belong to referenced while the group is locked
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    private final Object[] owners;
+
+    private boolean locked = true;
+
+    LockGroup(Lock[] locks, Object[] owners) {
+        this.locks = locks;
+        this.owners = owners;
+    }
+
+    ///
+    /// Return the locks in this group, in the order they were acquired in. Keys which resolve to the same lock only appear once.
+    ///
+    /// @return the locks in this group.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public List<Lock> getLocks() {
+        return Collections.unmodifiableList(Arrays.asList(locks));
+    }
+
+    ///
+    /// Unlock all locks in this group, in the reverse order they were acquired in. Calling this more than once has no further effect.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public void unlock() {
+        if (!locked) {
+            return;
+        }
+        locked = false;
+        unlock(locks, locks.length);
+    }
+
+    ///
+    /// Unlock all locks in this group, same as [#unlock()].
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public void close() {
+        unlock();
+    }
+
+    static void unlock(Lock[] locks, int count) {
+        RuntimeException exception = null;
+        for (int i = count - 1; i >= 0; i--) {
+            try {
+                locks[i].unlock();
+            } catch (RuntimeException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+}
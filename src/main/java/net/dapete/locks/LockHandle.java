@@ -0,0 +1,71 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.concurrent.locks.Lock;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// A lock which has been acquired for a key, as returned by methods like [Locks#acquire(Object)]. Closing the handle unlocks it again.
+///
+/// This is intended to be used in a `try`-with-resources statement, which also keeps the lock referenced while it is being used:
+///
+/// ```
+/// try (final var handle = locks.acquire(url)) {
+///     // do something with the URL
+/// }
+/// ```
+///
+/// A handle is a small immutable object apart from its locked state. If it does not escape the method acquiring it, as in the example above, the JIT
+/// compiler can usually eliminate its allocation.
+///
+/// @param <L> the type of the lock this handle was acquired from.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class LockHandle<L> implements AutoCloseable {
+
+    private final L lock;
+
+    private final Lock acquired;
+
+    private boolean locked = true;
+
+    LockHandle(L lock, Lock acquired) {
+        this.lock = lock;
+        this.acquired = acquired;
+    }
+
+    ///
+    /// Return the lock this handle was acquired from. For handles returned by [ReadWriteLocks], this is the [java.util.concurrent.locks.ReadWriteLock], not
+    /// its read or write lock.
+    ///
+    /// @return the lock this handle was acquired from.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L getLock() {
+        return lock;
+    }
+
+    ///
+    /// Unlock the lock held by this handle. Calling this more than once has no further effect.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public void unlock() {
+        if (locked) {
+            locked = false;
+            acquired.unlock();
+        }
+    }
+
+    ///
+    /// Unlock the lock held by this handle, same as [#unlock()].
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public void close() {
+        unlock();
+    }
+
+}
@@ -0,0 +1,457 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Metrics recorded by an instance of [Locks] or [ReadWriteLocks] which has been created with [metrics enabled][LocksBuilder#metrics()]:
+///
+/// ```
+/// final var locks = Locks.<String>builder().metrics().reentrant();
+/// final var metrics = locks.getMetrics();
+/// ```
+///
+/// All counters are [LongAdder] instances, so recording them does not add contention between threads using different keys. Acquisitions are only recorded
+/// by the blocking methods (like `lock`, `lockInterruptibly`, `readLock` and `acquire`); to find out whether a lock is contended, they first try to acquire
+/// it without waiting, and only measure the time if that fails.
+///
+/// The [most contended keys][#getMostContendedKeys()] are tracked in a number of stripes selected by the hash of the key. A thread recording a contended
+/// key never waits for another one: if the stripe of the key is in use by another thread at the same time, the key is not counted, so these counts are
+/// approximate under heavy contention.
+///
+/// The getters return the current values of the counters. [#snapshot()] returns a copy of all values which does not change anymore. The metrics can also
+/// be accessed using JMX after they have been [registered][#register(String)].
+///
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class LockMetrics implements LockMetricsMXBean {
+
+    ///
+    /// The domain of the [ObjectName] used by [#register(String)].
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final String JMX_DOMAIN = "net.dapete.locks";
+
+    ///
+    /// The number of elements of the [wait time histogram][#getWaitTimeHistogram()].
+    ///
+    static final int HISTOGRAM_BUCKETS = 40;
+
+    ///
+    /// The maximum number of keys tracked to determine the [most contended keys][#getMostContendedKeys()].
+    ///
+    static final int TRACKED_KEYS = 256;
+
+    ///
+    /// The number of stripes the tracked keys are partitioned into.
+    ///
+    static final int CONTENDED_KEY_STRIPES = 16;
+
+    ///
+    /// The maximum number of keys returned by [#getMostContendedKeys()].
+    ///
+    static final int MOST_CONTENDED_KEYS = 10;
+
+    private final IntSupplier sizeSupplier;
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder created = new LongAdder();
+
+    private final LongAdder purged = new LongAdder();
+
+    private final LongAdder acquisitions = new LongAdder();
+
+    private final LongAdder contendedAcquisitions = new LongAdder();
+
+    private final LongAdder waitTimeNanos = new LongAdder();
+
+    private final LongAdder[] waitTimeHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+    private final ContendedKeys[] contendedKeys = new ContendedKeys[CONTENDED_KEY_STRIPES];
+
+    private volatile @Nullable ObjectName objectName;
+
+    LockMetrics(IntSupplier sizeSupplier) {
+        this.sizeSupplier = sizeSupplier;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            waitTimeHistogram[i] = new LongAdder();
+        }
+        for (int i = 0; i < CONTENDED_KEY_STRIPES; i++) {
+            contendedKeys[i] = new ContendedKeys();
+        }
+    }
+
+    ///
+    /// Return a `Supplier` which counts the values created by `supplier`.
+    ///
+    /// @param supplier the supplier.
+    /// @param <V>      the value type.
+    /// @return a `Supplier` which counts the values created by `supplier`.
+    ///
+    <V> Supplier<V> countCreated(Supplier<V> supplier) {
+        return () -> {
+            final V value = supplier.get();
+            created.increment();
+            return value;
+        };
+    }
+
+    void lookups(int count) {
+        lookups.add(count);
+    }
+
+    void purged(int count) {
+        purged.add(count);
+    }
+
+    void lock(Object key, Lock lock) {
+        if (tryLockFair(lock)) {
+            acquisitions.increment();
+            return;
+        }
+        final long start = System.nanoTime();
+        lock.lock();
+        contended(key, System.nanoTime() - start);
+    }
+
+    void lockInterruptibly(Object key, Lock lock) throws InterruptedException {
+        if (lock.tryLock(0, TimeUnit.NANOSECONDS)) {
+            acquisitions.increment();
+            return;
+        }
+        final long start = System.nanoTime();
+        lock.lockInterruptibly();
+        contended(key, System.nanoTime() - start);
+    }
+
+    // unlike tryLock(), this respects the fairness setting of a lock
+    private static boolean tryLockFair(Lock lock) {
+        // lock() is not interruptible, so an interrupt must neither make this fail nor be lost
+        final boolean interrupted = Thread.interrupted();
+        try {
+            return lock.tryLock(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // interrupted by another thread in the meantime, wait in lock() instead
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void contended(Object key, long waitNanos) {
+        acquisitions.increment();
+        contendedAcquisitions.increment();
+        waitTimeNanos.add(waitNanos);
+        waitTimeHistogram[histogramBucket(waitNanos)].increment();
+        recordContendedKey(key);
+    }
+
+    static int histogramBucket(long nanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)), HISTOGRAM_BUCKETS - 1);
+    }
+
+    void recordContendedKey(Object key) {
+        contendedKeys[contendedKeysStripe(key)].record(key);
+    }
+
+    static int contendedKeysStripe(Object key) {
+        final int hash = key.hashCode() * 0x9E3779B9;
+        return (hash >>> 16) & (CONTENDED_KEY_STRIPES - 1);
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return Math.max(lookups.sum() - created.sum(), 0);
+    }
+
+    @Override
+    public long getCreated() {
+        return created.sum();
+    }
+
+    @Override
+    public long getPurged() {
+        return purged.sum();
+    }
+
+    @Override
+    public int getLiveLocks() {
+        return sizeSupplier.getAsInt();
+    }
+
+    @Override
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    @Override
+    public long getContendedAcquisitions() {
+        return contendedAcquisitions.sum();
+    }
+
+    @Override
+    public long getWaitTimeNanos() {
+        return waitTimeNanos.sum();
+    }
+
+    @Override
+    public long[] getWaitTimeHistogram() {
+        final var histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = waitTimeHistogram[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public Map<String, Long> getMostContendedKeys() {
+        final List<Map.Entry<Object, Long>> entries = new ArrayList<>();
+        for (final var stripe : contendedKeys) {
+            stripe.addTo(entries);
+        }
+        entries.sort(Map.Entry.<Object, Long>comparingByValue().reversed());
+        final var mostContendedKeys = new LinkedHashMap<String, Long>();
+        for (final var entry : entries) {
+            if (mostContendedKeys.size() == MOST_CONTENDED_KEYS) {
+                break;
+            }
+            mostContendedKeys.putIfAbsent(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        return mostContendedKeys;
+    }
+
+    ///
+    /// Return a copy of the current values of all metrics.
+    ///
+    /// The values are read one after the other while other threads may continue to update them, so they are not necessarily consistent with each other.
+    ///
+    /// @return a copy of the current values of all metrics.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    ///
+    /// Register these metrics with the platform MBean server, using an [ObjectName] with the domain [#JMX_DOMAIN], the type `LockMetrics`, and the
+    /// supplied `name`:
+    ///
+    /// ```
+    /// net.dapete.locks:type=LockMetrics,name="urls"
+    /// ```
+    ///
+    /// The MBean server keeps a strong reference to the metrics, and through them to the instance they belong to, so they should be
+    /// [unregistered][#unregister()] once the instance is no longer used.
+    ///
+    /// This is the only method which needs the `java.management` module, which this module does not require at runtime. An application using the module
+    /// path has to require it itself, or add it using `--add-modules java.management`.
+    ///
+    /// @param name the name, which is quoted as necessary.
+    /// @return the `ObjectName` the metrics have been registered with.
+    /// @throws JMException          if the metrics could not be registered, for example because the name is already in use.
+    /// @throws IllegalStateException if these metrics are already registered.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public synchronized ObjectName register(String name) throws JMException {
+        if (objectName != null) {
+            throw new IllegalStateException("already registered as " + objectName);
+        }
+        final var newObjectName = new ObjectName(JMX_DOMAIN + ":type=LockMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newObjectName);
+        objectName = newObjectName;
+        return newObjectName;
+    }
+
+    ///
+    /// Unregister these metrics from the platform MBean server. Does nothing if they are not registered.
+    ///
+    /// @throws JMException if the metrics could not be unregistered.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public synchronized void unregister() throws JMException {
+        final var currentObjectName = objectName;
+        if (currentObjectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(currentObjectName);
+            objectName = null;
+        }
+    }
+
+    ///
+    /// The contention counts of the tracked keys of one stripe, using the space-saving algorithm: once the maximum number of keys is tracked, a new key
+    /// replaces the one with the lowest count and inherits it.
+    ///
+    private static final class ContendedKeys {
+
+        private static final int MAXIMUM_SIZE = TRACKED_KEYS / CONTENDED_KEY_STRIPES;
+
+        private final Lock lock = new ReentrantLock();
+
+        // only accessed while holding lock
+        private final Map<Object, long[]> counts = new HashMap<>();
+
+        void record(Object key) {
+            // this is called while holding the contended lock, so never wait here, skip the key instead
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                final var count = counts.get(key);
+                if (count != null) {
+                    count[0]++;
+                    return;
+                }
+                long initialCount = 1;
+                if (counts.size() >= MAXIMUM_SIZE) {
+                    final var leastContended = Collections.min(counts.entrySet(), Comparator.comparingLong(entry -> entry.getValue()[0]));
+                    counts.remove(leastContended.getKey());
+                    initialCount += leastContended.getValue()[0];
+                }
+                counts.put(key, new long[] {initialCount});
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void addTo(List<Map.Entry<Object, Long>> entries) {
+            lock.lock();
+            try {
+                for (final var entry : counts.entrySet()) {
+                    entries.add(Map.entry(entry.getKey(), entry.getValue()[0]));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+    ///
+    /// A copy of the values of [LockMetrics] at one point in time. See [LockMetricsMXBean] for a description of the values.
+    ///
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final class Snapshot implements LockMetricsMXBean {
+
+        private final long lookups;
+
+        private final long hits;
+
+        private final long created;
+
+        private final long purged;
+
+        private final int liveLocks;
+
+        private final long acquisitions;
+
+        private final long contendedAcquisitions;
+
+        private final long waitTimeNanos;
+
+        private final long[] waitTimeHistogram;
+
+        private final Map<String, Long> mostContendedKeys;
+
+        private Snapshot(LockMetrics metrics) {
+            this.lookups = metrics.getLookups();
+            this.hits = metrics.getHits();
+            this.created = metrics.getCreated();
+            this.purged = metrics.getPurged();
+            this.liveLocks = metrics.getLiveLocks();
+            this.acquisitions = metrics.getAcquisitions();
+            this.contendedAcquisitions = metrics.getContendedAcquisitions();
+            this.waitTimeNanos = metrics.getWaitTimeNanos();
+            this.waitTimeHistogram = metrics.getWaitTimeHistogram();
+            this.mostContendedKeys = metrics.getMostContendedKeys();
+        }
+
+        @Override
+        public long getLookups() {
+            return lookups;
+        }
+
+        @Override
+        public long getHits() {
+            return hits;
+        }
+
+        @Override
+        public long getCreated() {
+            return created;
+        }
+
+        @Override
+        public long getPurged() {
+            return purged;
+        }
+
+        @Override
+        public int getLiveLocks() {
+            return liveLocks;
+        }
+
+        @Override
+        public long getAcquisitions() {
+            return acquisitions;
+        }
+
+        @Override
+        public long getContendedAcquisitions() {
+            return contendedAcquisitions;
+        }
+
+        @Override
+        public long getWaitTimeNanos() {
+            return waitTimeNanos;
+        }
+
+        @Override
+        public long[] getWaitTimeHistogram() {
+            return waitTimeHistogram.clone();
+        }
+
+        @Override
+        public Map<String, Long> getMostContendedKeys() {
+            return Collections.unmodifiableMap(mostContendedKeys);
+        }
+
+        @Override
+        public String toString() {
+            return "LockMetrics.Snapshot[lookups=" + lookups + ", hits=" + hits + ", created=" + created + ", purged=" + purged + ", liveLocks=" + liveLocks
+                    + ", acquisitions=" + acquisitions + ", contendedAcquisitions=" + contendedAcquisitions + ", waitTimeNanos=" + waitTimeNanos
+                    + ", mostContendedKeys=" + mostContendedKeys + "]";
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.Map;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// The management interface of [LockMetrics], used to access them using JMX. See [LockMetrics#register(String)].
+///
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public interface LockMetricsMXBean {
+
+    ///
+    /// Return the number of times a lock has been looked up for a key.
+    ///
+    /// @return the number of lookups.
+    ///
+    long getLookups();
+
+    ///
+    /// Return the number of lookups which returned an existing lock.
+    ///
+    /// @return the number of lookups which returned an existing lock.
+    ///
+    long getHits();
+
+    ///
+    /// Return the number of locks which have been created.
+    ///
+    /// @return the number of locks which have been created.
+    ///
+    long getCreated();
+
+    ///
+    /// Return the number of locks which have been removed after they were no longer used.
+    ///
+    /// @return the number of locks which have been removed.
+    ///
+    long getPurged();
+
+    ///
+    /// Return the current number of locks. This removes any locks which are no longer used first, like `size()`.
+    ///
+    /// @return the current number of locks.
+    ///
+    int getLiveLocks();
+
+    ///
+    /// Return the number of times a lock has been acquired using one of the blocking methods, like `lock`, `readLock` or `acquire`.
+    ///
+    /// @return the number of acquisitions.
+    ///
+    long getAcquisitions();
+
+    ///
+    /// Return the number of acquisitions which had to wait, because the lock was not immediately available.
+    ///
+    /// @return the number of contended acquisitions.
+    ///
+    long getContendedAcquisitions();
+
+    ///
+    /// Return the total time spent waiting for contended acquisitions, in nanoseconds.
+    ///
+    /// @return the total time spent waiting, in nanoseconds.
+    ///
+    long getWaitTimeNanos();
+
+    ///
+    /// Return a histogram of the time spent waiting for contended acquisitions. The element at index `i` counts waits of less than 2<sup>i</sup> and at
+    /// least 2<sup>i-1</sup> nanoseconds; the last element also counts all longer waits.
+    ///
+    /// @return a histogram of the time spent waiting.
+    ///
+    long[] getWaitTimeHistogram();
+
+    ///
+    /// Return the keys with the most contended acquisitions, as their string representation mapped to the approximate number of contended acquisitions,
+    /// ordered from most to least contended.
+    ///
+    /// @return the most contended keys.
+    ///
+    Map<String, Long> getMostContendedKeys();
+
+}
@@ -0,0 +1,177 @@
+package net.dapete.locks;
+
+import org.jspecify.annotations.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+///
+/// Acquires several locks in a globally consistent order, so threads locking overlapping sets of locks cannot deadlock each other.
+///
+/// The order is based on [System#identityHashCode(Object)] of the values the locks belong to. If two different values have the same identity hash code,
+/// they are ordered by a tie-breaking number, which is assigned to each of them the first time it is needed, and kept for as long as the value is
+/// reachable. Assigning these numbers only takes a lock briefly, and never while acquiring the locks, so ties do not serialize unrelated callers.
+///
+final class LockOrdering {
+
+    // the tie-breaking numbers of values which had the same identity hash code as another value
+    private static final ConcurrentMap<TieBreakerKey, Long> TIE_BREAKERS = new ConcurrentHashMap<>();
+
+    private static final ReferenceQueue<Object> TIE_BREAKER_QUEUE = new ReferenceQueue<>();
+
+    private static final AtomicLong NEXT_TIE_BREAKER = new AtomicLong();
+
+    // the tie-breaking number is only looked up if the identity hash codes are equal
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingInt(entry -> System.identityHashCode(entry.owner))
+            .thenComparingLong(entry -> tieBreaker(entry.owner));
+
+    private LockOrdering() {
+    }
+
+    ///
+    /// Acquires a lock looked up for a key, for example by recording metrics for the key.
+    ///
+    /// @param <K> the key type.
+    ///
+    @FunctionalInterface
+    interface Acquirer<K> {
+
+        void acquire(K key, Lock lock);
+
+    }
+
+    ///
+    /// Lock the [Lock] returned by `lockFunction` for each of `values` in a globally consistent order, using [Lock#lock()]. Duplicate values are only
+    /// locked once.
+    ///
+    /// @param values       the values.
+    /// @param lockFunction a function returning the `Lock` to acquire for a value.
+    /// @param <V>          the value type.
+    /// @return a [LockGroup] to unlock all locks.
+    ///
+    static <V> LockGroup lockAll(List<V> values, Function<? super V, ? extends Lock> lockFunction) {
+        return lockAll(values, values, lockFunction, (value, lock) -> lock.lock());
+    }
+
+    ///
+    /// Lock the [Lock] returned by `lockFunction` for each of `values` in a globally consistent order, using `acquirer` with the key the value has been
+    /// looked up for. Duplicate values are only locked once, with the first of their keys.
+    ///
+    /// @param keys         the keys.
+    /// @param values       the values for `keys`, in the same order.
+    /// @param lockFunction a function returning the `Lock` to acquire for a value.
+    /// @param acquirer     the function acquiring each lock.
+    /// @param <K>          the key type.
+    /// @param <V>          the value type.
+    /// @return a [LockGroup] to unlock all locks.
+    ///
+    static <K, V> LockGroup lockAll(List<? extends K> keys, List<V> values, Function<? super V, ? extends Lock> lockFunction,
+                                    Acquirer<? super K> acquirer) {
+        final var entries = distinct(keys, values);
+        Arrays.sort(entries, ORDER);
+
+        final var locks = new Lock[entries.length];
+        final var owners = new Object[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            @SuppressWarnings("unchecked") final var owner = (V) entries[i].owner;
+            locks[i] = lockFunction.apply(owner);
+            owners[i] = owner;
+        }
+
+        int locked = 0;
+        try {
+            for (; locked < locks.length; locked++) {
+                @SuppressWarnings("unchecked") final var key = (K) entries[locked].key;
+                acquirer.acquire(key, locks[locked]);
+            }
+        } catch (RuntimeException | Error e) {
+            try {
+                LockGroup.unlock(locks, locked);
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return new LockGroup(locks, owners);
+    }
+
+    private static Entry[] distinct(List<?> keys, List<?> values) {
+        final var seen = new IdentityHashMap<Object, Entry>(values.size() * 2);
+        for (int i = 0; i < values.size(); i++) {
+            seen.putIfAbsent(values.get(i), new Entry(keys.get(i), values.get(i)));
+        }
+        return seen.values().toArray(new Entry[0]);
+    }
+
+    ///
+    /// Return the tie-breaking number of `value`, assigning the next one if it does not have one yet.
+    ///
+    /// @param value the value.
+    /// @return the tie-breaking number of `value`.
+    ///
+    static long tieBreaker(Object value) {
+        Reference<?> reference;
+        while ((reference = TIE_BREAKER_QUEUE.poll()) != null) {
+            TIE_BREAKERS.remove(reference);
+        }
+        return TIE_BREAKERS.computeIfAbsent(new TieBreakerKey(value), key -> NEXT_TIE_BREAKER.getAndIncrement());
+    }
+
+    ///
+    /// A value to lock, and the first key it has been looked up for.
+    ///
+    private static final class Entry {
+
+        private final Object key;
+
+        private final Object owner;
+
+        Entry(Object key, Object owner) {
+            this.key = key;
+            this.owner = owner;
+        }
+
+    }
+
+    ///
+    /// A weak reference to a value, which is equal to other references to the same value as long as it has not been cleared.
+    ///
+    private static final class TieBreakerKey extends WeakReference<Object> {
+
+        private final int hashCode;
+
+        TieBreakerKey(Object value) {
+            super(value, TIE_BREAKER_QUEUE);
+            this.hashCode = System.identityHashCode(value);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TieBreakerKey)) {
+                return false;
+            }
+            final var value = get();
+            return value != null && value == ((TieBreakerKey) obj).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+}
@@ -1,11 +1,18 @@
 package net.dapete.locks;
 
 import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
 import static org.apiguardian.api.API.Status.STABLE;
 
 ///
@@ -15,12 +22,16 @@ import static org.apiguardian.api.API.Status.STABLE;
 /// @param <L> the [Lock] type.
 ///
 @API(status = STABLE)
-public class Locks<K, L extends Lock> extends WeakKeyReferences<K, L> {
+public class Locks<K, L extends Lock> extends WeakKeyReferences<K, L> implements KeyedLocks<K, L> {
 
     Locks(Supplier<L> lockSupplier) {
         super(lockSupplier);
     }
 
+    Locks(Supplier<L> lockSupplier, Settings settings) {
+        super(lockSupplier, settings);
+    }
+
     ///
     /// Return an instance using [Lock] instances created by `lockSupplier`.
     ///
@@ -34,6 +45,25 @@ public class Locks<K, L extends Lock> extends WeakKeyReferences<K, L> {
         return new Locks<>(lockSupplier);
     }
 
+    ///
+    /// Return an instance using [Lock] instances created by `lockSupplier`, partitioned into `concurrencyLevel` segments.
+    ///
+    /// Each segment manages the locks for a subset of keys selected by their hash code, including removing locks which are no longer used. This reduces the
+    /// impact callers using different keys have on each other.
+    ///
+    /// @param lockSupplier     a `Supplier` for instances of [L] (usually the constructor of a class implementing `Lock`).
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <K>              the key type.
+    /// @param <L>              the `Lock` type.
+    /// @return an instance using `Lock` instances created by `lockSupplier`
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K, L extends Lock> Locks<K, L> withSupplier(Supplier<L> lockSupplier, int concurrencyLevel) {
+        return Locks.<K>builder().concurrencyLevel(concurrencyLevel).withSupplier(lockSupplier);
+    }
+
     ///
     /// Return a [ReentrantLocks] instance using [ReentrantLock].
     ///
@@ -84,6 +114,108 @@ public class Locks<K, L extends Lock> extends WeakKeyReferences<K, L> {
         return reentrant(fair);
     }
 
+    ///
+    /// Return a [ReentrantLocks] instance using [ReentrantLock] with the given fairness policy, partitioned into `concurrencyLevel` segments.
+    ///
+    /// @param fair             `true` if the locks should use a fair ordering policy (see [ReentrantLock#ReentrantLock(boolean)]).
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two (see [#withSupplier(Supplier, int)]).
+    /// @param <K>              the key type.
+    /// @return a `ReentrantLocks` instance.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> ReentrantLocks<K> reentrant(boolean fair, int concurrencyLevel) {
+        return Locks.<K>builder().concurrencyLevel(concurrencyLevel).reentrant(fair);
+    }
+
+    ///
+    /// Return a [ReentrantLocks] instance suitable for use with virtual threads.
+    ///
+    /// The locks are [ReentrantLock] instances, which unmount a waiting virtual thread from its carrier thread, and they are managed without using any
+    /// monitors (`synchronized`), see [LocksBuilder#virtualThreadFriendly()]. The keys are partitioned into as many segments as there are available
+    /// processors.
+    ///
+    /// @param <K> the key type.
+    /// @return a `ReentrantLocks` instance.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> ReentrantLocks<K> virtualThreadFriendly() {
+        return Locks.<K>builder()
+                .concurrencyLevel(Math.min(Runtime.getRuntime().availableProcessors(), MAX_CONCURRENCY_LEVEL))
+                .virtualThreadFriendly()
+                .reentrant();
+    }
+
+    ///
+    /// Return an instance using [CompactLock], which needs considerably less memory than [ReentrantLock] while it is not contended. This is intended for a
+    /// large number of keys which are locked at the same time, but rarely by more than one thread.
+    ///
+    /// @param <K> the key type
+    /// @return an instance using `CompactLock`
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> Locks<K, CompactLock> compact() {
+        return withSupplier(CompactLock::new);
+    }
+
+    ///
+    /// Return a [StripedLocks] instance using a fixed number of [ReentrantLock] instances, selected by the hash code of the key.
+    ///
+    /// @param stripes the number of stripes; this is rounded up to the next power of two.
+    /// @param <K>     the key type.
+    /// @return a `StripedLocks` instance.
+    /// @throws IllegalArgumentException if `stripes` is less than 1 or greater than 2^30.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> StripedLocks<K, ReentrantLock> striped(int stripes) {
+        return striped(stripes, ReentrantLock::new);
+    }
+
+    ///
+    /// Return a [StripedLocks] instance using a fixed number of [Lock] instances created by `lockSupplier`, selected by the hash code of the key.
+    ///
+    /// @param stripes      the number of stripes; this is rounded up to the next power of two.
+    /// @param lockSupplier a `Supplier` for instances of [L] (usually the constructor of a class implementing `Lock`).
+    /// @param <K>          the key type.
+    /// @param <L>          the `Lock` type.
+    /// @return a `StripedLocks` instance.
+    /// @throws IllegalArgumentException if `stripes` is less than 1 or greater than 2^30.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K, L extends Lock> StripedLocks<K, L> striped(int stripes, Supplier<L> lockSupplier) {
+        return new StripedLocks<>(stripes, lockSupplier);
+    }
+
+    ///
+    /// Return a [LocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param <K> the key type.
+    /// @return a `LocksBuilder`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> LocksBuilder<K> builder() {
+        return new LocksBuilder<>();
+    }
+
+    ///
+    /// Return a [LocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param keyClass the class for the key type.
+    /// @param <K>      the key type.
+    /// @return a `LocksBuilder`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> LocksBuilder<K> builder(@SuppressWarnings("unused") Class<K> keyClass) {
+        return builder();
+    }
+
     ///
     /// Return a lock for `key`. There will be at most one lock per key at any given time.
     ///
@@ -96,6 +228,37 @@ public class Locks<K, L extends Lock> extends WeakKeyReferences<K, L> {
         return super.get(key);
     }
 
+    ///
+    /// Return locks for all `keys`, in the same order. This returns the same locks as calling [#get(Object)] for each key, but looks them up in a single
+    /// pass: keys are grouped by segment, so the unused locks of each segment are only removed once per call, and a segment guarded by a lock (see
+    /// [LocksBuilder#virtualThreadFriendly()]) only acquires it once for all of its keys.
+    ///
+    /// Like with [#get(Object)], the locks are only kept while they are referenced, so the returned list should be kept while they are used.
+    ///
+    /// @param keys the keys.
+    /// @return a list with the lock for each of `keys`, in the same order.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public List<L> getAll(Collection<? extends K> keys) {
+        return super.getAll(keys);
+    }
+
+    ///
+    /// Return locks for all `keys`, in the same order. See [#getAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a list with the lock for each of `keys`, in the same order.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final List<L> getAll(K... keys) {
+        return getAll(Arrays.asList(keys));
+    }
+
     ///
     /// Return a lock for `key` already locked using [Lock#lock()].
     ///
@@ -103,12 +266,168 @@ public class Locks<K, L extends Lock> extends WeakKeyReferences<K, L> {
     /// @return a lock for `key` already locked.
     ///
     @API(status = STABLE)
+    @Override
     public final L lock(K key) {
         final var lock = get(key);
-        lock.lock();
+        acquireLock(key, lock);
+        return lock;
+    }
+
+    ///
+    /// Return a lock for `key` already locked using [Lock#tryLock()], or `null` if the lock was not available.
+    ///
+    /// @param key the key
+    /// @return a lock for `key` already locked, or `null` if the lock was not available.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final @Nullable L tryLock(K key) {
+        final var lock = get(key);
+        return lock.tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return a lock for `key` already locked using [Lock#tryLock(long, TimeUnit)], or `null` if the waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return a lock for `key` already locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final @Nullable L tryLock(K key, long time, TimeUnit unit) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return lock.tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return a lock for `key` already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key the key
+    /// @return a lock for `key` already locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final L lockInterruptibly(K key) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        acquireLockInterruptibly(key, lock);
         return lock;
     }
 
+    ///
+    /// Lock the lock for `key` using [Lock#lock()] and return a [LockHandle] to unlock it again.
+    ///
+    /// The handle keeps the lock referenced until it is closed, so it is not necessary to keep the lock itself in a local variable:
+    ///
+    /// ```
+    /// try (final var handle = locks.acquire(url)) {
+    ///     // do something with the URL
+    /// }
+    /// ```
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the lock already locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final LockHandle<L> acquire(K key) {
+        final var lock = lock(key);
+        return new LockHandle<>(lock, lock);
+    }
+
+    ///
+    /// Call `action` while holding the lock for `key`, and return its result. This is the same as
+    ///
+    /// ```
+    /// final var lock = locks.lock(key);
+    /// try {
+    ///     return action.get();
+    /// } finally {
+    ///     lock.unlock();
+    /// }
+    /// ```
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final <T> T withLock(K key, Supplier<? extends T> action) {
+        final var lock = get(key);
+        return callLocked(key, lock, lock, action);
+    }
+
+    ///
+    /// Call `action` with `key` while holding the lock for `key`, and return its result. See [#withLock(Object, Supplier)].
+    ///
+    /// Because `action` receives the key, it does not need to capture it, so the same instance can be used for every call instead of creating a new one
+    /// each time.
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final <T> T withLock(K key, Function<? super K, ? extends T> action) {
+        final var lock = get(key);
+        return applyLocked(key, lock, lock, action);
+    }
+
+    ///
+    /// Lock the locks for all `keys` and return a [LockGroup] to unlock them again.
+    ///
+    /// The locks are looked up together and acquired in a globally consistent order, so threads locking overlapping sets of keys using this method cannot
+    /// deadlock each other. Keys which resolve to the same lock only lock it once.
+    ///
+    /// ```
+    /// try (final var group = locks.lockAll(List.of(from, to))) {
+    ///     // do something with both keys
+    /// }
+    /// ```
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all locks already locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final LockGroup lockAll(Collection<? extends K> keys) {
+        return acquireAll(keys, Function.identity());
+    }
+
+    ///
+    /// Lock the locks for all `keys` and return a [LockGroup] to unlock them again. See [#lockAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all locks already locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final LockGroup lockAll(K... keys) {
+        return lockAll(Arrays.asList(keys));
+    }
+
     ///
     /// Return the current number of locks managed by this instance.
     ///
@@ -120,4 +439,26 @@ public class Locks<K, L extends Lock> extends WeakKeyReferences<K, L> {
         return super.size();
     }
 
+    ///
+    /// Return the metrics recorded by this instance, or `null` if it has not been created with [metrics enabled][LocksBuilder#metrics()].
+    ///
+    /// @return the metrics recorded by this instance, or `null`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public final @Nullable LockMetrics getMetrics() {
+        return metrics;
+    }
+
+    ///
+    /// Return the diagnostics of this instance, or `null` if it has not been created with [diagnostics enabled][LocksBuilder#diagnostics()].
+    ///
+    /// @return the diagnostics of this instance, or `null`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public final @Nullable LockDiagnostics<K> getDiagnostics() {
+        return diagnostics;
+    }
+
 }
@@ -0,0 +1,72 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Builder for instances of [Locks] with custom settings.
+///
+/// Instances can be created using [Locks#builder()] and [Locks#builder(Class)], for example:
+///
+/// ```
+/// final var locks = Locks.<String>builder()
+///         .concurrencyLevel(16)
+///         .cleanupLimit(100)
+///         .reentrant();
+/// ```
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class LocksBuilder<K> extends AbstractLocksBuilder<LocksBuilder<K>> {
+
+    LocksBuilder() {
+    }
+
+    @Override
+    LocksBuilder<K> self() {
+        return this;
+    }
+
+    ///
+    /// Return a [Locks] instance using [Lock] instances created by `lockSupplier`.
+    ///
+    /// @param lockSupplier a `Supplier` for instances of [L] (usually the constructor of a class implementing `Lock`).
+    /// @param <L>          the `Lock` type.
+    /// @return a `Locks` instance.
+    /// @throws IllegalStateException if [diagnostics][#diagnostics()] have been requested.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public <L extends Lock> Locks<K, L> withSupplier(Supplier<L> lockSupplier) {
+        checkNoDiagnostics();
+        return new Locks<>(lockSupplier, settings);
+    }
+
+    ///
+    /// Return a [ReentrantLocks] instance using [ReentrantLock].
+    ///
+    /// @return a `ReentrantLocks` instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public ReentrantLocks<K> reentrant() {
+        return reentrant(false);
+    }
+
+    ///
+    /// Return a [ReentrantLocks] instance using [ReentrantLock] with the given fairness policy.
+    ///
+    /// @param fair `true` if the locks should use a fair ordering policy (see [ReentrantLock#ReentrantLock(boolean)]).
+    /// @return a `ReentrantLocks` instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public ReentrantLocks<K> reentrant(boolean fair) {
+        return new ReentrantLocks<>(fair, settings);
+    }
+
+}
@@ -0,0 +1,19 @@
+package net.dapete.locks;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+final class LongKeyReference<T> extends WeakReference<T> {
+
+    private final long key;
+
+    LongKeyReference(long key, T value, ReferenceQueue<? super T> referenceQueue) {
+        super(value, referenceQueue);
+        this.key = key;
+    }
+
+    long getKey() {
+        return key;
+    }
+
+}
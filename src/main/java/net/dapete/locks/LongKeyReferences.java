@@ -0,0 +1,311 @@
+package net.dapete.locks;
+
+import org.jspecify.annotations.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+///
+/// Like [WeakKeyReferences], but for primitive `long` keys, which are never boxed.
+///
+/// The values are kept in open-addressing hash tables with linear probing, which store the keys in a `long[]` next to an array of [LongKeyReference]
+/// instances. Compared to a map with boxed keys, this saves the key object and the map entry for every value. The tables are partitioned into segments by
+/// the hash of the key, and each segment is guarded by its own [ReentrantLock]. Looking up a key which already has a value does not take this lock: the
+/// references are kept in an [AtomicReferenceArray], so the lookup can read them concurrently with changes, and only falls back to locking the segment if
+/// the key is missing or its value has been cleared.
+///
+/// @param <V> the value type.
+///
+abstract class LongKeyReferences<V> {
+
+    ///
+    /// The default number of segments.
+    ///
+    static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment<V>[] segments;
+
+    private final int segmentMask;
+
+    private final Supplier<V> supplier;
+
+    ///
+    /// Create an instance with `concurrencyLevel` segments.
+    ///
+    /// @param supplier         a `Supplier` for new values.
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @throws IllegalArgumentException if the concurrency level is less than 1 or greater than [WeakKeyReferences#MAX_CONCURRENCY_LEVEL].
+    ///
+    protected LongKeyReferences(Supplier<V> supplier, int concurrencyLevel) {
+        this(newSegments(concurrencyLevel), supplier);
+    }
+
+    private LongKeyReferences(Segment<V>[] segments, Supplier<V> supplier) {
+        this.segments = segments;
+        this.segmentMask = segments.length - 1;
+        this.supplier = supplier;
+    }
+
+    private static <V> Segment<V>[] newSegments(int concurrencyLevel) {
+        if (concurrencyLevel < 1 || concurrencyLevel > WeakKeyReferences.MAX_CONCURRENCY_LEVEL) {
+            throw new IllegalArgumentException(
+                    "concurrencyLevel must be between 1 and " + WeakKeyReferences.MAX_CONCURRENCY_LEVEL + ": " + concurrencyLevel);
+        }
+        final int segmentCount = concurrencyLevel == 1 ? 1 : Integer.highestOneBit(concurrencyLevel - 1) << 1;
+        final Segment<V>[] segments = newSegmentArray(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>();
+        }
+        return segments;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // generic arrays cannot be created directly
+    private static <V> Segment<V>[] newSegmentArray(int segmentCount) {
+        return new Segment[segmentCount];
+    }
+
+    ///
+    /// Return the number of segments used by this instance.
+    ///
+    /// @return the number of segments used by this instance.
+    ///
+    int getConcurrencyLevel() {
+        return segments.length;
+    }
+
+    ///
+    /// Spread the bits of `key`, so keys which only differ in a few bits, like sequential IDs or multiples of a power of two, are distributed evenly over
+    /// the segments and the slots of their tables.
+    ///
+    /// @param key the key.
+    /// @return the hash of the key.
+    ///
+    static long hash(long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+
+    ///
+    /// Return a value for the supplied `key`. There will be at most one value per key at any given time.
+    ///
+    /// @param key the key.
+    /// @return a value for the supplied `key`.
+    ///
+    protected V get(long key) {
+        final long hash = hash(key);
+        // the table uses the low bits of the hash, so use the high bits for the segment
+        return segments[(int) (hash >>> 48) & segmentMask].get(key, (int) hash, supplier);
+    }
+
+    ///
+    /// Return the current number of values managed by this instance.
+    ///
+    /// @return the current number of values managed by this instance.
+    ///
+    protected int size() {
+        int size = 0;
+        for (final var segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    ///
+    /// Throw an [InterruptedException] if the current thread has been interrupted, clearing its interrupted status. See
+    /// [WeakKeyReferences#checkInterrupted()].
+    ///
+    /// @throws InterruptedException if the current thread has been interrupted.
+    ///
+    static void checkInterrupted() throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+    }
+
+    ///
+    /// A part of the values of an instance, with its own table and reference queue.
+    ///
+    private static final class Segment<V> {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final Lock segmentLock = new ReentrantLock();
+
+        private final ReferenceQueue<V> referenceQueue = new ReferenceQueue<>();
+
+        // a slot is empty if its reference is null; all fields are only changed while holding segmentLock, and keys and count are also only read
+        // while holding it
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+
+        private volatile AtomicReferenceArray<LongKeyReference<V>> references = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+        private int count;
+
+        V get(long key, int hash, Supplier<V> supplier) {
+            final V existingValue = getIfPresent(key, hash);
+            if (existingValue != null) {
+                return existingValue;
+            }
+            segmentLock.lock();
+            try {
+                processQueue();
+                final var references = this.references;
+                final int mask = references.length() - 1;
+                int index = hash & mask;
+                LongKeyReference<V> reference;
+                while ((reference = references.get(index)) != null) {
+                    if (keys[index] == key) {
+                        final V value = reference.get();
+                        if (value != null) {
+                            return value;
+                        }
+                        // the value has been cleared, but its reference has not been processed yet; replace it in the same slot
+                        final var newValue = supplier.get();
+                        references.set(index, new LongKeyReference<>(key, newValue, referenceQueue));
+                        return newValue;
+                    }
+                    index = (index + 1) & mask;
+                }
+                final var newValue = supplier.get();
+                keys[index] = key;
+                references.set(index, new LongKeyReference<>(key, newValue, referenceQueue));
+                // keep the load factor at most 3/4
+                if (++count > references.length() - (references.length() >>> 2)) {
+                    resize(references.length() << 1);
+                }
+                return newValue;
+            } finally {
+                segmentLock.unlock();
+            }
+        }
+
+        ///
+        /// Return the value for `key` if it exists, without taking the segment lock.
+        ///
+        /// This only reads the references, which are published using volatile writes, and compares the key stored in each reference instead of the
+        /// `keys` array. A reference with a value that has not been cleared is always the current one for its key, as references are only replaced or
+        /// removed after their value has been cleared. Entries which are concurrently moved by [#removeAt(int)] or [#resize(int)] may be missed; the
+        /// caller then looks the key up again while holding the segment lock.
+        ///
+        private @Nullable V getIfPresent(long key, int hash) {
+            final var references = this.references;
+            final int mask = references.length() - 1;
+            int index = hash & mask;
+            // bounded, as concurrent moves could otherwise keep a probe sequence from reaching an empty slot
+            for (int probes = 0; probes <= mask; probes++) {
+                final var reference = references.get(index);
+                if (reference == null) {
+                    return null;
+                }
+                if (reference.getKey() == key) {
+                    return reference.get();
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        int size() {
+            segmentLock.lock();
+            try {
+                processQueue();
+                return count;
+            } finally {
+                segmentLock.unlock();
+            }
+        }
+
+        ///
+        /// Removes values of this segment that have been marked as unreachable by the garbage collector. Entries are only removed if their slot still
+        /// contains the cleared reference, so a value which has already been replaced for the same key is never removed.
+        ///
+        private void processQueue() {
+            Reference<? extends V> reference;
+            boolean removed = false;
+            while ((reference = referenceQueue.poll()) != null) {
+                if (reference instanceof LongKeyReference) {
+                    removed |= remove((LongKeyReference<?>) reference);
+                }
+            }
+            // shrink the table once it is less than 1/8 full, so a burst of keys does not keep a large table alive
+            final int capacity = references.length();
+            if (removed && capacity > INITIAL_CAPACITY && count < capacity >>> 3) {
+                resize(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(count, 1) - 1) << 2));
+            }
+        }
+
+        private boolean remove(LongKeyReference<?> reference) {
+            final var references = this.references;
+            final long key = reference.getKey();
+            final int mask = references.length() - 1;
+            int index = (int) hash(key) & mask;
+            LongKeyReference<V> current;
+            while ((current = references.get(index)) != null) {
+                if (keys[index] == key) {
+                    if (current != reference) {
+                        return false;
+                    }
+                    removeAt(index);
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        ///
+        /// Empty the slot at `index` using backward-shift deletion: later entries of the same probe sequence are moved into the gap, so lookups never
+        /// need tombstones.
+        ///
+        private void removeAt(int index) {
+            final var references = this.references;
+            final int mask = references.length() - 1;
+            int gap = index;
+            int next = (index + 1) & mask;
+            LongKeyReference<V> reference;
+            while ((reference = references.get(next)) != null) {
+                final int home = (int) hash(keys[next]) & mask;
+                // the entry can be moved if the gap is not between its home slot and its current slot
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    references.set(gap, reference);
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = 0;
+            references.set(gap, null);
+            count--;
+        }
+
+        ///
+        /// Replace the table with a new one with `capacity` slots. The new table is only published once it is complete, so lock-free lookups keep
+        /// using the old one until then.
+        ///
+        private void resize(int capacity) {
+            final var oldKeys = keys;
+            final var oldReferences = references;
+            final int mask = capacity - 1;
+            final var newKeys = new long[capacity];
+            final var newReferences = new AtomicReferenceArray<LongKeyReference<V>>(capacity);
+            for (int i = 0; i < oldReferences.length(); i++) {
+                final var reference = oldReferences.get(i);
+                if (reference != null) {
+                    int index = (int) hash(oldKeys[i]) & mask;
+                    while (newReferences.get(index) != null) {
+                        index = (index + 1) & mask;
+                    }
+                    newKeys[index] = oldKeys[i];
+                    newReferences.set(index, reference);
+                }
+            }
+            keys = newKeys;
+            references = newReferences;
+        }
+
+    }
+
+}
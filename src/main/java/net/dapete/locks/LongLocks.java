@@ -0,0 +1,189 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking with implementations of [Lock], using primitive `long` keys.
+///
+/// This works like [Locks], but the keys are never boxed, and the locks are kept in hash tables which store the keys as primitives. This avoids allocating
+/// objects to look up a lock, and uses considerably less memory per lock than `Locks<Long, ...>`, which matters when there are a large number of
+/// short-lived locks, for example one for each entity ID.
+///
+/// The keys are partitioned into segments by their hash. Looking up an existing lock does not block; only creating a lock, or removing locks which are
+/// no longer used, briefly takes the lock of its segment. The default concurrency level is 16; if many threads create locks at the same time, a higher
+/// concurrency level reduces how often they wait for each other.
+///
+/// @param <L> the `Lock` type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class LongLocks<L extends Lock> extends LongKeyReferences<L> {
+
+    LongLocks(Supplier<L> lockSupplier, int concurrencyLevel) {
+        super(lockSupplier, concurrencyLevel);
+    }
+
+    ///
+    /// Return an instance using [Lock] implementations created by the specified `lockSupplier`.
+    ///
+    /// @param lockSupplier a `Supplier` for instances of [L] (usually the constructor of a class implementing `Lock`)
+    /// @param <L>          the `Lock` type
+    /// @return an instance using `Lock` implementations created by the specified `lockSupplier`
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <L extends Lock> LongLocks<L> withSupplier(Supplier<L> lockSupplier) {
+        return new LongLocks<>(lockSupplier, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    ///
+    /// Return an instance using [Lock] implementations created by the specified `lockSupplier`, partitioned into `concurrencyLevel` segments.
+    ///
+    /// @param lockSupplier     a `Supplier` for instances of [L] (usually the constructor of a class implementing `Lock`)
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <L>              the `Lock` type
+    /// @return an instance using `Lock` implementations created by the specified `lockSupplier`
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <L extends Lock> LongLocks<L> withSupplier(Supplier<L> lockSupplier, int concurrencyLevel) {
+        return new LongLocks<>(lockSupplier, concurrencyLevel);
+    }
+
+    ///
+    /// Return an instance using [ReentrantLock].
+    ///
+    /// @return an instance using `ReentrantLock`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static LongLocks<ReentrantLock> reentrant() {
+        return reentrant(false);
+    }
+
+    ///
+    /// Return an instance using [ReentrantLock] with the given fairness policy.
+    ///
+    /// @param fair `true` if the locks should use a fair ordering policy.
+    /// @return an instance using `ReentrantLock`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static LongLocks<ReentrantLock> reentrant(boolean fair) {
+        return reentrant(fair, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    ///
+    /// Return an instance using [ReentrantLock] with the given fairness policy, partitioned into `concurrencyLevel` segments.
+    ///
+    /// @param fair             `true` if the locks should use a fair ordering policy.
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @return an instance using `ReentrantLock`.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static LongLocks<ReentrantLock> reentrant(boolean fair, int concurrencyLevel) {
+        return new LongLocks<>(() -> new ReentrantLock(fair), concurrencyLevel);
+    }
+
+    ///
+    /// Return a lock for `key`. There will be at most one lock per key at any given time.
+    ///
+    /// @param key the key
+    /// @return a lock for `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public L get(long key) {
+        return super.get(key);
+    }
+
+    ///
+    /// Return a lock for `key` already locked using [Lock#lock()].
+    ///
+    /// @param key the key
+    /// @return a lock for `key` already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L lock(long key) {
+        final var lock = get(key);
+        lock.lock();
+        return lock;
+    }
+
+    ///
+    /// Return a lock for `key` already locked using [Lock#tryLock()], or `null` if the lock was not available.
+    ///
+    /// @param key the key
+    /// @return a lock for `key` already locked, or `null` if the lock was not available.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable L tryLock(long key) {
+        final var lock = get(key);
+        return lock.tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return a lock for `key` already locked using [Lock#tryLock(long, TimeUnit)], or `null` if the waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return a lock for `key` already locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable L tryLock(long key, long time, TimeUnit unit) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return lock.tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return a lock for `key` already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key the key
+    /// @return a lock for `key` already locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L lockInterruptibly(long key) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        lock.lockInterruptibly();
+        return lock;
+    }
+
+    ///
+    /// Lock the lock for `key` using [Lock#lock()] and return a [LockHandle] to unlock it again. See [Locks#acquire(Object)].
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the lock already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public LockHandle<L> acquire(long key) {
+        final var lock = lock(key);
+        return new LockHandle<>(lock, lock);
+    }
+
+    ///
+    /// Return the current number of locks managed by this instance.
+    ///
+    /// @return the current number of locks managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public int size() {
+        return super.size();
+    }
+
+}
@@ -0,0 +1,263 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking with implementations of [ReadWriteLock], using primitive `long` keys.
+///
+/// This works like [ReadWriteLocks], but the keys are never boxed, and the locks are kept in hash tables which store the keys as primitives. See
+/// [LongLocks] for details.
+///
+/// @param <L> the `ReadWriteLock` type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class LongReadWriteLocks<L extends ReadWriteLock> extends LongKeyReferences<L> {
+
+    LongReadWriteLocks(Supplier<L> lockSupplier, int concurrencyLevel) {
+        super(lockSupplier, concurrencyLevel);
+    }
+
+    ///
+    /// Return an instance using [ReadWriteLock] implementations created by the specified `lockSupplier`.
+    ///
+    /// @param lockSupplier a `Supplier` for instances of [L] (usually the constructor of a class implementing `ReadWriteLock`)
+    /// @param <L>          the `ReadWriteLock` type
+    /// @return an instance using `ReadWriteLock` implementations created by the specified `lockSupplier`
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <L extends ReadWriteLock> LongReadWriteLocks<L> withSupplier(Supplier<L> lockSupplier) {
+        return new LongReadWriteLocks<>(lockSupplier, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    ///
+    /// Return an instance using [ReadWriteLock] implementations created by the specified `lockSupplier`, partitioned into `concurrencyLevel` segments.
+    ///
+    /// @param lockSupplier     a `Supplier` for instances of [L] (usually the constructor of a class implementing `ReadWriteLock`)
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <L>              the `ReadWriteLock` type
+    /// @return an instance using `ReadWriteLock` implementations created by the specified `lockSupplier`
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <L extends ReadWriteLock> LongReadWriteLocks<L> withSupplier(Supplier<L> lockSupplier, int concurrencyLevel) {
+        return new LongReadWriteLocks<>(lockSupplier, concurrencyLevel);
+    }
+
+    ///
+    /// Return an instance using [ReentrantReadWriteLock].
+    ///
+    /// @return an instance using `ReentrantReadWriteLock`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static LongReadWriteLocks<ReentrantReadWriteLock> reentrant() {
+        return reentrant(false);
+    }
+
+    ///
+    /// Return an instance using [ReentrantReadWriteLock] with the given fairness policy.
+    ///
+    /// @param fair `true` if the locks should use a fair ordering policy.
+    /// @return an instance using `ReentrantReadWriteLock`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static LongReadWriteLocks<ReentrantReadWriteLock> reentrant(boolean fair) {
+        return reentrant(fair, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    ///
+    /// Return an instance using [ReentrantReadWriteLock] with the given fairness policy, partitioned into `concurrencyLevel` segments.
+    ///
+    /// @param fair             `true` if the locks should use a fair ordering policy.
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @return an instance using `ReentrantReadWriteLock`.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static LongReadWriteLocks<ReentrantReadWriteLock> reentrant(boolean fair, int concurrencyLevel) {
+        return new LongReadWriteLocks<>(() -> new ReentrantReadWriteLock(fair), concurrencyLevel);
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key`. There will be at most one lock per key at any given time.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` for `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public L get(long key) {
+        return super.get(key);
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#lock()].
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already read locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L readLock(long key) {
+        final var lock = get(key);
+        lock.readLock().lock();
+        return lock;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#lock()].
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already write locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L writeLock(long key) {
+        final var lock = get(key);
+        lock.writeLock().lock();
+        return lock;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#tryLock()], or `null` if the lock was
+    /// not available.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already read locked, or `null` if the lock was not available.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable L tryReadLock(long key) {
+        final var lock = get(key);
+        return lock.readLock().tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#tryLock()], or `null` if the lock
+    /// was not available.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already write locked, or `null` if the lock was not available.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable L tryWriteLock(long key) {
+        final var lock = get(key);
+        return lock.writeLock().tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#tryLock(long, TimeUnit)], or `null` if
+    /// the waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return a `ReadWriteLock` already read locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable L tryReadLock(long key, long time, TimeUnit unit) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return lock.readLock().tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#tryLock(long, TimeUnit)], or `null`
+    /// if the waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return a `ReadWriteLock` already write locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable L tryWriteLock(long key, long time, TimeUnit unit) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return lock.writeLock().tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already read locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L readLockInterruptibly(long key) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        lock.readLock().lockInterruptibly();
+        return lock;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already write locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public L writeLockInterruptibly(long key) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        lock.writeLock().lockInterruptibly();
+        return lock;
+    }
+
+    ///
+    /// Lock the [readLock][ReadWriteLock#readLock()] for `key` using [Lock#lock()] and return a [LockHandle] to unlock it again. See
+    /// [ReadWriteLocks#acquireRead(Object)].
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the read lock already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public LockHandle<L> acquireRead(long key) {
+        final var lock = readLock(key);
+        return new LockHandle<>(lock, lock.readLock());
+    }
+
+    ///
+    /// Lock the [writeLock][ReadWriteLock#writeLock()] for `key` using [Lock#lock()] and return a [LockHandle] to unlock it again. See
+    /// [ReadWriteLocks#acquireWrite(Object)].
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the write lock already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public LockHandle<L> acquireWrite(long key) {
+        final var lock = writeLock(key);
+        return new LockHandle<>(lock, lock.writeLock());
+    }
+
+    ///
+    /// Return the current number of locks managed by this instance.
+    ///
+    /// @return the current number of locks managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public int size() {
+        return super.size();
+    }
+
+}
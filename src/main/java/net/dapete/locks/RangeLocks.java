@@ -0,0 +1,409 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Locking of ranges of ordered keys, together with locking single keys:
+///
+/// ```
+/// final var locks = RangeLocks.<Instant>create();
+/// try (final var range = locks.acquire(windowStart, windowEnd)) {
+///     // no other thread holds a lock on any key from windowStart (inclusive) to windowEnd (exclusive), or on a range overlapping it
+/// }
+/// ```
+///
+/// Ranges include their lower and exclude their upper bound, so adjacent ranges like `[0, 10)` and `[10, 20)` do not overlap. Ranges and keys which do
+/// not overlap are locked concurrently; locks which overlap are granted in the order they were requested, so a range is never kept waiting by keys locked
+/// after it.
+///
+/// The held and waiting locks are kept in two [ConcurrentSkipListSet] instances, one for keys and one for ranges, ordered by their lower bound. Each
+/// request is added to its set, then takes a ticket from an atomic counter, and waits for all overlapping requests with an earlier ticket. Because a
+/// request is added before it takes its ticket, the later of two overlapping requests always finds the earlier one; if it finds it before its ticket
+/// has been stored, it spins until it has, which only takes a few instructions of the other thread. So the later request waits for the earlier one, and
+/// never the other way around. This also means that threads holding at most one lock at a time cannot deadlock. Finding the overlapping requests takes
+/// a lookup of the keys in the requested range, and a scan of the ranges starting before its end, so this is intended for many keys and comparatively
+/// few ranges.
+///
+/// The locks are not reentrant: a thread holding a lock waits for itself when it requests an overlapping one.
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class RangeLocks<K extends Comparable<? super K>> {
+
+    private final ConcurrentSkipListSet<RangeLock<K>> keys = new ConcurrentSkipListSet<>(order());
+
+    private final ConcurrentSkipListSet<RangeLock<K>> ranges = new ConcurrentSkipListSet<>(order());
+
+    // provides both the identity of a request within its set and its ticket
+    private final AtomicLong sequence = new AtomicLong();
+
+    private RangeLocks() {
+    }
+
+    ///
+    /// Return a new instance.
+    ///
+    /// @param <K> the key type.
+    /// @return a new instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K extends Comparable<? super K>> RangeLocks<K> create() {
+        return new RangeLocks<>();
+    }
+
+    private static <K extends Comparable<? super K>> Comparator<RangeLock<K>> order() {
+        return (lock1, lock2) -> {
+            final int compare = lock1.from.compareTo(lock2.from);
+            return compare != 0 ? compare : Long.compare(lock1.id, lock2.id);
+        };
+    }
+
+    ///
+    /// Lock `key`, waiting if necessary.
+    ///
+    /// @param key the key.
+    /// @return the lock, already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public RangeLock<K> acquire(K key) {
+        return await(request(key, null));
+    }
+
+    ///
+    /// Lock the range from `from` (inclusive) to `to` (exclusive), waiting if necessary.
+    ///
+    /// @param from the lower bound of the range (inclusive).
+    /// @param to   the upper bound of the range (exclusive).
+    /// @return the lock, already locked.
+    /// @throws IllegalArgumentException if `from` is not less than `to`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public RangeLock<K> acquire(K from, K to) {
+        return await(request(from, checkRange(from, to)));
+    }
+
+    ///
+    /// Lock `key`, waiting if necessary, unless the current thread is interrupted.
+    ///
+    /// @param key the key.
+    /// @return the lock, already locked.
+    /// @throws InterruptedException if the current thread is interrupted while waiting.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public RangeLock<K> acquireInterruptibly(K key) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        return awaitInterruptibly(request(key, null));
+    }
+
+    ///
+    /// Lock the range from `from` (inclusive) to `to` (exclusive), waiting if necessary, unless the current thread is interrupted.
+    ///
+    /// @param from the lower bound of the range (inclusive).
+    /// @param to   the upper bound of the range (exclusive).
+    /// @return the lock, already locked.
+    /// @throws InterruptedException     if the current thread is interrupted while waiting.
+    /// @throws IllegalArgumentException if `from` is not less than `to`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public RangeLock<K> acquireInterruptibly(K from, K to) throws InterruptedException {
+        checkRange(from, to);
+        WeakKeyReferences.checkInterrupted();
+        return awaitInterruptibly(request(from, to));
+    }
+
+    ///
+    /// Lock `key` if no overlapping lock is held right now.
+    ///
+    /// @param key the key.
+    /// @return the lock, already locked, or `null` if an overlapping lock is held.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable RangeLock<K> tryAcquire(K key) {
+        return tryAwait(request(key, null));
+    }
+
+    ///
+    /// Lock the range from `from` (inclusive) to `to` (exclusive) if no overlapping lock is held right now.
+    ///
+    /// @param from the lower bound of the range (inclusive).
+    /// @param to   the upper bound of the range (exclusive).
+    /// @return the lock, already locked, or `null` if an overlapping lock is held.
+    /// @throws IllegalArgumentException if `from` is not less than `to`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable RangeLock<K> tryAcquire(K from, K to) {
+        return tryAwait(request(from, checkRange(from, to)));
+    }
+
+    ///
+    /// Lock `key`, waiting at most the given time.
+    ///
+    /// @param key  the key.
+    /// @param time the maximum time to wait.
+    /// @param unit the time unit of `time`.
+    /// @return the lock, already locked, or `null` if it could not be locked in time.
+    /// @throws InterruptedException if the current thread is interrupted while waiting.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable RangeLock<K> tryAcquire(K key, long time, TimeUnit unit) throws InterruptedException {
+        WeakKeyReferences.checkInterrupted();
+        return tryAwait(request(key, null), System.nanoTime() + unit.toNanos(time));
+    }
+
+    ///
+    /// Lock the range from `from` (inclusive) to `to` (exclusive), waiting at most the given time.
+    ///
+    /// @param from the lower bound of the range (inclusive).
+    /// @param to   the upper bound of the range (exclusive).
+    /// @param time the maximum time to wait.
+    /// @param unit the time unit of `time`.
+    /// @return the lock, already locked, or `null` if it could not be locked in time.
+    /// @throws InterruptedException     if the current thread is interrupted while waiting.
+    /// @throws IllegalArgumentException if `from` is not less than `to`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable RangeLock<K> tryAcquire(K from, K to, long time, TimeUnit unit) throws InterruptedException {
+        checkRange(from, to);
+        WeakKeyReferences.checkInterrupted();
+        return tryAwait(request(from, to), System.nanoTime() + unit.toNanos(time));
+    }
+
+    ///
+    /// Return the number of locks currently held or waited for. This traverses all of them, so it should only be used for monitoring.
+    ///
+    /// @return the number of locks currently held or waited for.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int size() {
+        return keys.size() + ranges.size();
+    }
+
+    private K checkRange(K from, K to) {
+        if (from.compareTo(to) >= 0) {
+            throw new IllegalArgumentException("from must be less than to: " + from + ", " + to);
+        }
+        return to;
+    }
+
+    ///
+    /// Add a request for `from` to `to`, or only `from` if `to` is `null`, to its set, and only then give it a ticket.
+    ///
+    private RangeLock<K> request(K from, @Nullable K to) {
+        final var set = to == null ? keys : ranges;
+        final var lock = new RangeLock<>(set, from, to, sequence.incrementAndGet());
+        set.add(lock);
+        lock.ticket = sequence.incrementAndGet();
+        return lock;
+    }
+
+    ///
+    /// Return the requests overlapping `lock` which have an earlier ticket. Requests with a later ticket will wait for `lock` instead.
+    ///
+    private List<RangeLock<K>> earlierOverlapping(RangeLock<K> lock) {
+        final var overlapping = new ArrayList<RangeLock<K>>();
+        final long ticket = lock.ticket;
+        final K from = lock.from;
+        final K to = lock.to;
+        // keys from the lower bound up to the upper bound, or only the key itself
+        final var keysUpTo = to == null ? bound(from, Long.MAX_VALUE) : bound(to, Long.MIN_VALUE);
+        addEarlier(keys.subSet(bound(from, Long.MIN_VALUE), keysUpTo), from, ticket, overlapping);
+        // ranges starting before the upper bound, or at the key itself, and ending after the lower bound
+        addEarlier(ranges.headSet(keysUpTo), from, ticket, overlapping);
+        return overlapping;
+    }
+
+    private static <K extends Comparable<? super K>> void addEarlier(NavigableSet<RangeLock<K>> candidates, K from, long ticket,
+                                                                     List<RangeLock<K>> overlapping) {
+        for (final var candidate : candidates) {
+            final K candidateTo = candidate.to;
+            if ((candidateTo == null || candidateTo.compareTo(from) > 0) && awaitTicket(candidate) < ticket) {
+                overlapping.add(candidate);
+            }
+        }
+    }
+
+    ///
+    /// Return the ticket of `candidate`, spinning while it has been added to its set but has not stored its ticket yet.
+    ///
+    private static long awaitTicket(RangeLock<?> candidate) {
+        long ticket;
+        for (int spins = 0; (ticket = candidate.ticket) == 0; spins++) {
+            if (spins < 64) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return ticket;
+    }
+
+    // a request which is never added, used as a bound for the sets
+    private RangeLock<K> bound(K key, long id) {
+        return new RangeLock<>(keys, key, null, id);
+    }
+
+    private RangeLock<K> await(RangeLock<K> lock) {
+        boolean interrupted = false;
+        for (final var earlier : earlierOverlapping(lock)) {
+            while (true) {
+                try {
+                    earlier.released.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return lock;
+    }
+
+    private RangeLock<K> awaitInterruptibly(RangeLock<K> lock) throws InterruptedException {
+        boolean acquired = false;
+        try {
+            for (final var earlier : earlierOverlapping(lock)) {
+                earlier.released.await();
+            }
+            acquired = true;
+            return lock;
+        } finally {
+            if (!acquired) {
+                // requests waiting for this one can continue
+                lock.release();
+            }
+        }
+    }
+
+    private @Nullable RangeLock<K> tryAwait(RangeLock<K> lock) {
+        for (final var earlier : earlierOverlapping(lock)) {
+            if (earlier.released.getCount() != 0) {
+                lock.release();
+                return null;
+            }
+        }
+        return lock;
+    }
+
+    private @Nullable RangeLock<K> tryAwait(RangeLock<K> lock, long deadline) throws InterruptedException {
+        boolean acquired = false;
+        try {
+            for (final var earlier : earlierOverlapping(lock)) {
+                if (!earlier.released.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    return null;
+                }
+            }
+            acquired = true;
+            return lock;
+        } finally {
+            if (!acquired) {
+                lock.release();
+            }
+        }
+    }
+
+    ///
+    /// A lock of a key or a range acquired from a [RangeLocks] instance, which has to be [released][#release()] again. It can also be used in a
+    /// `try`-with-resources statement.
+    ///
+    /// @param <K> the key type.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final class RangeLock<K extends Comparable<? super K>> implements AutoCloseable {
+
+        private final NavigableSet<RangeLock<K>> set;
+
+        private final K from;
+
+        // null for a single key
+        private final @Nullable K to;
+
+        private final long id;
+
+        // 0 until the request has been added to its set and has taken its ticket
+        private volatile long ticket;
+
+        // counted down once the lock has been released, or the request has been given up
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private RangeLock(NavigableSet<RangeLock<K>> set, K from, @Nullable K to, long id) {
+            this.set = set;
+            this.from = from;
+            this.to = to;
+            this.id = id;
+        }
+
+        ///
+        /// Return the locked key, or the lower bound (inclusive) of the locked range.
+        ///
+        /// @return the locked key, or the lower bound of the locked range.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public K getFrom() {
+            return from;
+        }
+
+        ///
+        /// Return the upper bound (exclusive) of the locked range.
+        ///
+        /// @return the upper bound of the locked range, or `null` if a single key is locked.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public @Nullable K getTo() {
+            return to;
+        }
+
+        ///
+        /// Unlock the key or range. Calling this more than once has no further effect.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public void release() {
+            if (released.getCount() != 0) {
+                set.remove(this);
+                released.countDown();
+            }
+        }
+
+        ///
+        /// Return `true` if the key or range has been unlocked.
+        ///
+        /// @return `true` if the key or range has been unlocked.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isReleased() {
+            return released.getCount() == 0;
+        }
+
+        ///
+        /// Unlock the key or range, same as [#release()].
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        @Override
+        public void close() {
+            release();
+        }
+
+        @Override
+        public String toString() {
+            return to == null ? "RangeLock[" + from + "]" : "RangeLock[" + from + ", " + to + ")";
+        }
+
+    }
+
+}
@@ -1,12 +1,19 @@
 package net.dapete.locks;
 
 import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
 import static org.apiguardian.api.API.Status.STABLE;
 
 ///
@@ -16,12 +23,16 @@ import static org.apiguardian.api.API.Status.STABLE;
 /// @param <L> the `ReadWriteLock` type
 ///
 @API(status = STABLE)
-public class ReadWriteLocks<K, L extends ReadWriteLock> extends WeakKeyReferences<K, L> {
+public class ReadWriteLocks<K, L extends ReadWriteLock> extends WeakKeyReferences<K, L> implements KeyedReadWriteLocks<K, L> {
 
     ReadWriteLocks(Supplier<L> lockSupplier) {
         super(lockSupplier);
     }
 
+    ReadWriteLocks(Supplier<L> lockSupplier, Settings settings) {
+        super(lockSupplier, settings);
+    }
+
     ///
     /// Return an instance using [ReadWriteLock] implementations created by the specified `lockSupplier`.
     ///
@@ -35,6 +46,25 @@ public class ReadWriteLocks<K, L extends ReadWriteLock> extends WeakKeyReference
         return new ReadWriteLocks<>(lockSupplier);
     }
 
+    ///
+    /// Return an instance using [ReadWriteLock] implementations created by the specified `lockSupplier`, partitioned into `concurrencyLevel` segments.
+    ///
+    /// Each segment manages the locks for a subset of keys selected by their hash code, including removing locks which are no longer used. This reduces the
+    /// impact callers using different keys have on each other.
+    ///
+    /// @param lockSupplier     a `Supplier` for instances of [L] (usually the constructor of a class implementing `ReadWriteLock`)
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <K>              the key type
+    /// @param <L>              the `ReadWriteLock` type
+    /// @return an instance using `ReadWriteLock` implementations created by the specified `lockSupplier`
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K, L extends ReadWriteLock> ReadWriteLocks<K, L> withSupplier(Supplier<L> lockSupplier, int concurrencyLevel) {
+        return ReadWriteLocks.<K>builder().concurrencyLevel(concurrencyLevel).withSupplier(lockSupplier);
+    }
+
     ///
     /// Return a [ReentrantReadWriteLocks] instance using [ReentrantReadWriteLock].
     ///
@@ -85,6 +115,107 @@ public class ReadWriteLocks<K, L extends ReadWriteLock> extends WeakKeyReference
         return reentrant(fair);
     }
 
+    ///
+    /// Return a [ReentrantReadWriteLocks] instance using [ReentrantReadWriteLock] with the given fairness policy, partitioned into `concurrencyLevel`
+    /// segments.
+    ///
+    /// @param fair             `true` if the locks should use a fair ordering policy (see [ReentrantReadWriteLock#ReentrantReadWriteLock(boolean)]).
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two (see [#withSupplier(Supplier, int)]).
+    /// @param <K>              the key type.
+    /// @return a `ReentrantReadWriteLocks` instance.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> ReentrantReadWriteLocks<K> reentrant(boolean fair, int concurrencyLevel) {
+        return ReadWriteLocks.<K>builder().concurrencyLevel(concurrencyLevel).reentrant(fair);
+    }
+
+    ///
+    /// Return an instance using [CompactReadWriteLock], which needs considerably less memory than [ReentrantReadWriteLock] while it is not contended. This
+    /// is intended for a large number of keys which are locked at the same time, but rarely by more than one thread.
+    ///
+    /// @param <K> the key type
+    /// @return an instance using `CompactReadWriteLock`
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> ReadWriteLocks<K, CompactReadWriteLock> compact() {
+        return withSupplier(CompactReadWriteLock::new);
+    }
+
+    ///
+    /// Return an instance using [DistributedReadWriteLock], whose read lock scales with the number of processors, at the cost of more expensive write
+    /// locks and considerably more memory per lock. This is intended for keys which are read locked by many threads at the same time.
+    ///
+    /// Each lock counts its readers in one slot of 64 bytes per available processor, rounded up to a power of two and limited to 64 slots, so a lock needs
+    /// up to about 4 KiB, compared to less than 100 bytes for a `ReentrantReadWriteLock`. This memory is only used while the lock for a key exists, but it
+    /// makes this unsuitable for a large number of keys locked at the same time.
+    ///
+    /// @param <K> the key type
+    /// @return an instance using `DistributedReadWriteLock`
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> ReadWriteLocks<K, DistributedReadWriteLock> distributed() {
+        return withSupplier(DistributedReadWriteLock::new);
+    }
+
+    ///
+    /// Return a [StripedReadWriteLocks] instance using a fixed number of [ReentrantReadWriteLock] instances, selected by the hash code of the key.
+    ///
+    /// @param stripes the number of stripes; this is rounded up to the next power of two.
+    /// @param <K>     the key type.
+    /// @return a `StripedReadWriteLocks` instance.
+    /// @throws IllegalArgumentException if `stripes` is less than 1 or greater than 2^30.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> StripedReadWriteLocks<K, ReentrantReadWriteLock> striped(int stripes) {
+        return striped(stripes, ReentrantReadWriteLock::new);
+    }
+
+    ///
+    /// Return a [StripedReadWriteLocks] instance using a fixed number of [ReadWriteLock] instances created by `lockSupplier`, selected by the hash code of the key.
+    ///
+    /// @param stripes      the number of stripes; this is rounded up to the next power of two.
+    /// @param lockSupplier a `Supplier` for instances of [L] (usually the constructor of a class implementing `ReadWriteLock`).
+    /// @param <K>          the key type.
+    /// @param <L>          the `ReadWriteLock` type.
+    /// @return a `StripedReadWriteLocks` instance.
+    /// @throws IllegalArgumentException if `stripes` is less than 1 or greater than 2^30.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K, L extends ReadWriteLock> StripedReadWriteLocks<K, L> striped(int stripes, Supplier<L> lockSupplier) {
+        return new StripedReadWriteLocks<>(stripes, lockSupplier);
+    }
+
+    ///
+    /// Return a [ReadWriteLocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param <K> the key type.
+    /// @return a `ReadWriteLocksBuilder`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> ReadWriteLocksBuilder<K> builder() {
+        return new ReadWriteLocksBuilder<>();
+    }
+
+    ///
+    /// Return a [ReadWriteLocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param keyClass the class for the key type.
+    /// @param <K>      the key type.
+    /// @return a `ReadWriteLocksBuilder`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> ReadWriteLocksBuilder<K> builder(@SuppressWarnings("unused") Class<K> keyClass) {
+        return builder();
+    }
+
     ///
     /// Return a `ReadWriteLock` for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#lock()].
     ///
@@ -92,9 +223,10 @@ public class ReadWriteLocks<K, L extends ReadWriteLock> extends WeakKeyReference
     /// @return a `ReadWriteLock` already read locked.
     ///
     @API(status = STABLE)
+    @Override
     public L readLock(K key) {
         final var lock = get(key);
-        lock.readLock().lock();
+        acquireLock(key, lock.readLock());
         return lock;
     }
 
@@ -105,12 +237,331 @@ public class ReadWriteLocks<K, L extends ReadWriteLock> extends WeakKeyReference
     /// @return a `ReadWriteLock` already write locked.
     ///
     @API(status = STABLE)
+    @Override
     public L writeLock(K key) {
         final var lock = get(key);
-        lock.writeLock().lock();
+        acquireLock(key, lock.writeLock());
+        return lock;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#tryLock()], or `null` if the lock was
+    /// not available.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already read locked, or `null` if the lock was not available.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final @Nullable L tryReadLock(K key) {
+        final var lock = get(key);
+        return lock.readLock().tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#tryLock(long, TimeUnit)], or `null`
+    /// if the waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return a `ReadWriteLock` already read locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final @Nullable L tryReadLock(K key, long time, TimeUnit unit) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return lock.readLock().tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [readLock][ReadWriteLock#readLock()] already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already read locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final L readLockInterruptibly(K key) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        acquireLockInterruptibly(key, lock.readLock());
+        return lock;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#tryLock()], or `null` if the lock was
+    /// not available.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already write locked, or `null` if the lock was not available.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final @Nullable L tryWriteLock(K key) {
+        final var lock = get(key);
+        return lock.writeLock().tryLock() ? lock : null;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#tryLock(long, TimeUnit)], or `null`
+    /// if the waiting time elapsed before the lock was acquired.
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key  the key
+    /// @param time the maximum time to wait for the lock.
+    /// @param unit the time unit of the `time` argument.
+    /// @return a `ReadWriteLock` already write locked, or `null` if the waiting time elapsed before the lock was acquired.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final @Nullable L tryWriteLock(K key, long time, TimeUnit unit) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return lock.writeLock().tryLock(time, unit) ? lock : null;
+    }
+
+    ///
+    /// Return a `ReadWriteLock` for `key` with its [writeLock][ReadWriteLock#writeLock()] already locked using [Lock#lockInterruptibly()].
+    ///
+    /// If the current thread has already been interrupted, no lock is looked up or created for the key.
+    ///
+    /// @param key the key
+    /// @return a `ReadWriteLock` already write locked.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final L writeLockInterruptibly(K key) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        acquireLockInterruptibly(key, lock.writeLock());
         return lock;
     }
 
+    ///
+    /// Lock the [readLock][ReadWriteLock#readLock()] of the lock for `key` and return a [LockHandle] to unlock it again.
+    ///
+    /// The handle keeps the lock referenced until it is closed, so it is not necessary to keep the lock itself in a local variable:
+    ///
+    /// ```
+    /// try (final var handle = locks.acquireRead(url)) {
+    ///     // do something with the URL
+    /// }
+    /// ```
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the lock already read locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final LockHandle<L> acquireRead(K key) {
+        final var lock = readLock(key);
+        return new LockHandle<>(lock, lock.readLock());
+    }
+
+    ///
+    /// Lock the [writeLock][ReadWriteLock#writeLock()] of the lock for `key` and return a [LockHandle] to unlock it again. See [#acquireRead(Object)].
+    ///
+    /// @param key the key
+    /// @return a `LockHandle` for the lock already write locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final LockHandle<L> acquireWrite(K key) {
+        final var lock = writeLock(key);
+        return new LockHandle<>(lock, lock.writeLock());
+    }
+
+    ///
+    /// Call `action` while holding the [readLock][ReadWriteLock#readLock()] of the lock for `key`, and return its result. This is the same as
+    ///
+    /// ```
+    /// final var lock = locks.readLock(key);
+    /// try {
+    ///     return action.get();
+    /// } finally {
+    ///     lock.readLock().unlock();
+    /// }
+    /// ```
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final <T> T withReadLock(K key, Supplier<? extends T> action) {
+        final var lock = get(key);
+        return callLocked(key, lock, lock.readLock(), action);
+    }
+
+    ///
+    /// Call `action` with `key` while holding the [readLock][ReadWriteLock#readLock()] of the lock for `key`, and return its result. See
+    /// [#withReadLock(Object, Supplier)].
+    ///
+    /// Because `action` receives the key, it does not need to capture it, so the same instance can be used for every call instead of creating a new one
+    /// each time.
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final <T> T withReadLock(K key, Function<? super K, ? extends T> action) {
+        final var lock = get(key);
+        return applyLocked(key, lock, lock.readLock(), action);
+    }
+
+    ///
+    /// Call `action` while holding the [writeLock][ReadWriteLock#writeLock()] of the lock for `key`, and return its result. See
+    /// [#withReadLock(Object, Supplier)].
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final <T> T withWriteLock(K key, Supplier<? extends T> action) {
+        final var lock = get(key);
+        return callLocked(key, lock, lock.writeLock(), action);
+    }
+
+    ///
+    /// Call `action` with `key` while holding the [writeLock][ReadWriteLock#writeLock()] of the lock for `key`, and return its result. See
+    /// [#withReadLock(Object, Function)].
+    ///
+    /// @param key    the key.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final <T> T withWriteLock(K key, Function<? super K, ? extends T> action) {
+        final var lock = get(key);
+        return applyLocked(key, lock, lock.writeLock(), action);
+    }
+
+    ///
+    /// Lock the [readLock][ReadWriteLock#readLock()] of the locks for all `keys` and return a [LockGroup] to unlock them again.
+    ///
+    /// The locks are looked up together and acquired in a globally consistent order, so threads locking overlapping sets of keys using this method or
+    /// [#writeLockAll(Collection)] cannot deadlock each other. Keys which resolve to the same lock only lock it once.
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all read locks already locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final LockGroup readLockAll(Collection<? extends K> keys) {
+        return acquireAll(keys, ReadWriteLock::readLock);
+    }
+
+    ///
+    /// Lock the [readLock][ReadWriteLock#readLock()] of the locks for all `keys` and return a [LockGroup] to unlock them again. See
+    /// [#readLockAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all read locks already locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final LockGroup readLockAll(K... keys) {
+        return readLockAll(Arrays.asList(keys));
+    }
+
+    ///
+    /// Lock the [writeLock][ReadWriteLock#writeLock()] of the locks for all `keys` and return a [LockGroup] to unlock them again.
+    ///
+    /// The locks are looked up together and acquired in a globally consistent order, so threads locking overlapping sets of keys using this method or
+    /// [#readLockAll(Collection)] cannot deadlock each other. Keys which resolve to the same lock only lock it once.
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all write locks already locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public final LockGroup writeLockAll(Collection<? extends K> keys) {
+        return acquireAll(keys, ReadWriteLock::writeLock);
+    }
+
+    ///
+    /// Lock the [writeLock][ReadWriteLock#writeLock()] of the locks for all `keys` and return a [LockGroup] to unlock them again. See
+    /// [#writeLockAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all write locks already locked.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final LockGroup writeLockAll(K... keys) {
+        return writeLockAll(Arrays.asList(keys));
+    }
+
+    ///
+    /// Return locks for all `keys`, in the same order. This returns the same locks as calling [#get(Object)] for each key, but looks them up in a single
+    /// pass: keys are grouped by segment, so the unused locks of each segment are only removed once per call, and a segment guarded by a lock (see
+    /// [ReadWriteLocksBuilder#virtualThreadFriendly()]) only acquires it once for all of its keys.
+    ///
+    /// Like with [#get(Object)], the locks are only kept while they are referenced, so the returned list should be kept while they are used.
+    ///
+    /// @param keys the keys.
+    /// @return a list with the lock for each of `keys`, in the same order.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public List<L> getAll(Collection<? extends K> keys) {
+        return super.getAll(keys);
+    }
+
+    ///
+    /// Return locks for all `keys`, in the same order. See [#getAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a list with the lock for each of `keys`, in the same order.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final List<L> getAll(K... keys) {
+        return getAll(Arrays.asList(keys));
+    }
+
     ///
     /// Return a lock for `key`. There will be at most one lock per key at any given time.
     ///
@@ -134,4 +585,26 @@ public class ReadWriteLocks<K, L extends ReadWriteLock> extends WeakKeyReference
         return super.size();
     }
 
+    ///
+    /// Return the metrics recorded by this instance, or `null` if it has not been created with [metrics enabled][ReadWriteLocksBuilder#metrics()].
+    ///
+    /// @return the metrics recorded by this instance, or `null`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public final @Nullable LockMetrics getMetrics() {
+        return metrics;
+    }
+
+    ///
+    /// Return the diagnostics of this instance, or `null` if it has not been created with [diagnostics enabled][ReadWriteLocksBuilder#diagnostics()].
+    ///
+    /// @return the diagnostics of this instance, or `null`.
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public final @Nullable LockDiagnostics<K> getDiagnostics() {
+        return diagnostics;
+    }
+
 }
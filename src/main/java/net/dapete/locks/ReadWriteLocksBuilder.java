@@ -0,0 +1,72 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Builder for instances of [ReadWriteLocks] with custom settings.
+///
+/// Instances can be created using [ReadWriteLocks#builder()] and [ReadWriteLocks#builder(Class)], for example:
+///
+/// ```
+/// final var locks = ReadWriteLocks.<String>builder()
+///         .concurrencyLevel(16)
+///         .cleanupLimit(100)
+///         .reentrant();
+/// ```
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class ReadWriteLocksBuilder<K> extends AbstractLocksBuilder<ReadWriteLocksBuilder<K>> {
+
+    ReadWriteLocksBuilder() {
+    }
+
+    @Override
+    ReadWriteLocksBuilder<K> self() {
+        return this;
+    }
+
+    ///
+    /// Return a [ReadWriteLocks] instance using [ReadWriteLock] instances created by `lockSupplier`.
+    ///
+    /// @param lockSupplier a `Supplier` for instances of [L] (usually the constructor of a class implementing `ReadWriteLock`).
+    /// @param <L>          the `ReadWriteLock` type.
+    /// @return a `ReadWriteLocks` instance.
+    /// @throws IllegalStateException if [diagnostics][#diagnostics()] have been requested.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public <L extends ReadWriteLock> ReadWriteLocks<K, L> withSupplier(Supplier<L> lockSupplier) {
+        checkNoDiagnostics();
+        return new ReadWriteLocks<>(lockSupplier, settings);
+    }
+
+    ///
+    /// Return a [ReentrantReadWriteLocks] instance using [ReentrantReadWriteLock].
+    ///
+    /// @return a `ReentrantReadWriteLocks` instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public ReentrantReadWriteLocks<K> reentrant() {
+        return reentrant(false);
+    }
+
+    ///
+    /// Return a [ReentrantReadWriteLocks] instance using [ReentrantReadWriteLock] with the given fairness policy.
+    ///
+    /// @param fair `true` if the locks should use a fair ordering policy (see [ReentrantReadWriteLock#ReentrantReadWriteLock(boolean)]).
+    /// @return a `ReentrantReadWriteLocks` instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public ReentrantReadWriteLocks<K> reentrant(boolean fair) {
+        return new ReentrantReadWriteLocks<>(fair, settings);
+    }
+
+}
@@ -9,7 +9,8 @@ import static org.apiguardian.api.API.Status.STABLE;
 ///
 /// Key-based locking using instances of [ReentrantLock].
 ///
-/// Instances can be created using [Locks#reentrant()], [Locks#reentrant(Class)], [Locks#reentrant(boolean)] and [Locks#reentrant(boolean, Class)].
+/// Instances can be created using [Locks#reentrant()], [Locks#reentrant(Class)], [Locks#reentrant(boolean)], [Locks#reentrant(boolean, Class)] and
+/// [Locks#reentrant(boolean, int)].
 ///
 /// @param <K> the key type.
 ///
@@ -23,7 +24,11 @@ public final class ReentrantLocks<K> extends Locks<K, ReentrantLock> {
     }
 
     ReentrantLocks(boolean fair) {
-        super(() -> new ReentrantLock(fair));
+        this(fair, new Settings());
+    }
+
+    ReentrantLocks(boolean fair, Settings settings) {
+        super(settings.diagnostics ? () -> new InspectableReentrantLock(fair) : () -> new ReentrantLock(fair), settings);
         this.fair = fair;
     }
 
@@ -9,8 +9,8 @@ import static org.apiguardian.api.API.Status.STABLE;
 ///
 /// Key-based locking using instances of [ReentrantReadWriteLock].
 ///
-/// Instances can be created using [ReadWriteLocks#reentrant()], [ReadWriteLocks#reentrant(Class)], [ReadWriteLocks#reentrant(boolean)] and
-/// [ReadWriteLocks#reentrant(boolean, Class)].
+/// Instances can be created using [ReadWriteLocks#reentrant()], [ReadWriteLocks#reentrant(Class)], [ReadWriteLocks#reentrant(boolean)],
+/// [ReadWriteLocks#reentrant(boolean, Class)] and [ReadWriteLocks#reentrant(boolean, int)].
 ///
 /// @param <K> the key type.
 ///
@@ -24,7 +24,11 @@ public final class ReentrantReadWriteLocks<K> extends ReadWriteLocks<K, Reentran
     }
 
     ReentrantReadWriteLocks(boolean fair) {
-        super(() -> new ReentrantReadWriteLock(fair));
+        this(fair, new Settings());
+    }
+
+    ReentrantReadWriteLocks(boolean fair, Settings settings) {
+        super(settings.diagnostics ? () -> new InspectableReentrantReadWriteLock(fair) : () -> new ReentrantReadWriteLock(fair), settings);
         this.fair = fair;
     }
 
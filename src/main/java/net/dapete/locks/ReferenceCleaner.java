@@ -0,0 +1,132 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// A daemon thread which periodically removes locks that are no longer referenced from instances of [Locks] and [ReadWriteLocks].
+///
+/// Usually, unused locks are removed by the threads calling methods like [Locks#get(Object)] or [Locks#lock(Object)]. After a garbage collection has
+/// cleared a large number of locks, this can noticeably delay the next caller. Instances created with a cleaner leave this to the cleaner instead, as long
+/// as it is running:
+///
+/// ```
+/// final var cleaner = ReferenceCleaner.start();
+/// final var locks = Locks.<String>builder().cleaner(cleaner).reentrant();
+/// ```
+///
+/// A cleaner can be shared by any number of instances. It only keeps weak references to them, so they can still be garbage collected. Once the cleaner has
+/// been [closed][#close()], the instances revert to removing unused locks themselves.
+///
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class ReferenceCleaner implements AutoCloseable {
+
+    ///
+    /// The default interval between two runs of the cleaner.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMillis(100);
+
+    private final Queue<WeakReference<WeakKeyReferences<?, ?>>> instances = new ConcurrentLinkedQueue<>();
+
+    private final long intervalNanos;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private ReferenceCleaner(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive: " + interval);
+        }
+        this.intervalNanos = interval.toNanos();
+        this.thread = new Thread(this::run, "locks-reference-cleaner");
+        this.thread.setDaemon(true);
+    }
+
+    ///
+    /// Start a new cleaner using the [default interval][#DEFAULT_INTERVAL].
+    ///
+    /// @return a running cleaner.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static ReferenceCleaner start() {
+        return start(DEFAULT_INTERVAL);
+    }
+
+    ///
+    /// Start a new cleaner running every `interval`.
+    ///
+    /// @param interval the interval between two runs of the cleaner.
+    /// @return a running cleaner.
+    /// @throws IllegalArgumentException if `interval` is zero or negative.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static ReferenceCleaner start(Duration interval) {
+        final var cleaner = new ReferenceCleaner(interval);
+        cleaner.thread.start();
+        return cleaner;
+    }
+
+    ///
+    /// Return `true` if this cleaner has not been closed.
+    ///
+    /// @return `true` if this cleaner has not been closed.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean isRunning() {
+        return running;
+    }
+
+    ///
+    /// Stop this cleaner. Instances using it will remove unused locks themselves again. This does not wait for the thread to terminate.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    void register(WeakKeyReferences<?, ?> instance) {
+        instances.add(new WeakReference<>(instance));
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(intervalNanos);
+            } catch (InterruptedException e) {
+                // only used to stop the thread
+                continue;
+            }
+            clean();
+        }
+        instances.clear();
+    }
+
+    ///
+    /// Remove all cleared references from all registered instances, and forget instances which have been garbage collected themselves.
+    ///
+    void clean() {
+        final var iterator = instances.iterator();
+        while (iterator.hasNext()) {
+            final var instance = iterator.next().get();
+            if (instance == null) {
+                iterator.remove();
+            } else {
+                instance.processQueue();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,338 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based [Semaphore] instances, to bound the number of callers using the same key concurrently:
+///
+/// ```
+/// final var semaphores = Semaphores.<String>create(4);
+/// try (final var permits = semaphores.acquire(tenant)) {
+///     // at most 4 threads do something for the same tenant at the same time
+/// }
+/// ```
+///
+/// Permits are acquired as [Permits], which keep the semaphore referenced until they are released. Like with [Locks], a semaphore is only kept as long
+/// as it is referenced, so it can only be removed when none of its permits are held, and a new semaphore created for the key later always starts with
+/// all permits available.
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class Semaphores<K> extends WeakKeyReferences<K, Semaphore> {
+
+    private final int permits;
+
+    Semaphores(int permits, boolean fair, Settings settings) {
+        super(() -> new Semaphore(permits, fair), settings);
+        this.permits = permits;
+    }
+
+    ///
+    /// Return a new instance with `permits` permits per key.
+    ///
+    /// @param permits the number of permits per key.
+    /// @param <K>     the key type.
+    /// @return a new instance.
+    /// @throws IllegalArgumentException if `permits` is less than 1.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> Semaphores<K> create(int permits) {
+        return create(permits, false);
+    }
+
+    ///
+    /// Return a new instance with `permits` permits per key and the given fairness policy.
+    ///
+    /// @param permits the number of permits per key.
+    /// @param fair    `true` if the semaphores should grant permits in the order they were requested (see [Semaphore#Semaphore(int, boolean)]).
+    /// @param <K>     the key type.
+    /// @return a new instance.
+    /// @throws IllegalArgumentException if `permits` is less than 1.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> Semaphores<K> create(int permits, boolean fair) {
+        return create(permits, fair, 1);
+    }
+
+    ///
+    /// Return a new instance with `permits` permits per key and the given fairness policy, partitioned into `concurrencyLevel` segments. See
+    /// [Locks#withSupplier(java.util.function.Supplier, int)].
+    ///
+    /// @param permits          the number of permits per key.
+    /// @param fair             `true` if the semaphores should grant permits in the order they were requested (see [Semaphore#Semaphore(int, boolean)]).
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <K>              the key type.
+    /// @return a new instance.
+    /// @throws IllegalArgumentException if `permits` is less than 1, or `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> Semaphores<K> create(int permits, boolean fair, int concurrencyLevel) {
+        return Semaphores.<K>builder().concurrencyLevel(concurrencyLevel).create(permits, fair);
+    }
+
+    ///
+    /// Return a [SemaphoresBuilder] to create an instance with custom settings.
+    ///
+    /// @param <K> the key type.
+    /// @return a `SemaphoresBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> SemaphoresBuilder<K> builder() {
+        return new SemaphoresBuilder<>();
+    }
+
+    ///
+    /// Return a [SemaphoresBuilder] to create an instance with custom settings.
+    ///
+    /// @param keyClass the class for the key type.
+    /// @param <K>      the key type.
+    /// @return a `SemaphoresBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> SemaphoresBuilder<K> builder(@SuppressWarnings("unused") Class<K> keyClass) {
+        return builder();
+    }
+
+    ///
+    /// Return the number of permits per key.
+    ///
+    /// @return the number of permits per key.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public int getPermits() {
+        return permits;
+    }
+
+    ///
+    /// Return a semaphore for `key`. There will be at most one semaphore per key at any given time.
+    ///
+    /// Permits acquired directly from the semaphore do not keep it referenced; it has to be kept in a local variable until they are released again.
+    ///
+    /// @param key the key
+    /// @return a semaphore for `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public Semaphore get(K key) {
+        return super.get(key);
+    }
+
+    ///
+    /// Acquire one permit for `key` using [Semaphore#acquire()], waiting if necessary.
+    ///
+    /// @param key the key.
+    /// @return the acquired permit.
+    /// @throws InterruptedException if the current thread is interrupted while waiting.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public Permits acquire(K key) throws InterruptedException {
+        return acquire(key, 1);
+    }
+
+    ///
+    /// Acquire `count` permits for `key` using [Semaphore#acquire(int)], waiting if necessary.
+    ///
+    /// @param key   the key.
+    /// @param count the number of permits.
+    /// @return the acquired permits.
+    /// @throws InterruptedException     if the current thread is interrupted while waiting.
+    /// @throws IllegalArgumentException if `count` is less than 1 or greater than [#getPermits()].
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public Permits acquire(K key, int count) throws InterruptedException {
+        checkCount(count);
+        checkInterrupted();
+        final var semaphore = get(key);
+        semaphore.acquire(count);
+        return new Permits(semaphore, count);
+    }
+
+    ///
+    /// Acquire one permit for `key` using [Semaphore#acquireUninterruptibly()], waiting if necessary.
+    ///
+    /// @param key the key.
+    /// @return the acquired permit.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public Permits acquireUninterruptibly(K key) {
+        return acquireUninterruptibly(key, 1);
+    }
+
+    ///
+    /// Acquire `count` permits for `key` using [Semaphore#acquireUninterruptibly(int)], waiting if necessary.
+    ///
+    /// @param key   the key.
+    /// @param count the number of permits.
+    /// @return the acquired permits.
+    /// @throws IllegalArgumentException if `count` is less than 1 or greater than [#getPermits()].
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public Permits acquireUninterruptibly(K key, int count) {
+        checkCount(count);
+        final var semaphore = get(key);
+        semaphore.acquireUninterruptibly(count);
+        return new Permits(semaphore, count);
+    }
+
+    ///
+    /// Acquire one permit for `key` using [Semaphore#tryAcquire()] if it is available right now.
+    ///
+    /// @param key the key.
+    /// @return the acquired permit, or `null` if none is available.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable Permits tryAcquire(K key) {
+        return tryAcquire(key, 1);
+    }
+
+    ///
+    /// Acquire `count` permits for `key` using [Semaphore#tryAcquire(int)] if they are available right now.
+    ///
+    /// @param key   the key.
+    /// @param count the number of permits.
+    /// @return the acquired permits, or `null` if not enough are available.
+    /// @throws IllegalArgumentException if `count` is less than 1 or greater than [#getPermits()].
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable Permits tryAcquire(K key, int count) {
+        checkCount(count);
+        final var semaphore = get(key);
+        return semaphore.tryAcquire(count) ? new Permits(semaphore, count) : null;
+    }
+
+    ///
+    /// Acquire one permit for `key` using [Semaphore#tryAcquire(long, TimeUnit)], waiting at most the given time.
+    ///
+    /// @param key  the key.
+    /// @param time the maximum time to wait.
+    /// @param unit the time unit of `time`.
+    /// @return the acquired permit, or `null` if none has become available in time.
+    /// @throws InterruptedException if the current thread is interrupted while waiting.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable Permits tryAcquire(K key, long time, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(key, 1, time, unit);
+    }
+
+    ///
+    /// Acquire `count` permits for `key` using [Semaphore#tryAcquire(int, long, TimeUnit)], waiting at most the given time.
+    ///
+    /// @param key   the key.
+    /// @param count the number of permits.
+    /// @param time  the maximum time to wait.
+    /// @param unit  the time unit of `time`.
+    /// @return the acquired permits, or `null` if not enough have become available in time.
+    /// @throws InterruptedException     if the current thread is interrupted while waiting.
+    /// @throws IllegalArgumentException if `count` is less than 1 or greater than [#getPermits()].
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable Permits tryAcquire(K key, int count, long time, TimeUnit unit) throws InterruptedException {
+        checkCount(count);
+        checkInterrupted();
+        final var semaphore = get(key);
+        return semaphore.tryAcquire(count, time, unit) ? new Permits(semaphore, count) : null;
+    }
+
+    // more permits than a semaphore has could never be acquired
+    private void checkCount(int count) {
+        if (count < 1 || count > permits) {
+            throw new IllegalArgumentException("count must be between 1 and " + permits + ": " + count);
+        }
+    }
+
+    ///
+    /// Return the current number of semaphores managed by this instance.
+    ///
+    /// @return the current number of semaphores managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public int size() {
+        return super.size();
+    }
+
+    ///
+    /// Permits acquired from the semaphore of a key, which have to be [released][#release()] again. They can also be used in a `try`-with-resources
+    /// statement.
+    ///
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final class Permits implements AutoCloseable {
+
+        private static final VarHandle RELEASED;
+
+        static {
+            try {
+                RELEASED = MethodHandles.lookup().findVarHandle(Permits.class, "released", boolean.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        // keeps the semaphore referenced while the permits are held
+        private final Semaphore semaphore;
+
+        private final int count;
+
+        @SuppressWarnings("unused") // accessed using RELEASED
+        private volatile boolean released;
+
+        private Permits(Semaphore semaphore, int count) {
+            this.semaphore = semaphore;
+            this.count = count;
+        }
+
+        ///
+        /// Return the number of permits.
+        ///
+        /// @return the number of permits.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public int getCount() {
+            return count;
+        }
+
+        ///
+        /// Release the permits to the semaphore. Calling this more than once has no further effect, even if the calls are made concurrently by different
+        /// threads.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public void release() {
+            if (RELEASED.compareAndSet(this, false, true)) {
+                semaphore.release(count);
+            }
+        }
+
+        ///
+        /// Return `true` if the permits have been released.
+        ///
+        /// @return `true` if the permits have been released.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isReleased() {
+            return released;
+        }
+
+        ///
+        /// Release the permits, same as [#release()].
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        @Override
+        public void close() {
+            release();
+        }
+
+    }
+
+}
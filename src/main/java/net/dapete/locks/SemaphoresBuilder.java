@@ -0,0 +1,62 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.concurrent.Semaphore;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Builder for instances of [Semaphores] with custom settings.
+///
+/// Instances can be created using [Semaphores#builder()] and [Semaphores#builder(Class)], for example:
+///
+/// ```
+/// final var semaphores = Semaphores.<String>builder()
+///         .concurrencyLevel(16)
+///         .create(3);
+/// ```
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class SemaphoresBuilder<K> extends AbstractKeyedBuilder<SemaphoresBuilder<K>> {
+
+    SemaphoresBuilder() {
+    }
+
+    @Override
+    SemaphoresBuilder<K> self() {
+        return this;
+    }
+
+    ///
+    /// Return a [Semaphores] instance with `permits` permits per key and the settings of this builder.
+    ///
+    /// @param permits the number of permits per key.
+    /// @return a `Semaphores` instance.
+    /// @throws IllegalArgumentException if `permits` is less than 1.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public Semaphores<K> create(int permits) {
+        return create(permits, false);
+    }
+
+    ///
+    /// Return a [Semaphores] instance with `permits` permits per key, the given fairness policy and the settings of this builder.
+    ///
+    /// @param permits the number of permits per key.
+    /// @param fair    `true` if the semaphores should grant permits in the order they were requested (see [Semaphore#Semaphore(int, boolean)]).
+    /// @return a `Semaphores` instance.
+    /// @throws IllegalArgumentException if `permits` is less than 1.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public Semaphores<K> create(int permits, boolean fair) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be at least 1: " + permits);
+        }
+        return new Semaphores<>(permits, fair, settings);
+    }
+
+}
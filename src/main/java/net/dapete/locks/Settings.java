@@ -0,0 +1,51 @@
+package net.dapete.locks;
+
+import org.jspecify.annotations.Nullable;
+
+///
+/// Settings for [WeakKeyReferences], usually configured using a builder like [LocksBuilder] or [ReadWriteLocksBuilder]. The values are only read when an instance is
+/// created, so changing them afterwards has no effect on existing instances.
+///
+final class Settings {
+
+    ///
+    /// The number of segments.
+    ///
+    int concurrencyLevel = 1;
+
+    ///
+    /// The maximum number of cleared references removed by a single call.
+    ///
+    int cleanupLimit = Integer.MAX_VALUE;
+
+    ///
+    /// The number of keys each instance is expected to hold, used to size the maps of the segments up front.
+    ///
+    int expectedKeys;
+
+    ///
+    /// The load factor of the maps of the segments.
+    ///
+    float loadFactor = 0.75f;
+
+    ///
+    /// The cleaner removing cleared references in the background, if any.
+    ///
+    @Nullable ReferenceCleaner cleaner;
+
+    ///
+    /// Whether segments avoid monitors (`synchronized`), see [LocksBuilder#virtualThreadFriendly()].
+    ///
+    boolean virtualThreadFriendly;
+
+    ///
+    /// Whether [LockMetrics] are recorded, see [LocksBuilder#metrics()].
+    ///
+    boolean metrics;
+
+    ///
+    /// Whether [LockDiagnostics] are available, see [LocksBuilder#diagnostics()].
+    ///
+    boolean diagnostics;
+
+}
@@ -0,0 +1,388 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking with [StampedLock], which supports optimistic reads in addition to read and write locks.
+///
+/// An optimistic read does not write to the lock at all, so readers of a key do not contend with each other as they do with a
+/// [java.util.concurrent.locks.ReentrantReadWriteLock]. Its stamp has to be validated after reading, falling back to a read lock if a writer has
+/// interfered:
+///
+/// ```
+/// final var stamp = locks.tryOptimisticRead(key);
+/// var value = cache.get(key);
+/// if (!stamp.validate()) {
+///     try (final var readStamp = locks.readLock(key)) {
+///         value = cache.get(key);
+///     }
+/// }
+/// ```
+///
+/// All methods return a [KeyStamp], which combines the stamp with the lock it belongs to. Like with [Locks], a lock is only kept as long as it is
+/// referenced, and the `KeyStamp` keeps it referenced, so a stamp is always validated or unlocked using the lock it was issued by. The locks are not
+/// reentrant, see [StampedLock].
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class StampedLocks<K> extends WeakKeyReferences<K, StampedLock> {
+
+    StampedLocks(Settings settings) {
+        super(StampedLock::new, settings);
+    }
+
+    ///
+    /// Return a new instance.
+    ///
+    /// @param <K> the key type.
+    /// @return a new instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> StampedLocks<K> create() {
+        return new StampedLocks<>(new Settings());
+    }
+
+    ///
+    /// Return a new instance partitioned into `concurrencyLevel` segments. See [Locks#withSupplier(java.util.function.Supplier, int)].
+    ///
+    /// @param concurrencyLevel the number of segments; this is rounded up to the next power of two.
+    /// @param <K>              the key type.
+    /// @return a new instance.
+    /// @throws IllegalArgumentException if `concurrencyLevel` is less than 1 or greater than 65536.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> StampedLocks<K> create(int concurrencyLevel) {
+        return StampedLocks.<K>builder().concurrencyLevel(concurrencyLevel).create();
+    }
+
+    ///
+    /// Return a [StampedLocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param <K> the key type.
+    /// @return a `StampedLocksBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> StampedLocksBuilder<K> builder() {
+        return new StampedLocksBuilder<>();
+    }
+
+    ///
+    /// Return a [StampedLocksBuilder] to create an instance with custom settings.
+    ///
+    /// @param keyClass the class for the key type.
+    /// @param <K>      the key type.
+    /// @return a `StampedLocksBuilder`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static <K> StampedLocksBuilder<K> builder(@SuppressWarnings("unused") Class<K> keyClass) {
+        return builder();
+    }
+
+    ///
+    /// Return a lock for `key`. There will be at most one lock per key at any given time.
+    ///
+    /// @param key the key
+    /// @return a lock for `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public StampedLock get(K key) {
+        return super.get(key);
+    }
+
+    ///
+    /// Return a stamp for an optimistic read of `key` using [StampedLock#tryOptimisticRead()]. If the key is currently write-locked, the stamp is never
+    /// valid.
+    ///
+    /// @param key the key.
+    /// @return a stamp for an optimistic read of `key`, to be checked using [KeyStamp#validate()].
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public KeyStamp tryOptimisticRead(K key) {
+        final var lock = get(key);
+        return new KeyStamp(lock, lock.tryOptimisticRead());
+    }
+
+    ///
+    /// Return `true` if the lock of `stamp` has not been write-locked since `stamp` was issued. Same as [KeyStamp#validate()].
+    ///
+    /// @param stamp the stamp.
+    /// @return `true` if the lock of `stamp` has not been write-locked since `stamp` was issued.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public boolean validate(KeyStamp stamp) {
+        return stamp.validate();
+    }
+
+    ///
+    /// Read-lock `key` using [StampedLock#readLock()], waiting if necessary.
+    ///
+    /// @param key the key.
+    /// @return a stamp for the read lock of `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public KeyStamp readLock(K key) {
+        final var lock = get(key);
+        return new KeyStamp(lock, lock.readLock());
+    }
+
+    ///
+    /// Read-lock `key` using [StampedLock#readLockInterruptibly()], waiting if necessary.
+    ///
+    /// @param key the key.
+    /// @return a stamp for the read lock of `key`.
+    /// @throws InterruptedException if the current thread is interrupted while waiting.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public KeyStamp readLockInterruptibly(K key) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return new KeyStamp(lock, lock.readLockInterruptibly());
+    }
+
+    ///
+    /// Read-lock `key` using [StampedLock#tryReadLock()] if it is available right now.
+    ///
+    /// @param key the key.
+    /// @return a stamp for the read lock of `key`, or `null` if it is not available.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable KeyStamp tryReadLock(K key) {
+        final var lock = get(key);
+        return KeyStamp.ofNonZero(lock, lock.tryReadLock());
+    }
+
+    ///
+    /// Read-lock `key` using [StampedLock#tryReadLock(long, TimeUnit)], waiting at most the given time.
+    ///
+    /// @param key  the key.
+    /// @param time the maximum time to wait.
+    /// @param unit the time unit of `time`.
+    /// @return a stamp for the read lock of `key`, or `null` if it has not become available in time.
+    /// @throws InterruptedException if the current thread is interrupted while waiting.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable KeyStamp tryReadLock(K key, long time, TimeUnit unit) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return KeyStamp.ofNonZero(lock, lock.tryReadLock(time, unit));
+    }
+
+    ///
+    /// Write-lock `key` using [StampedLock#writeLock()], waiting if necessary.
+    ///
+    /// @param key the key.
+    /// @return a stamp for the write lock of `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public KeyStamp writeLock(K key) {
+        final var lock = get(key);
+        return new KeyStamp(lock, lock.writeLock());
+    }
+
+    ///
+    /// Write-lock `key` using [StampedLock#writeLockInterruptibly()], waiting if necessary.
+    ///
+    /// @param key the key.
+    /// @return a stamp for the write lock of `key`.
+    /// @throws InterruptedException if the current thread is interrupted while waiting.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public KeyStamp writeLockInterruptibly(K key) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return new KeyStamp(lock, lock.writeLockInterruptibly());
+    }
+
+    ///
+    /// Write-lock `key` using [StampedLock#tryWriteLock()] if it is available right now.
+    ///
+    /// @param key the key.
+    /// @return a stamp for the write lock of `key`, or `null` if it is not available.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable KeyStamp tryWriteLock(K key) {
+        final var lock = get(key);
+        return KeyStamp.ofNonZero(lock, lock.tryWriteLock());
+    }
+
+    ///
+    /// Write-lock `key` using [StampedLock#tryWriteLock(long, TimeUnit)], waiting at most the given time.
+    ///
+    /// @param key  the key.
+    /// @param time the maximum time to wait.
+    /// @param unit the time unit of `time`.
+    /// @return a stamp for the write lock of `key`, or `null` if it has not become available in time.
+    /// @throws InterruptedException if the current thread is interrupted while waiting.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public @Nullable KeyStamp tryWriteLock(K key, long time, TimeUnit unit) throws InterruptedException {
+        checkInterrupted();
+        final var lock = get(key);
+        return KeyStamp.ofNonZero(lock, lock.tryWriteLock(time, unit));
+    }
+
+    ///
+    /// Return the current number of locks managed by this instance.
+    ///
+    /// @return the current number of locks managed by this instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @Override
+    public int size() {
+        return super.size();
+    }
+
+    ///
+    /// A stamp issued by the [StampedLock] of a key, together with that lock. This keeps the lock referenced while the stamp is in use.
+    ///
+    /// A stamp for a read or write lock has to be [unlocked][#unlock()] again, which can also be done using a `try`-with-resources statement. Unlocking a
+    /// stamp for an optimistic read has no effect. Once a stamp has been converted successfully, it must no longer be used; only the stamp returned by the
+    /// conversion is unlocked.
+    ///
+    /// @since 1.5.0
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public static final class KeyStamp implements AutoCloseable {
+
+        private final StampedLock lock;
+
+        private final long stamp;
+
+        private boolean released;
+
+        private KeyStamp(StampedLock lock, long stamp) {
+            this.lock = lock;
+            this.stamp = stamp;
+        }
+
+        private static @Nullable KeyStamp ofNonZero(StampedLock lock, long stamp) {
+            return stamp == 0L ? null : new KeyStamp(lock, stamp);
+        }
+
+        ///
+        /// Return the stamp as returned by the [StampedLock].
+        ///
+        /// @return the stamp.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public long getStamp() {
+            return stamp;
+        }
+
+        ///
+        /// Return `true` if the lock has not been write-locked since this stamp was issued, see [StampedLock#validate(long)]. This is always `true` for a
+        /// stamp of a read or write lock which has not been unlocked.
+        ///
+        /// @return `true` if the lock has not been write-locked since this stamp was issued.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean validate() {
+            return lock.validate(stamp);
+        }
+
+        ///
+        /// Return `true` if this is a valid stamp for an optimistic read. This is `false` for a stamp returned by [StampedLocks#tryOptimisticRead(Object)]
+        /// while the key was write-locked.
+        ///
+        /// @return `true` if this is a stamp for an optimistic read.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isOptimisticRead() {
+            return StampedLock.isOptimisticReadStamp(stamp);
+        }
+
+        ///
+        /// Return `true` if this is a stamp for a read lock.
+        ///
+        /// @return `true` if this is a stamp for a read lock.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isReadLock() {
+            return StampedLock.isReadLockStamp(stamp);
+        }
+
+        ///
+        /// Return `true` if this is a stamp for a write lock.
+        ///
+        /// @return `true` if this is a stamp for a write lock.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public boolean isWriteLock() {
+            return StampedLock.isWriteLockStamp(stamp);
+        }
+
+        ///
+        /// Convert this stamp to a write lock using [StampedLock#tryConvertToWriteLock(long)], without waiting.
+        ///
+        /// @return a stamp for the write lock, or `null` if it is not available; in that case this stamp stays valid.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public @Nullable KeyStamp tryConvertToWriteLock() {
+            return converted(lock.tryConvertToWriteLock(stamp));
+        }
+
+        ///
+        /// Convert this stamp to a read lock using [StampedLock#tryConvertToReadLock(long)], without waiting.
+        ///
+        /// @return a stamp for the read lock, or `null` if it is not available; in that case this stamp stays valid.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public @Nullable KeyStamp tryConvertToReadLock() {
+            return converted(lock.tryConvertToReadLock(stamp));
+        }
+
+        ///
+        /// Convert this stamp to an optimistic read using [StampedLock#tryConvertToOptimisticRead(long)], releasing a read or write lock.
+        ///
+        /// @return a stamp for an optimistic read, or `null` if this stamp is not valid.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public @Nullable KeyStamp tryConvertToOptimisticRead() {
+            return converted(lock.tryConvertToOptimisticRead(stamp));
+        }
+
+        private @Nullable KeyStamp converted(long newStamp) {
+            if (newStamp == 0L) {
+                return null;
+            }
+            // the new stamp is the one to unlock now
+            released = true;
+            return new KeyStamp(lock, newStamp);
+        }
+
+        ///
+        /// Unlock the read or write lock held by this stamp using [StampedLock#unlock(long)]. Calling this more than once, or for a stamp for an optimistic
+        /// read, has no effect.
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        public void unlock() {
+            if (!released) {
+                released = true;
+                // an optimistic read which found the key write-locked has the stamp 0, which is neither
+                if (isReadLock() || isWriteLock()) {
+                    lock.unlock(stamp);
+                }
+            }
+        }
+
+        ///
+        /// Unlock the lock held by this stamp, same as [#unlock()].
+        ///
+        @API(status = EXPERIMENTAL, since = "1.5.0")
+        @Override
+        public void close() {
+            unlock();
+        }
+
+    }
+
+}
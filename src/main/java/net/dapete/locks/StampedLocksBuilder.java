@@ -0,0 +1,42 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Builder for instances of [StampedLocks] with custom settings.
+///
+/// Instances can be created using [StampedLocks#builder()] and [StampedLocks#builder(Class)], for example:
+///
+/// ```
+/// final var locks = StampedLocks.<String>builder()
+///         .concurrencyLevel(16)
+///         .create();
+/// ```
+///
+/// @param <K> the key type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class StampedLocksBuilder<K> extends AbstractKeyedBuilder<StampedLocksBuilder<K>> {
+
+    StampedLocksBuilder() {
+    }
+
+    @Override
+    StampedLocksBuilder<K> self() {
+        return this;
+    }
+
+    ///
+    /// Return a [StampedLocks] instance with the settings of this builder.
+    ///
+    /// @return a `StampedLocks` instance.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public StampedLocks<K> create() {
+        return new StampedLocks<>(settings);
+    }
+
+}
@@ -0,0 +1,47 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking with a fixed number of [Lock] instances, selected by the hash code of the key.
+///
+/// Unlike [Locks] instances, different keys may share the same lock, so this does not guarantee that callers using different keys never block each
+/// other; it only bounds the number of locks and the contention between them. In return, no objects are allocated to look up a lock and no cleanup is
+/// necessary after garbage collections. Locks are only created when their stripe is first used, so a large number of stripes does not allocate all of them
+/// up front. Once created, a lock is kept as long as the instance.
+///
+/// This does not support [metrics][LocksBuilder#metrics()] or [diagnostics][LocksBuilder#diagnostics()], which are based on the keys of the locks.
+///
+/// Instances can be created using [Locks#striped(int)] and [Locks#striped(int, Supplier)].
+///
+/// @param <K> the key type.
+/// @param <L> the [Lock] type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class StripedLocks<K, L extends Lock> extends Stripes<K, L> implements KeyedLocks<K, L> {
+
+    StripedLocks(int stripes, Supplier<L> lockSupplier) {
+        super(stripes, lockSupplier);
+    }
+
+    ///
+    /// Lock the locks for all `keys` and return a [LockGroup] to unlock them again. See [#lockAll(java.util.Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all locks already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final LockGroup lockAll(K... keys) {
+        return lockAll(Arrays.asList(keys));
+    }
+
+}
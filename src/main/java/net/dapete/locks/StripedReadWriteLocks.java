@@ -0,0 +1,63 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// Key-based locking with a fixed number of [ReadWriteLock] instances, selected by the hash code of the key.
+///
+/// Unlike [ReadWriteLocks] instances, different keys may share the same lock, so this does not guarantee that callers using different keys never
+/// block each other; it only bounds the number of locks and the contention between them. In return, no objects are allocated to look up a lock and no
+/// cleanup is necessary after garbage collections. Locks are only created when their stripe is first used, so a large number of stripes does not allocate
+/// all of them up front. Once created, a lock is kept as long as the instance.
+///
+/// This does not support [metrics][ReadWriteLocksBuilder#metrics()] or [diagnostics][ReadWriteLocksBuilder#diagnostics()], which are based on the keys
+/// of the locks.
+///
+/// Instances can be created using [ReadWriteLocks#striped(int)] and [ReadWriteLocks#striped(int, Supplier)].
+///
+/// @param <K> the key type.
+/// @param <L> the [ReadWriteLock] type.
+/// @since 1.5.0
+///
+@API(status = EXPERIMENTAL, since = "1.5.0")
+public final class StripedReadWriteLocks<K, L extends ReadWriteLock> extends Stripes<K, L> implements KeyedReadWriteLocks<K, L> {
+
+    StripedReadWriteLocks(int stripes, Supplier<L> lockSupplier) {
+        super(stripes, lockSupplier);
+    }
+
+    ///
+    /// Lock the [readLock][ReadWriteLock#readLock()] of the locks for all `keys` and return a [LockGroup] to unlock them again. See
+    /// [#readLockAll(java.util.Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all read locks already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final LockGroup readLockAll(K... keys) {
+        return readLockAll(Arrays.asList(keys));
+    }
+
+    ///
+    /// Lock the [writeLock][ReadWriteLock#writeLock()] of the locks for all `keys` and return a [LockGroup] to unlock them again. See
+    /// [#writeLockAll(java.util.Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a `LockGroup` with all write locks already locked.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final LockGroup writeLockAll(K... keys) {
+        return writeLockAll(Arrays.asList(keys));
+    }
+
+}
@@ -0,0 +1,145 @@
+package net.dapete.locks;
+
+import org.apiguardian.api.API;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+///
+/// A fixed number of values selected by the hash code of a key, the common implementation of [StripedLocks] and [StripedReadWriteLocks]. The values are
+/// only created when they are first used.
+///
+/// @param <K> the key type.
+/// @param <V> the value type.
+///
+abstract class Stripes<K, V> {
+
+    ///
+    /// The maximum number of stripes.
+    ///
+    static final int MAX_STRIPES = 1 << 30;
+
+    private final AtomicReferenceArray<V> values;
+
+    private final int mask;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Supplier<V> supplier;
+
+    ///
+    /// Create an instance with `stripes` values.
+    ///
+    /// @param stripes  the number of stripes; this is rounded up to the next power of two.
+    /// @param supplier a `Supplier` for new values.
+    /// @throws IllegalArgumentException if `stripes` is less than 1 or greater than [#MAX_STRIPES].
+    ///
+    Stripes(int stripes, Supplier<V> supplier) {
+        this(supplier, stripeCount(stripes));
+    }
+
+    private Stripes(Supplier<V> supplier, int stripeCount) {
+        this.values = new AtomicReferenceArray<>(stripeCount);
+        this.mask = stripeCount - 1;
+        this.supplier = supplier;
+    }
+
+    private static int stripeCount(int stripes) {
+        if (stripes < 1 || stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("stripes must be between 1 and " + MAX_STRIPES + ": " + stripes);
+        }
+        return stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    }
+
+    ///
+    /// Return the lock for `key`. Equal keys always return the same lock, different keys may return the same lock.
+    ///
+    /// @param key the key
+    /// @return the lock for `key`.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public final V get(K key) {
+        final int index = index(key);
+        final V value = values.get(index);
+        if (value != null) {
+            return value;
+        }
+        final var newValue = supplier.get();
+        final V witness = values.compareAndExchange(index, null, newValue);
+        if (witness != null) {
+            return witness;
+        }
+        size.incrementAndGet();
+        return newValue;
+    }
+
+    ///
+    /// Return the locks for all `keys`, in the same order. Keys which share a stripe return the same lock.
+    ///
+    /// @param keys the keys.
+    /// @return a list with the lock for each of `keys`, in the same order.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public final List<V> getAll(Collection<? extends K> keys) {
+        final var result = new ArrayList<V>(keys.size());
+        for (final K key : keys) {
+            result.add(get(key));
+        }
+        return result;
+    }
+
+    ///
+    /// Return the locks for all `keys`, in the same order. See [#getAll(Collection)].
+    ///
+    /// @param keys the keys.
+    /// @return a list with the lock for each of `keys`, in the same order.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the list only reads the keys, and does not outlive this call
+    public final List<V> getAll(K... keys) {
+        return getAll(Arrays.asList(keys));
+    }
+
+    ///
+    /// Return the index of the stripe for `key`.
+    ///
+    /// @param key the key.
+    /// @return the index of the stripe for `key`.
+    ///
+    final int index(Object key) {
+        // spread the bits, so keys which only differ in their high bits do not all end up in the same stripe
+        int hash = key.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return hash & mask;
+    }
+
+    ///
+    /// Return the number of stripes, which is the maximum number of locks used by this instance.
+    ///
+    /// @return the number of stripes.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public final int getStripes() {
+        return values.length();
+    }
+
+    ///
+    /// Return the number of locks which have been created so far. This is never greater than [#getStripes()], and locks are never removed again.
+    ///
+    /// @return the number of locks which have been created so far.
+    ///
+    @API(status = EXPERIMENTAL, since = "1.5.0")
+    public final int size() {
+        return size.get();
+    }
+
+}
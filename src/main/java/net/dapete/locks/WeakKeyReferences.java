@@ -4,61 +4,291 @@ import org.jspecify.annotations.Nullable;
 
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 abstract class WeakKeyReferences<K, V> {
 
-    private final Lock instanceLock = new ReentrantLock();
+    ///
+    /// The maximum number of segments.
+    ///
+    static final int MAX_CONCURRENCY_LEVEL = 1 << 16;
 
-    private final Map<K, WeakKeyReference<K, V>> referenceMap = new HashMap<>();
+    private final Segment<K, V>[] segments;
 
-    private final ReferenceQueue<V> referenceQueue = new ReferenceQueue<>();
+    private final int segmentMask;
 
     private final Supplier<V> supplier;
 
+    private final int cleanupLimit;
+
+    private final @Nullable ReferenceCleaner cleaner;
+
+    final @Nullable LockMetrics metrics;
+
+    final @Nullable LockDiagnostics<K> diagnostics;
+
     protected WeakKeyReferences(Supplier<V> supplier) {
-        this.supplier = supplier;
+        this(supplier, new Settings(), 1);
+    }
+
+    ///
+    /// Create an instance using the supplied `settings`.
+    ///
+    /// If the concurrency level is greater than 1, the instance is partitioned into segments by the hash of the key. Each segment has its own map and
+    /// reference queue, so cleaning up values only affects callers using keys in the same segment.
+    ///
+    /// @param supplier a `Supplier` for new values.
+    /// @param settings the settings.
+    /// @throws IllegalArgumentException if the concurrency level is less than 1 or greater than [#MAX_CONCURRENCY_LEVEL].
+    ///
+    protected WeakKeyReferences(Supplier<V> supplier, Settings settings) {
+        this(supplier, settings, segmentCount(settings.concurrencyLevel));
+    }
+
+    private WeakKeyReferences(Supplier<V> supplier, Settings settings, int segmentCount) {
+        this.segments = newSegmentArray(segmentCount);
+        // keys are spread evenly over the segments, round up so a segment does not have to grow for the last few keys
+        final int expectedKeys = settings.expectedKeys / segmentCount + (settings.expectedKeys % segmentCount == 0 ? 0 : 1);
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = settings.virtualThreadFriendly
+                    ? new LockingSegment<>(expectedKeys, settings.loadFactor)
+                    : new ConcurrentSegment<>(expectedKeys, settings.loadFactor);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.metrics = settings.metrics ? new LockMetrics(this::size) : null;
+        this.supplier = metrics == null ? supplier : metrics.countCreated(supplier);
+        this.diagnostics = settings.diagnostics ? new LockDiagnostics<>(this) : null;
+        this.cleanupLimit = settings.cleanupLimit;
+        this.cleaner = settings.cleaner;
+        if (cleaner != null) {
+            cleaner.register(this);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // generic arrays cannot be created directly
+    private static <K, V> Segment<K, V>[] newSegmentArray(int segmentCount) {
+        return new Segment[segmentCount];
+    }
+
+    private static int segmentCount(int concurrencyLevel) {
+        if (concurrencyLevel < 1 || concurrencyLevel > MAX_CONCURRENCY_LEVEL) {
+            throw new IllegalArgumentException("concurrencyLevel must be between 1 and " + MAX_CONCURRENCY_LEVEL + ": " + concurrencyLevel);
+        }
+        return concurrencyLevel == 1 ? 1 : Integer.highestOneBit(concurrencyLevel - 1) << 1;
+    }
+
+    ///
+    /// Return the number of segments used by this instance.
+    ///
+    /// @return the number of segments used by this instance.
+    ///
+    int getConcurrencyLevel() {
+        return segments.length;
     }
 
-    private V createValue(K key) {
-        final var newValue = supplier.get();
-        referenceMap.put(key, new WeakKeyReference<>(key, newValue, referenceQueue));
-        return newValue;
+    private Segment<K, V> segmentFor(K key) {
+        return segments[segmentIndex(key)];
+    }
+
+    private int segmentIndex(Object key) {
+        if (segmentMask == 0) {
+            return 0;
+        }
+        // use different bits of the hash than the segment's map itself, otherwise each segment would only use a fraction of its buckets
+        final int hash = key.hashCode() * 0x9E3779B9;
+        return (hash >>> 16) & segmentMask;
+    }
+
+    private boolean isCleanupOnCallerThread() {
+        return cleaner == null || !cleaner.isRunning();
     }
 
     ///
     /// Return a value for the supplied `key`. There will be at most one value per key at any given time.
     ///
+    /// If a value for the key is already present, it is returned without any locking. Otherwise, a new value is created atomically, so concurrent callers
+    /// for the same key will always receive the same value.
+    ///
     /// @param key the key.
     /// @return a value for the supplied `key`.
     ///
     protected V get(K key) {
-        instanceLock.lock();
+        final var segment = segmentFor(key);
+        if (isCleanupOnCallerThread()) {
+            purged(segment.processQueue(cleanupLimit));
+        }
+        if (metrics != null) {
+            metrics.lookups(1);
+        }
+        return segment.get(key, supplier);
+    }
+
+    ///
+    /// Return values for all supplied `keys`, in the same order. There will be at most one value per key at any given time, so equal keys will return the
+    /// same value.
+    ///
+    /// This is equivalent to calling [#get(Object)] for each key, except that the keys are grouped by segment, so each segment is only visited once: its
+    /// reference queue is processed once, and a segment guarded by a lock only acquires it once for all of its keys.
+    ///
+    /// @param keys the keys.
+    /// @return values for all supplied `keys`.
+    ///
+    protected List<V> getAll(Collection<? extends K> keys) {
+        final var keyArray = keys.toArray();
+        final var values = new Object[keyArray.length];
+        final var positions = positionsBySegment(keyArray);
+        final boolean cleanup = isCleanupOnCallerThread();
+        int from = 0;
+        while (from < positions.length) {
+            final int index = (int) (positions[from] >>> 32);
+            int to = from + 1;
+            while (to < positions.length && (int) (positions[to] >>> 32) == index) {
+                to++;
+            }
+            final var segment = segments[index];
+            if (cleanup) {
+                purged(segment.processQueue(cleanupLimit));
+            }
+            segment.getAll(keyArray, positions, from, to, values, supplier);
+            from = to;
+        }
+        if (metrics != null) {
+            metrics.lookups(values.length);
+        }
+        @SuppressWarnings("unchecked") final var result = (List<V>) Arrays.asList(values);
+        return result;
+    }
+
+    ///
+    /// Return the positions of `keys` sorted by the index of their segment. Each element contains the segment index in its upper and the position in its
+    /// lower 32 bits, so sorting them keeps the keys of each segment in their original order.
+    ///
+    private long[] positionsBySegment(Object[] keys) {
+        final var positions = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            positions[i] = (long) segmentIndex(keys[i]) << 32 | i;
+        }
+        if (segmentMask != 0) {
+            Arrays.sort(positions);
+        }
+        return positions;
+    }
+
+    @Nullable WeakKeyReference<K, V> getReference(K key) {
+        return segmentFor(key).getReference(key);
+    }
+
+    ///
+    /// Lock `lock`, which has been looked up for `key`, using [Lock#lock()], recording the acquisition if metrics are enabled.
+    ///
+    /// @param key  the key.
+    /// @param lock the lock.
+    ///
+    final void acquireLock(K key, Lock lock) {
+        if (metrics == null) {
+            lock.lock();
+        } else {
+            metrics.lock(key, lock);
+        }
+    }
+
+    ///
+    /// Lock `lock`, which has been looked up for `key`, using [Lock#lockInterruptibly()], recording the acquisition if metrics are enabled.
+    ///
+    /// @param key  the key.
+    /// @param lock the lock.
+    /// @throws InterruptedException if the current thread is interrupted while acquiring the lock.
+    ///
+    final void acquireLockInterruptibly(K key, Lock lock) throws InterruptedException {
+        if (metrics == null) {
+            lock.lockInterruptibly();
+        } else {
+            metrics.lockInterruptibly(key, lock);
+        }
+    }
+
+    ///
+    /// Lock the [Lock] returned by `lockFunction` for the value of each of `keys` in a globally consistent order using [#acquireLock(Object, Lock)], so
+    /// the acquisitions are recorded like those of single keys. See [LockOrdering].
+    ///
+    /// @param keys         the keys.
+    /// @param lockFunction a function returning the `Lock` to acquire for a value.
+    /// @return a [LockGroup] to unlock all locks.
+    ///
+    final LockGroup acquireAll(Collection<? extends K> keys, Function<? super V, ? extends Lock> lockFunction) {
+        final var keyList = new ArrayList<K>(keys);
+        return LockOrdering.lockAll(keyList, getAll(keyList), lockFunction, this::acquireLock);
+    }
+
+    ///
+    /// Lock `lock`, which has been looked up for `key` as or from `value`, using [Lock#lock()], call `action` and unlock it again. `value` is kept
+    /// reachable until `lock` has been unlocked, so it cannot be replaced by a new value for the same key while `action` runs.
+    ///
+    /// @param key    the key.
+    /// @param value  the value for `key`.
+    /// @param lock   the lock, which is `value` itself or a view of it.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    ///
+    final <T> T callLocked(K key, V value, Lock lock, Supplier<? extends T> action) {
+        acquireLock(key, lock);
         try {
-            processQueue();
-            return getValue(key);
+            return action.get();
         } finally {
-            instanceLock.unlock();
+            lock.unlock();
+            Reference.reachabilityFence(value);
         }
     }
 
-    private V getValue(K key) {
-        final var reference = getReference(key);
-        if (reference != null) {
-            final V value = reference.get();
-            if (value != null) {
-                return value;
-            }
+    ///
+    /// Lock `lock` and call `action` with `key`, see [#callLocked(Object, Object, Lock, Supplier)].
+    ///
+    /// @param key    the key.
+    /// @param value  the value for `key`.
+    /// @param lock   the lock, which is `value` itself or a view of it.
+    /// @param action the action.
+    /// @param <T>    the result type.
+    /// @return the result of `action`.
+    ///
+    final <T> T applyLocked(K key, V value, Lock lock, Function<? super K, ? extends T> action) {
+        acquireLock(key, lock);
+        try {
+            return action.apply(key);
+        } finally {
+            lock.unlock();
+            Reference.reachabilityFence(value);
+        }
+    }
+
+    private void purged(int count) {
+        if (metrics != null && count > 0) {
+            metrics.purged(count);
         }
-        return createValue(key);
     }
 
-    private @Nullable WeakKeyReference<K, V> getReference(K key) {
-        return referenceMap.get(key);
+    ///
+    /// Throw an [InterruptedException] if the current thread has been interrupted, clearing its interrupted status. This is used before looking up a value
+    /// which is then used for an interruptible operation, so an interrupted thread does not create a new value it will not use.
+    ///
+    /// @throws InterruptedException if the current thread has been interrupted.
+    ///
+    static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
     }
 
     ///
@@ -67,26 +297,298 @@ abstract class WeakKeyReferences<K, V> {
     /// @return the current number of values managed by this instance.
     ///
     protected int size() {
-        instanceLock.lock();
-        try {
-            processQueue();
+        int size = 0;
+        for (final var segment : segments) {
+            purged(segment.processQueue(Integer.MAX_VALUE));
+            size += segment.size();
+        }
+        return size;
+    }
+
+    ///
+    /// Return the number of entries in all segments, including entries whose values have been cleared but not removed yet. Unlike [#size()], this does not
+    /// process the reference queues, so it shows whether they have been processed by someone else, like a [ReferenceCleaner].
+    ///
+    /// @return the number of entries in all segments.
+    ///
+    int entryCount() {
+        int count = 0;
+        for (final var segment : segments) {
+            count += segment.size();
+        }
+        return count;
+    }
+
+    ///
+    /// Call `action` for all keys and values currently present. Like the iterators of a [ConcurrentHashMap], this reflects the values at some point at or
+    /// since the start of the call, and values added or removed concurrently may or may not be included.
+    ///
+    /// @param action the action.
+    ///
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        for (final var segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    ///
+    /// Removes all values that have been marked as unreachable by the garbage collector from all segments.
+    ///
+    void processQueue() {
+        for (final var segment : segments) {
+            purged(segment.processQueue(Integer.MAX_VALUE));
+        }
+    }
+
+    ///
+    /// A part of the values of an instance, with its own map and reference queue.
+    ///
+    private abstract static class Segment<K, V> {
+
+        final ReferenceQueue<V> referenceQueue = new ReferenceQueue<>();
+
+        abstract V get(K key, Supplier<V> supplier);
+
+        ///
+        /// Store the values for the keys at the positions `positions[from]` to `positions[to - 1]` (in their lower 32 bits) of `keys`, which must all be
+        /// instances of `K`, at the same positions of `values`.
+        ///
+        void getAll(Object[] keys, long[] positions, int from, int to, Object[] values, Supplier<V> supplier) {
+            for (int i = from; i < to; i++) {
+                final int position = (int) positions[i];
+                @SuppressWarnings("unchecked") final var key = (K) keys[position];
+                values[position] = get(key, supplier);
+            }
+        }
+
+        abstract @Nullable WeakKeyReference<K, V> getReference(K key);
+
+        abstract int size();
+
+        abstract void forEach(BiConsumer<? super K, ? super V> action);
+
+        ///
+        /// Removes values of this segment that have been marked as unreachable by the garbage collector, but at most `limit` values. Any others are left for
+        /// the next call, so the cost of removing a large number of values is spread over several callers.
+        ///
+        /// Entries are only removed if they still map to the cleared reference, so a value which has already been replaced for the same key is never
+        /// removed.
+        ///
+        /// @param limit the maximum number of values to remove.
+        /// @return the number of values removed.
+        ///
+        abstract int processQueue(int limit);
+
+        final WeakKeyReference<K, V> newReference(K key, V value) {
+            return new WeakKeyReference<>(key, value, referenceQueue);
+        }
+
+    }
+
+    ///
+    /// A segment using a [ConcurrentHashMap], so values which are already present can be returned without any locking.
+    ///
+    private static final class ConcurrentSegment<K, V> extends Segment<K, V> {
+
+        private final ConcurrentMap<K, WeakKeyReference<K, V>> referenceMap;
+
+        ConcurrentSegment(int expectedKeys, float loadFactor) {
+            // unlike HashMap, the initial capacity of a ConcurrentHashMap is the number of entries it can hold without growing
+            referenceMap = new ConcurrentHashMap<>(expectedKeys, loadFactor);
+        }
+
+        @Override
+        V get(K key, Supplier<V> supplier) {
+            final var reference = referenceMap.get(key);
+            if (reference != null) {
+                final V value = reference.get();
+                if (value != null) {
+                    return value;
+                }
+            }
+            return getOrCreateValue(key, supplier);
+        }
+
+        private V getOrCreateValue(K key, Supplier<V> supplier) {
+            while (true) {
+                // the new value is kept strongly reachable until it has been read from its reference below
+                final var newValue = new Object[1];
+                final var reference = referenceMap.compute(key, (k, existing) -> {
+                    if (existing != null && existing.get() != null) {
+                        return existing;
+                    }
+                    final var value = supplier.get();
+                    newValue[0] = value;
+                    return newReference(k, value);
+                });
+                final V value = reference.get();
+                Reference.reachabilityFence(newValue);
+                if (value != null) {
+                    return value;
+                }
+                // the existing value was cleared between the check and reading it, try again
+            }
+        }
+
+        @Override
+        @Nullable WeakKeyReference<K, V> getReference(K key) {
+            return referenceMap.get(key);
+        }
+
+        @Override
+        int size() {
             return referenceMap.size();
-        } finally {
-            instanceLock.unlock();
         }
+
+        @Override
+        void forEach(BiConsumer<? super K, ? super V> action) {
+            referenceMap.forEach((key, reference) -> {
+                final V value = reference.get();
+                if (value != null) {
+                    action.accept(key, value);
+                }
+            });
+        }
+
+        @Override
+        int processQueue(int limit) {
+            int removed = 0;
+            Reference<? extends V> reference;
+            for (int i = 0; i < limit && (reference = referenceQueue.poll()) != null; i++) {
+                if (reference instanceof WeakKeyReference) {
+                    final var keyReference = (WeakKeyReference<?, ?>) reference;
+                    if (referenceMap.remove(keyReference.getKey(), keyReference)) {
+                        removed++;
+                    }
+                }
+            }
+            return removed;
+        }
+
     }
 
     ///
-    /// Removes all values that have been marked as unreachable by the garbage collector.
+    /// A segment using a [HashMap] guarded by a [ReentrantLock]. It does not use any monitors (`synchronized`), which a [ConcurrentHashMap] uses
+    /// internally when adding or removing entries, and the supplier is called while holding the `ReentrantLock`, so a virtual thread waiting for it is
+    /// unmounted from its carrier thread instead of pinning it.
     ///
-    private void processQueue() {
-        Reference<?> reference;
-        while ((reference = referenceQueue.poll()) != null) {
-            if (reference instanceof WeakKeyReference) {
-                final var keyReference = (WeakKeyReference<?, ?>) reference;
-                referenceMap.remove(keyReference.getKey());
+    private static final class LockingSegment<K, V> extends Segment<K, V> {
+
+        private final Lock segmentLock = new ReentrantLock();
+
+        private final Map<K, WeakKeyReference<K, V>> referenceMap;
+
+        LockingSegment(int expectedKeys, float loadFactor) {
+            referenceMap = new HashMap<>(tableSize(expectedKeys, loadFactor), loadFactor);
+        }
+
+        ///
+        /// Return the table size a [HashMap] with `loadFactor` needs to hold `expectedKeys` without growing.
+        ///
+        private static int tableSize(int expectedKeys, float loadFactor) {
+            return (int) Math.min(Math.ceil(expectedKeys / (double) loadFactor), 1 << 30);
+        }
+
+        @Override
+        V get(K key, Supplier<V> supplier) {
+            segmentLock.lock();
+            try {
+                return getLocked(key, supplier);
+            } finally {
+                segmentLock.unlock();
             }
         }
+
+        @Override
+        void getAll(Object[] keys, long[] positions, int from, int to, Object[] values, Supplier<V> supplier) {
+            segmentLock.lock();
+            try {
+                for (int i = from; i < to; i++) {
+                    final int position = (int) positions[i];
+                    @SuppressWarnings("unchecked") final var key = (K) keys[position];
+                    values[position] = getLocked(key, supplier);
+                }
+            } finally {
+                segmentLock.unlock();
+            }
+        }
+
+        private V getLocked(K key, Supplier<V> supplier) {
+            final var reference = referenceMap.get(key);
+            if (reference != null) {
+                final V value = reference.get();
+                if (value != null) {
+                    return value;
+                }
+            }
+            final var newValue = supplier.get();
+            referenceMap.put(key, newReference(key, newValue));
+            return newValue;
+        }
+
+        @Override
+        @Nullable WeakKeyReference<K, V> getReference(K key) {
+            segmentLock.lock();
+            try {
+                return referenceMap.get(key);
+            } finally {
+                segmentLock.unlock();
+            }
+        }
+
+        @Override
+        int size() {
+            segmentLock.lock();
+            try {
+                return referenceMap.size();
+            } finally {
+                segmentLock.unlock();
+            }
+        }
+
+        @Override
+        void forEach(BiConsumer<? super K, ? super V> action) {
+            final List<WeakKeyReference<K, V>> references;
+            segmentLock.lock();
+            try {
+                references = new ArrayList<>(referenceMap.values());
+            } finally {
+                segmentLock.unlock();
+            }
+            // the action is called without holding the lock, so it cannot block callers using this segment
+            for (final var reference : references) {
+                final V value = reference.get();
+                if (value != null) {
+                    action.accept(reference.getKey(), value);
+                }
+            }
+        }
+
+        @Override
+        int processQueue(int limit) {
+            // avoid taking the lock if there is nothing to do
+            Reference<? extends V> reference = referenceQueue.poll();
+            if (reference == null) {
+                return 0;
+            }
+            segmentLock.lock();
+            try {
+                int polled = 0;
+                int removed = 0;
+                do {
+                    if (reference instanceof WeakKeyReference) {
+                        final var keyReference = (WeakKeyReference<?, ?>) reference;
+                        if (referenceMap.remove(keyReference.getKey(), keyReference)) {
+                            removed++;
+                        }
+                    }
+                } while (++polled < limit && (reference = referenceQueue.poll()) != null);
+                return removed;
+            } finally {
+                segmentLock.unlock();
+            }
+        }
+
     }
 
 }
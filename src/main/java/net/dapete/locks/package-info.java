@@ -18,12 +18,14 @@
 ///             <td>{@link net.dapete.locks.Locks#reentrant() Locks.reentrant()}<br>
 ///                 {@link net.dapete.locks.Locks#reentrant(Class)}<br>
 ///                 {@link net.dapete.locks.Locks#reentrant(boolean)}<br>
-///                 {@link net.dapete.locks.Locks#reentrant(boolean, Class)}</td>
+///                 {@link net.dapete.locks.Locks#reentrant(boolean, Class)}<br>
+///                 {@link net.dapete.locks.Locks#reentrant(boolean, int)}</td>
 ///             <td>{@link net.dapete.locks.ReentrantLocks}</td>
 ///         </tr>
 ///         <tr>
 ///             <td>any implementation of {@link java.util.concurrent.locks.Lock Lock}</td>
-///             <td>{@link net.dapete.locks.Locks#withSupplier(java.util.function.Supplier) Locks.withSupplier(Supplier)}</td>
+///             <td>{@link net.dapete.locks.Locks#withSupplier(java.util.function.Supplier) Locks.withSupplier(Supplier)}<br>
+///                 {@link net.dapete.locks.Locks#withSupplier(java.util.function.Supplier, int) Locks.withSupplier(Supplier, int)}</td>
 ///             <td>{@link net.dapete.locks.Locks}</td>
 ///         </tr>
 ///         <tr>
@@ -31,20 +33,52 @@
 ///             <td>{@link net.dapete.locks.ReadWriteLocks#reentrant()}<br>
 ///                 {@link net.dapete.locks.ReadWriteLocks#reentrant(Class)}<br>
 ///                 {@link net.dapete.locks.ReadWriteLocks#reentrant(boolean)}<br>
-///                 {@link net.dapete.locks.ReadWriteLocks#reentrant(boolean, Class)}</td>
+///                 {@link net.dapete.locks.ReadWriteLocks#reentrant(boolean, Class)}<br>
+///                 {@link net.dapete.locks.ReadWriteLocks#reentrant(boolean, int)}</td>
 ///             <td>{@link net.dapete.locks.ReentrantReadWriteLocks}</td>
 ///         </tr>
 ///         <tr>
 ///             <td>any implementation of {@link java.util.concurrent.locks.ReadWriteLock ReadWriteLock}</td>
-///             <td>{@link net.dapete.locks.ReadWriteLocks#withSupplier(java.util.function.Supplier) ReadWriteLocks.withSupplier(Supplier)}</td>
+///             <td>{@link net.dapete.locks.ReadWriteLocks#withSupplier(java.util.function.Supplier) ReadWriteLocks.withSupplier(Supplier)}<br>
+///                 {@link net.dapete.locks.ReadWriteLocks#withSupplier(java.util.function.Supplier, int) ReadWriteLocks.withSupplier(Supplier, int)}</td>
 ///             <td>{@link net.dapete.locks.ReadWriteLocks}</td>
 ///         </tr>
+///         <tr>
+///             <td>{@link net.dapete.locks.CompactLock CompactLock}</td>
+///             <td>{@link net.dapete.locks.Locks#compact() Locks.compact()}</td>
+///             <td>{@link net.dapete.locks.Locks}</td>
+///         </tr>
+///         <tr>
+///             <td>{@link net.dapete.locks.CompactReadWriteLock CompactReadWriteLock}</td>
+///             <td>{@link net.dapete.locks.ReadWriteLocks#compact() ReadWriteLocks.compact()}</td>
+///             <td>{@link net.dapete.locks.ReadWriteLocks}</td>
+///         </tr>
+///         <tr>
+///             <td>{@link net.dapete.locks.DistributedReadWriteLock DistributedReadWriteLock}</td>
+///             <td>{@link net.dapete.locks.ReadWriteLocks#distributed() ReadWriteLocks.distributed()}</td>
+///             <td>{@link net.dapete.locks.ReadWriteLocks}</td>
+///         </tr>
+///         <tr>
+///             <td>a fixed number of {@link java.util.concurrent.locks.Lock Lock} instances shared by all keys</td>
+///             <td>{@link net.dapete.locks.Locks#striped(int) Locks.striped(int)}<br>
+///                 {@link net.dapete.locks.Locks#striped(int, java.util.function.Supplier) Locks.striped(int, Supplier)}</td>
+///             <td>{@link net.dapete.locks.StripedLocks}</td>
+///         </tr>
+///         <tr>
+///             <td>a fixed number of {@link java.util.concurrent.locks.ReadWriteLock ReadWriteLock} instances shared by all keys</td>
+///             <td>{@link net.dapete.locks.ReadWriteLocks#striped(int) ReadWriteLocks.striped(int)}<br>
+///                 {@link net.dapete.locks.ReadWriteLocks#striped(int, java.util.function.Supplier) ReadWriteLocks.striped(int, Supplier)}</td>
+///             <td>{@link net.dapete.locks.StripedReadWriteLocks}</td>
+///         </tr>
 ///     </tbody>
 /// </table>
 ///
 /// - All implementations use generics for the key type as well as the lock type, if this is not fixed (as with [net.dapete.locks.ReentrantLocks] and
 ///   [net.dapete.locks.ReentrantReadWriteLocks]).
 ///
+/// - [net.dapete.locks.Locks] and [net.dapete.locks.StripedLocks] both implement [net.dapete.locks.KeyedLocks], and [net.dapete.locks.ReadWriteLocks] and
+///   [net.dapete.locks.StripedReadWriteLocks] both implement [net.dapete.locks.KeyedReadWriteLocks], so code which only locks keys can use either.
+///
 /// - The [Class][java.lang.Class] parameter on the `reentrant(Class)` and `reentrant(boolean, Class)` methods is the `Class` of the key type. This is a
 ///   shortcut for readability if the compiler does not automatically detect it, for example:
 ///
@@ -56,6 +90,40 @@
 ///   also the constructors [ReentrantLock(boolean)][java.util.concurrent.locks.ReentrantLock#ReentrantLock(boolean)] and
 ///   [ReentrantReadWriteLock(boolean)][java.util.concurrent.locks.ReentrantReadWriteLock#ReentrantReadWriteLock(boolean)].
 ///
+/// - The `int` parameter on the `reentrant(boolean, int)` and `withSupplier(Supplier, int)` methods sets the concurrency level. The keys are partitioned
+///   into this many segments by their hash code, and each segment removes unused locks independently of the others.
+///
+/// - [net.dapete.locks.Locks#builder()] and [net.dapete.locks.ReadWriteLocks#builder()] return builders for instances with custom settings, for example
+///   limiting how many unused locks a single call removes, using a [net.dapete.locks.ReferenceCleaner] to remove them in the background, or recording
+///   [net.dapete.locks.LockMetrics] which can also be accessed using JMX.
+///
+/// - Reentrant instances created by a builder with `diagnostics()` provide [net.dapete.locks.LockDiagnostics], which list the keys currently locked and
+///   their owners, find deadlocks between keys, and report locks held for longer than a threshold, without adding any work to locking and unlocking.
+///
+/// - [net.dapete.locks.LongLocks], [net.dapete.locks.IntLocks] and [net.dapete.locks.LongReadWriteLocks] use primitive keys, which are never boxed and are
+///   stored in primitive hash tables, so they need considerably less memory per lock than instances using `Long` or `Integer` keys.
+///
+/// - [net.dapete.locks.CountedLocks] does not depend on the garbage collector: it counts the callers using each lock, and removes the lock as soon as the
+///   last of them has unlocked it.
+///
+/// - [net.dapete.locks.AsyncLocks] never blocks a thread: acquiring a key returns a [CompletableFuture][java.util.concurrent.CompletableFuture] which is
+///   completed with a permit once the key is available.
+///
+/// - [net.dapete.locks.StampedLocks] uses [StampedLock][java.util.concurrent.locks.StampedLock], so readers of a key can use optimistic reads which do not
+///   write to the lock at all.
+///
+/// - [net.dapete.locks.Semaphores] limits the number of callers using the same key concurrently, using a
+///   [Semaphore][java.util.concurrent.Semaphore] per key.
+///
+/// - [net.dapete.locks.KeyedExecutor] runs tasks submitted for the same key one after the other on an
+///   [Executor][java.util.concurrent.Executor], without any thread waiting for a key.
+///
+/// - [net.dapete.locks.HierarchicalLocks] locks paths in a hierarchy, where locking a path shared or exclusively also covers all paths below it, while
+///   paths which only share ancestors can still be locked in parallel.
+///
+/// - [net.dapete.locks.RangeLocks] locks ranges of ordered keys as well as single keys, where ranges and keys which do not overlap are locked
+///   concurrently.
+///
 /// - The `withSupplier(Supplier)` methods allow for any implementation of [Lock][java.util.concurrent.locks.Lock] or
 ///   [ReadWriteLock][java.util.concurrent.locks.ReadWriteLock] to be used. You can use the constructor as the `Supplier`, for example:
 ///
@@ -97,6 +165,16 @@
 /// final var lock = locks.get(url);
 /// lock.lock();
 /// ```
+///
+/// Alternatively, [net.dapete.locks.Locks#acquire(Object)] returns a [net.dapete.locks.LockHandle], which keeps the lock referenced and unlocks it when it
+/// is closed, so it can be used in a `try`-with-resources statement:
+///
+/// ```
+/// try (final var handle = locks.acquire(url)) {
+///     // do something with the URL
+/// }
+/// ```
+///
 /// ## ReadWriteLocks
 ///
 /// For [net.dapete.locks.ReadWriteLocks] it is similar to the first example for Locks:
@@ -127,7 +205,9 @@
 /// }
 /// ```
 ///
-/// Again, the `final var lock = …` lines could be split, which may be useful if both read and write locks are used in the method.
+/// Again, the `final var lock = …` lines could be split, which may be useful if both read and write locks are used in the method. The methods
+/// [net.dapete.locks.ReadWriteLocks#acquireRead(Object)] and [net.dapete.locks.ReadWriteLocks#acquireWrite(Object)] return a
+/// [net.dapete.locks.LockHandle] just like [net.dapete.locks.Locks#acquire(Object)].
 ///
 @API(status = API.Status.STABLE)
 package net.dapete.locks;
@@ -0,0 +1,196 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLocksTest {
+
+    @Test
+    void create_concurrencyLevel() {
+        assertEquals(4, AsyncLocks.create(3).getConcurrencyLevel());
+        assertThrows(IllegalArgumentException.class, () -> AsyncLocks.create(0));
+    }
+
+    @Test
+    void builder() {
+        final var locks = AsyncLocks.builder(String.class)
+                .concurrencyLevel(4)
+                .expectedKeys(100)
+                .virtualThreadFriendly()
+                .create();
+
+        assertEquals(4, locks.getConcurrencyLevel());
+        locks.acquire("key").join().release();
+        assertThrows(IllegalArgumentException.class, () -> AsyncLocks.builder().concurrencyLevel(0));
+    }
+
+    @Test
+    void acquire_available() {
+        final var locks = AsyncLocks.<String>create();
+
+        final var future = locks.acquire("key");
+
+        assertTrue(future.isDone());
+        final var permit = future.join();
+        assertFalse(permit.isReleased());
+        permit.release();
+        assertTrue(permit.isReleased());
+    }
+
+    @Test
+    void acquire_waitsForRelease() {
+        final var locks = AsyncLocks.<String>create();
+
+        final var first = locks.acquire("key").join();
+        final var second = locks.acquire("key");
+        final var other = locks.acquire("other");
+
+        assertFalse(second.isDone());
+        assertTrue(other.isDone());
+
+        first.release();
+        assertTrue(second.isDone());
+
+        // releasing again has no effect
+        first.release();
+        assertFalse(second.join().isReleased());
+        assertNull(locks.tryAcquire("key"));
+    }
+
+    @Test
+    void acquire_inOrder() {
+        final var locks = AsyncLocks.<String>create();
+
+        final var first = locks.acquire("key").join();
+        final var order = new ArrayList<Integer>();
+        for (int i = 0; i < 5; i++) {
+            final int index = i;
+            locks.acquire("key").thenAccept(permit -> {
+                order.add(index);
+                permit.release();
+            });
+        }
+        assertTrue(order.isEmpty());
+
+        first.release();
+
+        assertEquals(List.of(0, 1, 2, 3, 4), order);
+        assertNotNull(locks.tryAcquire("key"));
+    }
+
+    @Test
+    void acquire_cancelledWaiterIsSkipped() {
+        final var locks = AsyncLocks.<String>create();
+
+        final var first = locks.acquire("key").join();
+        final var cancelled = locks.acquire("key");
+        final var timedOut = locks.acquire("key").orTimeout(1, TimeUnit.MILLISECONDS);
+        final var third = locks.acquire("key");
+
+        assertTrue(cancelled.cancel(false));
+        await().atMost(30, TimeUnit.SECONDS).until(timedOut::isDone);
+        assertFalse(third.isDone());
+
+        first.release();
+
+        assertTrue(third.isDone());
+        assertFalse(third.join().isReleased());
+    }
+
+    @Test
+    void tryAcquire() {
+        final var locks = AsyncLocks.<String>create();
+
+        try (final var permit = locks.tryAcquire("key")) {
+            assertNotNull(permit);
+            assertNull(locks.tryAcquire("key"));
+            assertFalse(locks.acquire("key").isDone());
+        }
+
+        // the permit has been handed to the waiting caller
+        assertNull(locks.tryAcquire("key"));
+    }
+
+    @Test
+    void release_doesNotRecurse() {
+        final var locks = AsyncLocks.<String>create();
+
+        final var first = locks.acquire("key").join();
+        final int waiters = 100_000;
+        final var completed = new AtomicInteger();
+        for (int i = 0; i < waiters; i++) {
+            locks.acquire("key").thenAccept(permit -> {
+                completed.incrementAndGet();
+                permit.release();
+            });
+        }
+
+        first.release();
+
+        assertEquals(waiters, completed.get());
+    }
+
+    @Test
+    void acquire_mutualExclusion() throws InterruptedException, ExecutionException {
+        final var locks = AsyncLocks.<Integer>create();
+        final int threads = 8;
+        final int iterations = 10_000;
+        final var active = new AtomicInteger();
+        final var counter = new int[1];
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    final var done = new ArrayList<CompletableFuture<?>>();
+                    for (int i = 0; i < iterations; i++) {
+                        done.add(locks.acquire(1).thenAccept(permit -> {
+                            assertEquals(1, active.incrementAndGet());
+                            counter[0]++;
+                            active.decrementAndGet();
+                            permit.release();
+                        }));
+                    }
+                    CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final var permit = locks.tryAcquire(1);
+        assertNotNull(permit);
+        assertEquals(threads * iterations, counter[0]);
+        permit.release();
+    }
+
+    @Test
+    void size_unusedKeysAreRemoved() {
+        final var locks = AsyncLocks.<Integer>create();
+
+        final var held = locks.acquire(0).join();
+        for (int i = 1; i < 5; i++) {
+            locks.acquire(i).join().release();
+        }
+        System.gc();
+
+        await().atMost(30, TimeUnit.SECONDS).until(() -> locks.size() == 1);
+        assertNull(locks.tryAcquire(0));
+        held.release();
+    }
+
+}
@@ -0,0 +1,179 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactLockTest {
+
+    @Test
+    void compact() {
+        final var locks = Locks.<String>compact();
+
+        final var lock = locks.lock("key");
+        try {
+            assertTrue(lock.isHeldByCurrentThread());
+            assertSame(lock, locks.get("key"));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void lock_reentrant() {
+        final var lock = new CompactLock();
+        assertFalse(lock.isLocked());
+        assertEquals(0, lock.getHoldCount());
+
+        lock.lock();
+        lock.lock();
+        assertTrue(lock.isLocked());
+        assertTrue(lock.isHeldByCurrentThread());
+        assertEquals(2, lock.getHoldCount());
+        assertTrue(lock.toString().endsWith("[Locked by thread " + Thread.currentThread().getName() + "]"));
+
+        lock.unlock();
+        assertTrue(lock.isLocked());
+        lock.unlock();
+        assertFalse(lock.isLocked());
+        assertFalse(lock.isHeldByCurrentThread());
+        assertTrue(lock.toString().endsWith("[Unlocked]"));
+    }
+
+    @Test
+    void unlock_notHeld() {
+        final var lock = new CompactLock();
+
+        assertThrows(IllegalMonitorStateException.class, lock::unlock);
+    }
+
+    @Test
+    void newCondition() {
+        assertThrows(UnsupportedOperationException.class, () -> new CompactLock().newCondition());
+    }
+
+    @Test
+    void tryLock() throws Exception {
+        final var lock = new CompactLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.lock();
+            assertFalse(executor.submit(() -> lock.tryLock()).get());
+            assertFalse(executor.submit(() -> lock.tryLock(10, TimeUnit.MILLISECONDS)).get());
+            lock.unlock();
+
+            assertTrue(executor.submit(() -> lock.tryLock(10, TimeUnit.MILLISECONDS)).get());
+            assertTrue(lock.isLocked());
+            assertFalse(lock.isHeldByCurrentThread());
+            assertFalse(lock.tryLock());
+            executor.submit(lock::unlock).get();
+            assertTrue(lock.tryLock());
+            lock.unlock();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lock_waitsForOtherThread() throws Exception {
+        final var lock = new CompactLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.lock();
+            final var started = new CountDownLatch(1);
+            final Future<?> future = executor.submit(() -> {
+                started.countDown();
+                lock.lock();
+                lock.unlock();
+            });
+            started.await();
+            await().atMost(30, TimeUnit.SECONDS).until(lock::hasQueuedThreads);
+            assertFalse(future.isDone());
+
+            lock.unlock();
+            future.get(30, TimeUnit.SECONDS);
+            assertFalse(lock.isLocked());
+            assertFalse(lock.hasQueuedThreads());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lockInterruptibly() throws Exception {
+        final var lock = new CompactLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.lock();
+            final Future<?> future = executor.submit(() -> {
+                lock.lockInterruptibly();
+                return null;
+            });
+            await().atMost(30, TimeUnit.SECONDS).until(lock::hasQueuedThreads);
+
+            future.cancel(true);
+            await().atMost(30, TimeUnit.SECONDS).until(() -> !lock.hasQueuedThreads());
+            assertTrue(lock.isHeldByCurrentThread());
+            lock.unlock();
+
+            Thread.currentThread().interrupt();
+            assertThrows(InterruptedException.class, lock::lockInterruptibly);
+            assertFalse(lock.isLocked());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lock_mutualExclusion() throws InterruptedException, ExecutionException {
+        final var lock = new CompactLock();
+        final int threads = 8;
+        final int iterations = 20_000;
+        final var counter = new int[1];
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                final boolean timed = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        if (timed) {
+                            while (!lock.tryLock(1, TimeUnit.MILLISECONDS)) {
+                                Thread.onSpinWait();
+                            }
+                        } else {
+                            lock.lock();
+                        }
+                        try {
+                            counter[0]++;
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        lock.lock();
+        try {
+            assertEquals(threads * iterations, counter[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactReadWriteLockTest {
+
+    @Test
+    void compact() {
+        final var locks = ReadWriteLocks.<String>compact();
+
+        final var lock = locks.writeLock("key");
+        try {
+            assertTrue(lock.isWriteLockedByCurrentThread());
+            assertSame(lock, locks.get("key"));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Test
+    void views() {
+        final var lock = new CompactReadWriteLock();
+
+        assertSame(lock.readLock(), lock.readLock());
+        assertSame(lock.writeLock(), lock.writeLock());
+        assertNotEquals(lock.readLock(), lock.writeLock());
+        assertNotEquals(lock.readLock(), new CompactReadWriteLock().readLock());
+        assertThrows(UnsupportedOperationException.class, () -> lock.readLock().newCondition());
+        assertThrows(UnsupportedOperationException.class, () -> lock.writeLock().newCondition());
+    }
+
+    @Test
+    void readLock_shared() throws Exception {
+        final var lock = new CompactReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.readLock().lock();
+            lock.readLock().lock();
+            assertTrue(executor.submit(() -> lock.readLock().tryLock()).get());
+            assertEquals(3, lock.getReadLockCount());
+            assertFalse(executor.submit(() -> lock.writeLock().tryLock()).get());
+            assertFalse(executor.submit(() -> lock.writeLock().tryLock(10, TimeUnit.MILLISECONDS)).get());
+            // read holds are not tracked per thread, so this cannot upgrade
+            assertFalse(lock.writeLock().tryLock());
+
+            lock.readLock().unlock();
+            lock.readLock().unlock();
+            executor.submit(() -> lock.readLock().unlock()).get();
+            assertEquals(0, lock.getReadLockCount());
+            assertThrows(IllegalMonitorStateException.class, () -> lock.readLock().unlock());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeLock_exclusive() throws Exception {
+        final var lock = new CompactReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.writeLock().lock();
+            lock.writeLock().lock();
+            assertTrue(lock.isWriteLocked());
+            assertTrue(lock.isWriteLockedByCurrentThread());
+            assertEquals(2, lock.getWriteHoldCount());
+            assertFalse(executor.submit(() -> lock.readLock().tryLock()).get());
+            assertFalse(executor.submit(() -> lock.readLock().tryLock(10, TimeUnit.MILLISECONDS)).get());
+            assertFalse(executor.submit(() -> lock.writeLock().tryLock()).get());
+            assertThrows(ExecutionException.class, () -> executor.submit(() -> lock.writeLock().unlock()).get());
+
+            lock.writeLock().unlock();
+            assertTrue(lock.isWriteLocked());
+            lock.writeLock().unlock();
+            assertFalse(lock.isWriteLocked());
+            assertEquals(0, lock.getWriteHoldCount());
+            assertThrows(IllegalMonitorStateException.class, () -> lock.writeLock().unlock());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeLock_downgrade() throws Exception {
+        final var lock = new CompactReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.writeLock().lock();
+            lock.readLock().lock();
+            assertTrue(lock.toString().endsWith("[Write locks = 1, Read locks = 1]"));
+            final Future<?> reader = executor.submit(() -> {
+                lock.readLock().lock();
+                lock.readLock().unlock();
+            });
+            await().atMost(30, TimeUnit.SECONDS).until(lock::hasQueuedThreads);
+
+            // releasing the write lock lets the waiting reader in, even though this thread still holds a read lock
+            lock.writeLock().unlock();
+            reader.get(30, TimeUnit.SECONDS);
+            assertEquals(1, lock.getReadLockCount());
+            lock.readLock().unlock();
+            assertTrue(lock.toString().endsWith("[Write locks = 0, Read locks = 0]"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeLock_waitsForReaders() throws Exception {
+        final var lock = new CompactReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.readLock().lock();
+            final Future<?> writer = executor.submit(() -> {
+                lock.writeLock().lockInterruptibly();
+                lock.writeLock().unlock();
+                return null;
+            });
+            await().atMost(30, TimeUnit.SECONDS).until(lock::hasQueuedThreads);
+            assertFalse(writer.isDone());
+
+            lock.readLock().unlock();
+            writer.get(30, TimeUnit.SECONDS);
+            assertFalse(lock.isWriteLocked());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void readLock_waitingReadersReleasedTogether() throws Exception {
+        final var lock = new CompactReadWriteLock();
+        final int readers = 3;
+        final var executor = Executors.newFixedThreadPool(readers);
+        try {
+            lock.writeLock().lock();
+            final var allReading = new CountDownLatch(readers);
+            final var futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < readers; i++) {
+                futures.add(executor.submit(() -> {
+                    lock.readLock().lock();
+                    try {
+                        // only returns true if all readers hold the lock at the same time
+                        allReading.countDown();
+                        return allReading.await(30, TimeUnit.SECONDS);
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }));
+            }
+            await().atMost(30, TimeUnit.SECONDS).until(lock::hasQueuedThreads);
+
+            lock.writeLock().unlock();
+            for (final var future : futures) {
+                assertTrue(future.get(30, TimeUnit.SECONDS));
+            }
+            assertEquals(0, lock.getReadLockCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lockInterruptibly_interrupted() {
+        final var lock = new CompactReadWriteLock();
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> lock.readLock().lockInterruptibly());
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> lock.writeLock().lockInterruptibly());
+        assertEquals(0, lock.getReadLockCount());
+        assertFalse(lock.isWriteLocked());
+    }
+
+    @Test
+    void mutualExclusion() throws InterruptedException, ExecutionException {
+        final var lock = new CompactReadWriteLock();
+        final int threads = 8;
+        final int iterations = 20_000;
+        final var counter = new int[1];
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        if (i % 4 == 0) {
+                            lock.writeLock().lock();
+                            try {
+                                counter[0]++;
+                            } finally {
+                                lock.writeLock().unlock();
+                            }
+                        } else {
+                            lock.readLock().lock();
+                            try {
+                                assertFalse(lock.isWriteLocked());
+                            } finally {
+                                lock.readLock().unlock();
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        lock.readLock().lock();
+        try {
+            assertEquals(threads * iterations / 4, counter[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountedLocksTest {
+
+    @Test
+    void acquire_removedWhenUnlocked() {
+        final var locks = CountedLocks.<String>reentrant();
+
+        final var handle = locks.acquire("key");
+        assertTrue(handle.getLock().isHeldByCurrentThread());
+        assertEquals(1, locks.size());
+
+        // reentrant acquisition uses the same lock
+        final var second = locks.acquire("key");
+        assertSame(handle.getLock(), second.getLock());
+        assertEquals(2, handle.getLock().getHoldCount());
+
+        second.unlock();
+        assertEquals(1, locks.size());
+        handle.unlock();
+        // unlocking again has no effect
+        handle.close();
+        assertEquals(0, locks.size());
+        assertFalse(handle.getLock().isLocked());
+
+        // a new lock is created afterwards
+        try (final var third = locks.acquire("key")) {
+            assertNotSame(handle.getLock(), third.getLock());
+        }
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void withSupplier() {
+        final var locks = CountedLocks.<String, ReentrantLock>withSupplier(() -> new ReentrantLock(true));
+
+        try (final var handle = locks.acquire("key")) {
+            assertTrue(handle.getLock().isFair());
+        }
+    }
+
+    @Test
+    void tryAcquire() throws Exception {
+        final var locks = CountedLocks.<String>reentrant();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final var handle = locks.tryAcquire("key");
+            assertNotNull(handle);
+
+            assertNull(executor.submit(() -> locks.tryAcquire("key")).get());
+            assertNull(executor.submit(() -> locks.tryAcquire("key", 10, TimeUnit.MILLISECONDS)).get());
+            // the failed attempts do not keep the lock
+            handle.unlock();
+            assertEquals(0, locks.size());
+
+            final var timed = locks.tryAcquire("key", 1, TimeUnit.SECONDS);
+            assertNotNull(timed);
+            timed.unlock();
+            assertEquals(0, locks.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void acquire_waitingCallerKeepsLock() throws Exception {
+        final var locks = CountedLocks.<String>reentrant();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final var handle = locks.acquire("key");
+            final var waiting = new CountDownLatch(1);
+            final Future<?> waiter = executor.submit(() -> {
+                waiting.countDown();
+                try (final var ignored = locks.acquireInterruptibly("key")) {
+                    assertSame(handle.getLock(), ignored.getLock());
+                }
+                return null;
+            });
+            assertTrue(waiting.await(30, TimeUnit.SECONDS));
+            await().atMost(30, TimeUnit.SECONDS).until(() -> handle.getLock().hasQueuedThreads());
+
+            handle.unlock();
+            waiter.get(30, TimeUnit.SECONDS);
+            assertEquals(0, locks.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void acquireInterruptibly_interrupted() throws Exception {
+        final var locks = CountedLocks.<String>reentrant();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final var handle = locks.acquire("key");
+            final Future<?> waiter = executor.submit(() -> locks.acquireInterruptibly("key"));
+            await().atMost(30, TimeUnit.SECONDS).until(() -> handle.getLock().hasQueuedThreads());
+
+            waiter.cancel(true);
+            await().atMost(30, TimeUnit.SECONDS).until(() -> !handle.getLock().hasQueuedThreads());
+            handle.unlock();
+            assertEquals(0, locks.size());
+
+            Thread.currentThread().interrupt();
+            assertThrows(InterruptedException.class, () -> locks.acquireInterruptibly("key"));
+            assertEquals(0, locks.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void acquire_concurrent() throws InterruptedException, ExecutionException {
+        final var locks = CountedLocks.<Integer>reentrant();
+        final int threads = 8;
+        final var counters = new int[4];
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        final int key = i % counters.length;
+                        try (final var ignored = locks.acquire(key)) {
+                            counters[key]++;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (final int counter : counters) {
+            assertEquals(threads * 20_000 / counters.length, counter);
+        }
+        assertEquals(0, locks.size());
+    }
+
+}
@@ -0,0 +1,310 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistributedReadWriteLockTest {
+
+    @Test
+    void distributed() {
+        final var locks = ReadWriteLocks.<String>distributed();
+
+        final var lock = locks.writeLock("key");
+        try {
+            assertTrue(lock.isWriteLockedByCurrentThread());
+            assertSame(lock, locks.get("key"));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Test
+    void conditionsNotSupported() {
+        final var lock = new DistributedReadWriteLock();
+
+        assertSame(lock.readLock(), lock.readLock());
+        assertThrows(UnsupportedOperationException.class, () -> lock.readLock().newCondition());
+        assertThrows(UnsupportedOperationException.class, () -> lock.writeLock().newCondition());
+    }
+
+    @Test
+    void readLock_shared() throws Exception {
+        final var lock = new DistributedReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.readLock().lock();
+            assertTrue(executor.submit(() -> lock.readLock().tryLock()).get());
+            assertEquals(2, lock.getReadLockCount());
+            assertFalse(executor.submit(() -> lock.writeLock().tryLock()).get());
+            assertFalse(executor.submit(() -> lock.writeLock().tryLock(10, TimeUnit.MILLISECONDS)).get());
+            // the failed attempts have not left the lock write locked
+            assertFalse(lock.isWriteLocked());
+
+            lock.readLock().unlock();
+            executor.submit(() -> lock.readLock().unlock()).get();
+            assertEquals(0, lock.getReadLockCount());
+            assertThrows(IllegalMonitorStateException.class, () -> lock.readLock().unlock());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeLock_exclusive() throws Exception {
+        final var lock = new DistributedReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.writeLock().lock();
+            assertTrue(lock.writeLock().tryLock());
+            assertTrue(lock.isWriteLocked());
+            assertTrue(lock.isWriteLockedByCurrentThread());
+            assertEquals(2, lock.getWriteHoldCount());
+            assertFalse(executor.submit(() -> lock.readLock().tryLock()).get());
+            assertFalse(executor.submit(() -> lock.readLock().tryLock(10, TimeUnit.MILLISECONDS)).get());
+            assertFalse(executor.submit(() -> lock.writeLock().tryLock()).get());
+            assertThrows(ExecutionException.class, () -> executor.submit(() -> lock.writeLock().unlock()).get());
+
+            lock.writeLock().unlock();
+            assertTrue(lock.isWriteLocked());
+            lock.writeLock().unlock();
+            assertFalse(lock.isWriteLocked());
+            assertEquals(0, lock.getWriteHoldCount());
+            assertThrows(IllegalMonitorStateException.class, () -> lock.writeLock().unlock());
+            assertTrue(executor.submit(() -> lock.readLock().tryLock(10, TimeUnit.MILLISECONDS)).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeLock_downgrade() throws Exception {
+        final var lock = new DistributedReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.writeLock().lock();
+            lock.readLock().lock();
+            assertTrue(lock.toString().endsWith("[Write locks = 1, Read locks = 1]"));
+            final Future<?> reader = executor.submit(() -> {
+                lock.readLock().lock();
+                lock.readLock().unlock();
+            });
+
+            // releasing the write lock lets the waiting reader in, even though this thread still holds a read lock
+            lock.writeLock().unlock();
+            reader.get(30, TimeUnit.SECONDS);
+            assertEquals(1, lock.getReadLockCount());
+            lock.readLock().unlock();
+            assertTrue(lock.toString().endsWith("[Write locks = 0, Read locks = 0]"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeLock_waitsForReaders() throws Exception {
+        final var lock = new DistributedReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.readLock().lock();
+            final Future<?> writer = executor.submit(() -> {
+                lock.writeLock().lockInterruptibly();
+                lock.writeLock().unlock();
+                return null;
+            });
+            // the writer has announced itself, so new readers have to wait for it
+            await().atMost(30, TimeUnit.SECONDS).until(lock::isWriteLocked);
+            assertFalse(writer.isDone());
+
+            lock.readLock().unlock();
+            writer.get(30, TimeUnit.SECONDS);
+            assertFalse(lock.isWriteLocked());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void readLock_reentrantWhileWriterWaits() throws Exception {
+        final var lock = new DistributedReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.readLock().lock();
+            final Future<?> writer = executor.submit(() -> {
+                lock.writeLock().lockInterruptibly();
+                lock.writeLock().unlock();
+                return null;
+            });
+            await().atMost(30, TimeUnit.SECONDS).until(lock::isWriteLocked);
+
+            // a second read hold does not wait for the writer, which waits for the first one
+            assertTrue(lock.readLock().tryLock(30, TimeUnit.SECONDS));
+            assertEquals(2, lock.getReadHoldCount());
+            assertEquals(1, lock.getReadLockCount());
+
+            lock.readLock().unlock();
+            assertFalse(writer.isDone());
+            lock.readLock().unlock();
+            writer.get(30, TimeUnit.SECONDS);
+            assertEquals(0, lock.getReadHoldCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void readLock_severalLocks() {
+        final var first = new DistributedReadWriteLock();
+        final var second = new DistributedReadWriteLock();
+        final var third = new DistributedReadWriteLock();
+
+        first.readLock().lock();
+        second.readLock().lock();
+        second.readLock().lock();
+        third.readLock().lock();
+        assertEquals(1, first.getReadHoldCount());
+        assertEquals(2, second.getReadHoldCount());
+
+        // released in a different order than acquired, so the next read lock takes the place of the first one
+        first.readLock().unlock();
+        assertEquals(0, first.getReadLockCount());
+        first.readLock().lock();
+        assertEquals(1, first.getReadHoldCount());
+        third.readLock().unlock();
+        second.readLock().unlock();
+        second.readLock().unlock();
+        first.readLock().unlock();
+
+        for (final var lock : List.of(first, second, third)) {
+            assertEquals(0, lock.getReadHoldCount());
+            assertEquals(0, lock.getReadLockCount());
+            assertThrows(IllegalMonitorStateException.class, () -> lock.readLock().unlock());
+        }
+    }
+
+    @Test
+    void readLock_waitingReadersReleasedTogether() throws Exception {
+        final var lock = new DistributedReadWriteLock();
+        final int readerCount = 4;
+        final var executor = Executors.newFixedThreadPool(readerCount);
+        try {
+            lock.writeLock().lock();
+            final var allHeld = new CountDownLatch(readerCount);
+            final var readers = new ArrayList<Future<?>>();
+            for (int i = 0; i < readerCount; i++) {
+                readers.add(executor.submit(() -> {
+                    lock.readLock().lockInterruptibly();
+                    try {
+                        // every reader holds the read lock at the same time
+                        allHeld.countDown();
+                        assertTrue(allHeld.await(30, TimeUnit.SECONDS));
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                    return null;
+                }));
+            }
+            assertFalse(allHeld.await(10, TimeUnit.MILLISECONDS));
+
+            lock.writeLock().unlock();
+            for (final var reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(0, lock.getReadLockCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeLock_interruptedWhileWaitingForReaders() throws Exception {
+        final var lock = new DistributedReadWriteLock();
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            lock.readLock().lock();
+            final Future<?> writer = executor.submit(() -> {
+                lock.writeLock().lockInterruptibly();
+                return null;
+            });
+            await().atMost(30, TimeUnit.SECONDS).until(lock::isWriteLocked);
+
+            writer.cancel(true);
+            await().atMost(30, TimeUnit.SECONDS).until(() -> !lock.isWriteLocked());
+            // new readers are no longer held up
+            assertTrue(executor.submit(() -> lock.readLock().tryLock()).get());
+            assertEquals(2, lock.getReadLockCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lockInterruptibly_interrupted() {
+        final var lock = new DistributedReadWriteLock();
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> lock.readLock().lockInterruptibly());
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> lock.writeLock().lockInterruptibly());
+        assertEquals(0, lock.getReadLockCount());
+        assertFalse(lock.isWriteLocked());
+    }
+
+    @Test
+    void mutualExclusion() throws InterruptedException, ExecutionException {
+        final var lock = new DistributedReadWriteLock();
+        final int threads = 8;
+        final int iterations = 20_000;
+        final var counter = new int[1];
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        if (i % 4 == 0) {
+                            lock.writeLock().lock();
+                            try {
+                                // readers must never see the intermediate odd value
+                                counter[0]++;
+                                counter[0]++;
+                            } finally {
+                                lock.writeLock().unlock();
+                            }
+                        } else {
+                            lock.readLock().lock();
+                            try {
+                                assertEquals(0, counter[0] % 2);
+                            } finally {
+                                lock.readLock().unlock();
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        lock.readLock().lock();
+        try {
+            assertEquals(threads * iterations / 2, counter[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+}
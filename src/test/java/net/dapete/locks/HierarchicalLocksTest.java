@@ -0,0 +1,212 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalLocksTest {
+
+    private static final List<String> TENANT = List.of("tenant");
+
+    private static final List<String> TENANT_A = List.of("tenant", "a");
+
+    private static final List<String> TENANT_A_X = List.of("tenant", "a", "x");
+
+    private static final List<String> TENANT_B = List.of("tenant", "b");
+
+    @Test
+    void exclusive_blocksDescendantsAndAncestors() {
+        final var locks = HierarchicalLocks.<String>create();
+
+        try (final var pathLock = locks.acquireExclusive(TENANT_A)) {
+            assertTrue(pathLock.isExclusive());
+            assertNull(locks.tryAcquireShared(TENANT_A));
+            assertNull(locks.tryAcquireExclusive(TENANT_A_X));
+            assertNull(locks.tryAcquireShared(TENANT_A_X));
+            assertNull(locks.tryAcquireShared(TENANT));
+            assertNull(locks.tryAcquireExclusive(TENANT));
+            try (final var sibling = locks.tryAcquireExclusive(TENANT_B)) {
+                assertNotNull(sibling);
+            }
+        }
+        try (final var pathLock = locks.tryAcquireExclusive(TENANT)) {
+            assertNotNull(pathLock);
+        }
+    }
+
+    @Test
+    void builder() {
+        final var locks = HierarchicalLocks.builder(String.class)
+                .concurrencyLevel(4)
+                .virtualThreadFriendly()
+                .create();
+
+        assertEquals(4, locks.getConcurrencyLevel());
+        try (final var pathLock = locks.acquireExclusive(TENANT_A)) {
+            assertNull(locks.tryAcquireShared(TENANT_A_X));
+        }
+        assertThrows(IllegalArgumentException.class, () -> HierarchicalLocks.builder().concurrencyLevel(0));
+    }
+
+    @Test
+    void shared_allowsSharedOnly() {
+        final var locks = HierarchicalLocks.<String>create();
+
+        try (final var pathLock = locks.acquireShared(TENANT_A)) {
+            assertFalse(pathLock.isExclusive());
+            try (final var shared = locks.tryAcquireShared(TENANT_A); final var sharedBelow = locks.tryAcquireShared(TENANT_A_X);
+                 final var sharedAbove = locks.tryAcquireShared(TENANT)) {
+                assertNotNull(shared);
+                assertNotNull(sharedBelow);
+                assertNotNull(sharedAbove);
+            }
+            assertNull(locks.tryAcquireExclusive(TENANT_A));
+            assertNull(locks.tryAcquireExclusive(TENANT_A_X));
+            assertNull(locks.tryAcquireExclusive(TENANT));
+            try (final var sibling = locks.tryAcquireExclusive(TENANT_B)) {
+                assertNotNull(sibling);
+            }
+        }
+    }
+
+    @Test
+    void tryAcquire_failureReleasesAncestors() {
+        final var locks = HierarchicalLocks.<String>create();
+
+        try (final var pathLock = locks.acquireShared(TENANT_A)) {
+            assertNotNull(pathLock);
+            // takes an intent exclusive lock on "tenant", then fails on "tenant/a"
+            assertNull(locks.tryAcquireExclusive(TENANT_A_X));
+            try (final var sharedAbove = locks.tryAcquireShared(TENANT)) {
+                assertNotNull(sharedAbove);
+            }
+        }
+    }
+
+    @Test
+    void release() {
+        final var locks = HierarchicalLocks.<String>create();
+
+        final var pathLock = locks.acquireExclusive(TENANT_A_X);
+        assertFalse(pathLock.isReleased());
+        assertEquals(3, locks.size());
+        pathLock.release();
+        assertTrue(pathLock.isReleased());
+        // releasing again has no effect, so it does not release another holder's locks
+        final var other = locks.acquireShared(TENANT_A);
+        pathLock.close();
+        assertNull(locks.tryAcquireExclusive(TENANT_A));
+        other.close();
+        try (final var again = locks.tryAcquireExclusive(TENANT_A)) {
+            assertNotNull(again);
+        }
+    }
+
+    @Test
+    void emptyPath() {
+        final var locks = HierarchicalLocks.<String>create();
+        final List<String> empty = List.of();
+        assertThrows(IllegalArgumentException.class, () -> locks.acquireShared(empty));
+        assertThrows(IllegalArgumentException.class, () -> locks.tryAcquireExclusive(empty));
+    }
+
+    @Test
+    void acquire_waits() throws Exception {
+        final var locks = HierarchicalLocks.<String>create(4);
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> future;
+            try (final var pathLock = locks.acquireExclusive(TENANT)) {
+                assertNotNull(pathLock);
+                future = executor.submit(() -> locks.acquireExclusive(TENANT_A_X).release());
+                Thread.sleep(50);
+                assertFalse(future.isDone());
+            }
+            future.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void acquireInterruptibly_interrupted() throws InterruptedException {
+        final var locks = HierarchicalLocks.<String>create();
+        final var interrupted = new CountDownLatch(1);
+
+        final Thread thread;
+        try (final var pathLock = locks.acquireExclusive(TENANT_A)) {
+            assertNotNull(pathLock);
+            thread = new Thread(() -> {
+                try {
+                    locks.acquireExclusiveInterruptibly(TENANT_A_X).release();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            });
+            thread.start();
+            await().atMost(10, TimeUnit.SECONDS).until(() -> thread.getState() == Thread.State.WAITING);
+            thread.interrupt();
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        }
+        thread.join();
+        // the intent lock on "tenant" has been released again
+        try (final var pathLock = locks.tryAcquireExclusive(TENANT)) {
+            assertNotNull(pathLock);
+        }
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.acquireSharedInterruptibly(TENANT));
+    }
+
+    @Test
+    void exclusive_mutualExclusion() throws InterruptedException {
+        final var locks = HierarchicalLocks.<String>create();
+        final var paths = List.of(TENANT, TENANT_A, TENANT_A_X, TENANT_B);
+        final var active = new AtomicInteger[paths.size()];
+        for (int i = 0; i < active.length; i++) {
+            active[i] = new AtomicInteger();
+        }
+        final var failures = new AtomicInteger();
+        final var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final int index = (i + offset) % paths.size();
+                    try (final var pathLock = locks.acquireExclusive(paths.get(index))) {
+                        assertNotNull(pathLock);
+                        if (active[index].incrementAndGet() != 1) {
+                            failures.incrementAndGet();
+                        }
+                        // no overlapping path may be locked at the same time
+                        for (int other = 0; other < paths.size(); other++) {
+                            if (other != index && overlaps(paths.get(index), paths.get(other)) && active[other].get() != 0) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                        active[index].decrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+    }
+
+    private static boolean overlaps(List<String> path, List<String> other) {
+        final int length = Math.min(path.size(), other.size());
+        return path.subList(0, length).equals(other.subList(0, length));
+    }
+
+}
@@ -0,0 +1,70 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the locking itself is implemented and tested by LongLocks, so this only checks the factories and that int keys are passed on unchanged
+class IntLocksTest {
+
+    @Test
+    void reentrant() {
+        assertFalse(IntLocks.reentrant().get(1).isFair());
+        assertEquals(LongKeyReferences.DEFAULT_CONCURRENCY_LEVEL, IntLocks.reentrant().getConcurrencyLevel());
+        assertTrue(IntLocks.reentrant(true).get(1).isFair());
+
+        final var locks = IntLocks.reentrant(true, 4);
+
+        assertTrue(locks.get(1).isFair());
+        assertEquals(4, locks.getConcurrencyLevel());
+    }
+
+    @Test
+    void withSupplier() {
+        final var locks = IntLocks.withSupplier(() -> new ReentrantLock(true), 1);
+
+        assertTrue(locks.get(1).isFair());
+        assertEquals(1, locks.getConcurrencyLevel());
+        assertTrue(IntLocks.withSupplier(ReentrantLock::new).get(1) instanceof ReentrantLock);
+    }
+
+    @Test
+    void get() {
+        final var locks = IntLocks.reentrant();
+
+        final var lock = locks.get(Integer.MAX_VALUE);
+
+        assertSame(lock, locks.get(Integer.MAX_VALUE));
+        assertNotSame(lock, locks.get(Integer.MIN_VALUE));
+        assertNotSame(lock, locks.get(-1));
+        assertEquals(3, locks.size());
+    }
+
+    @Test
+    void lockMethods_sameLock() throws Exception {
+        final var locks = IntLocks.reentrant();
+
+        final var lock = locks.get(-1);
+
+        assertSame(lock, locks.lock(-1));
+        assertSame(lock, locks.tryLock(-1));
+        assertSame(lock, locks.tryLock(-1, 10, TimeUnit.MILLISECONDS));
+        assertSame(lock, locks.lockInterruptibly(-1));
+        try (final var handle = locks.acquire(-1)) {
+            assertSame(lock, handle.getLock());
+            assertEquals(5, lock.getHoldCount());
+        }
+        for (int i = 0; i < 4; i++) {
+            lock.unlock();
+        }
+        assertFalse(lock.isLocked());
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.lockInterruptibly(2));
+        assertEquals(1, locks.size());
+    }
+
+}
@@ -0,0 +1,88 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static net.dapete.locks.IntentLock.*;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntentLockTest {
+
+    // COMPATIBLE[held][requested]
+    private static final boolean[][] COMPATIBLE = {
+            {true, true, true, false},
+            {true, true, false, false},
+            {true, false, true, false},
+            {false, false, false, false},
+    };
+
+    @Test
+    void compatibility() {
+        for (int held = INTENT_SHARED; held <= EXCLUSIVE; held++) {
+            for (int requested = INTENT_SHARED; requested <= EXCLUSIVE; requested++) {
+                final var lock = new IntentLock();
+                assertTrue(lock.tryAcquire(held));
+                assertEquals(COMPATIBLE[held][requested], lock.tryAcquire(requested), "held " + held + ", requested " + requested);
+            }
+        }
+    }
+
+    @Test
+    void holdCounts() {
+        final var lock = new IntentLock();
+        assertTrue(lock.tryAcquire(INTENT_SHARED));
+        assertTrue(lock.tryAcquire(INTENT_SHARED));
+        assertTrue(lock.tryAcquire(INTENT_EXCLUSIVE));
+        assertEquals(2, lock.getHoldCount(INTENT_SHARED));
+        assertEquals(1, lock.getHoldCount(INTENT_EXCLUSIVE));
+        assertEquals(0, lock.getHoldCount(SHARED));
+        assertEquals(0, lock.getHoldCount(EXCLUSIVE));
+        assertTrue(lock.toString().endsWith("[Intent shared locks = 2, Intent exclusive locks = 1, Shared locks = 0, Exclusive locks = 0]"));
+
+        lock.release(INTENT_EXCLUSIVE);
+        // the count shared by intent exclusive and shared holds is free again
+        assertTrue(lock.tryAcquire(SHARED));
+        assertEquals(1, lock.getHoldCount(SHARED));
+        assertEquals(0, lock.getHoldCount(INTENT_EXCLUSIVE));
+
+        lock.release(SHARED);
+        lock.release(INTENT_SHARED);
+        lock.release(INTENT_SHARED);
+        assertTrue(lock.tryAcquire(EXCLUSIVE));
+        assertEquals(1, lock.getHoldCount(EXCLUSIVE));
+    }
+
+    @Test
+    void release_notHeld() {
+        final var lock = new IntentLock();
+        for (int mode = INTENT_SHARED; mode <= EXCLUSIVE; mode++) {
+            final int notHeld = mode;
+            assertThrows(IllegalMonitorStateException.class, () -> lock.release(notHeld));
+        }
+        assertTrue(lock.tryAcquire(SHARED));
+        assertThrows(IllegalMonitorStateException.class, () -> lock.release(INTENT_EXCLUSIVE));
+    }
+
+    @Test
+    void acquire_waitsForConflictingHolds() throws InterruptedException {
+        final var lock = new IntentLock();
+        lock.acquire(INTENT_SHARED);
+        lock.acquire(INTENT_EXCLUSIVE);
+
+        final var thread = new Thread(() -> lock.acquire(SHARED));
+        thread.start();
+        await().atMost(10, TimeUnit.SECONDS).until(lock::hasWaitingThreads);
+
+        // releasing the intent shared hold does not allow the shared waiter to continue
+        lock.release(INTENT_SHARED);
+        assertTrue(thread.isAlive());
+
+        lock.release(INTENT_EXCLUSIVE);
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(thread.isAlive());
+        assertEquals(1, lock.getHoldCount(SHARED));
+    }
+
+}
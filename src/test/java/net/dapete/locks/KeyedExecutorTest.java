@@ -0,0 +1,240 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedExecutorTest {
+
+    private static void shutdown(ExecutorService executorService) throws InterruptedException {
+        executorService.shutdownNow();
+        assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void create_concurrencyLevel() {
+        assertEquals(4, KeyedExecutor.create(Runnable::run, 3).getConcurrencyLevel());
+        assertThrows(IllegalArgumentException.class, () -> KeyedExecutor.create(Runnable::run, 0));
+    }
+
+    @Test
+    void builder() {
+        final var executor = KeyedExecutor.builder(String.class)
+                .concurrencyLevel(4)
+                .cleanupLimit(10)
+                .create(Runnable::run);
+
+        assertEquals(4, executor.getConcurrencyLevel());
+        assertEquals("result", executor.submit("key", () -> "result").join());
+        assertThrows(IllegalArgumentException.class, () -> KeyedExecutor.builder().concurrencyLevel(0));
+    }
+
+    @Test
+    void submit_result() throws InterruptedException {
+        final var executorService = Executors.newFixedThreadPool(2);
+        try {
+            final var executor = KeyedExecutor.<String>create(executorService);
+
+            assertEquals("result", executor.submit("key", () -> "result").join());
+            assertNull(executor.submit("key", () -> {
+            }).join());
+
+            final var exception = new IllegalStateException();
+            final var failed = executor.submit("key", () -> {
+                throw exception;
+            });
+            final var thrown = assertThrows(CompletionException.class, failed::join);
+            assertSame(exception, thrown.getCause());
+        } finally {
+            shutdown(executorService);
+        }
+    }
+
+    @Test
+    void submit_serialPerKey() throws InterruptedException {
+        final var executorService = Executors.newFixedThreadPool(8);
+        try {
+            final var executor = KeyedExecutor.<Integer>create(executorService);
+            final int keys = 4;
+            final int tasks = 1_000;
+            final var active = new AtomicInteger[keys];
+            final var order = new ArrayList<List<Integer>>();
+            for (int key = 0; key < keys; key++) {
+                active[key] = new AtomicInteger();
+                order.add(Collections.synchronizedList(new ArrayList<>()));
+            }
+
+            final var futures = new ArrayList<CompletableFuture<?>>();
+            for (int i = 0; i < tasks; i++) {
+                for (int key = 0; key < keys; key++) {
+                    final int index = i;
+                    final int taskKey = key;
+                    futures.add(executor.submit(key, () -> {
+                        assertEquals(1, active[taskKey].incrementAndGet());
+                        order.get(taskKey).add(index);
+                        active[taskKey].decrementAndGet();
+                    }));
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+            for (int key = 0; key < keys; key++) {
+                final var expected = new ArrayList<Integer>();
+                for (int i = 0; i < tasks; i++) {
+                    expected.add(i);
+                }
+                assertEquals(expected, order.get(key));
+            }
+        } finally {
+            shutdown(executorService);
+        }
+    }
+
+    @Test
+    void submit_differentKeysInParallel() throws InterruptedException {
+        final var executorService = Executors.newFixedThreadPool(2);
+        try {
+            final var executor = KeyedExecutor.<String>create(executorService);
+            final var blocked = new CountDownLatch(1);
+
+            final var blocking = executor.submit("blocked", () -> {
+                blocked.await();
+                return null;
+            });
+            final var queued = executor.submit("blocked", () -> "queued");
+
+            // another key is not held up by the blocked one, and the queued task does not occupy a thread
+            assertEquals("other", executor.submit("other", () -> "other").join());
+            assertEquals("other2", executor.submit("other", () -> "other2").join());
+            assertFalse(queued.isDone());
+
+            blocked.countDown();
+            blocking.join();
+            assertEquals("queued", queued.join());
+        } finally {
+            shutdown(executorService);
+        }
+    }
+
+    @Test
+    void submit_cancelledBeforeRunning() throws InterruptedException {
+        final var executorService = Executors.newSingleThreadExecutor();
+        try {
+            final var executor = KeyedExecutor.<String>create(executorService);
+            final var blocked = new CountDownLatch(1);
+            final var ran = new AtomicInteger();
+
+            executor.submit("key", () -> {
+                blocked.await();
+                return null;
+            });
+            final var cancelled = executor.submit("key", ran::incrementAndGet);
+            final var next = executor.submit("key", () -> "next");
+
+            assertTrue(cancelled.cancel(false));
+            blocked.countDown();
+
+            assertEquals("next", next.join());
+            assertEquals(0, ran.get());
+        } finally {
+            shutdown(executorService);
+        }
+    }
+
+    @Test
+    void submit_batches() {
+        final var scheduled = new AtomicInteger();
+        final var pending = new ArrayList<Runnable>();
+        final var executor = KeyedExecutor.<String>create(command -> {
+            scheduled.incrementAndGet();
+            pending.add(command);
+        });
+
+        final var futures = new ArrayList<CompletableFuture<?>>();
+        for (int i = 0; i < KeyedExecutor.BATCH_SIZE * 2 + 1; i++) {
+            futures.add(executor.submit("key", () -> "result"));
+        }
+        assertEquals(1, scheduled.get());
+
+        while (!pending.isEmpty()) {
+            pending.remove(0).run();
+        }
+
+        assertEquals(3, scheduled.get());
+        futures.forEach(future -> assertEquals("result", future.join()));
+    }
+
+    @Test
+    void submit_rejected() throws InterruptedException {
+        final var executorService = Executors.newSingleThreadExecutor();
+        shutdown(executorService);
+        final var executor = KeyedExecutor.<String>create(executorService);
+
+        final var rejected = executor.submit("key", () -> "result");
+
+        final var thrown = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, thrown.getCause());
+
+        // the key can still be used with a working executor afterwards
+        final var accepting = new AtomicInteger();
+        final var sameThreadExecutor = KeyedExecutor.<String>create(command -> {
+            accepting.incrementAndGet();
+            command.run();
+        });
+        assertEquals("result", sameThreadExecutor.submit("key", () -> "result").join());
+        assertEquals(1, accepting.get());
+    }
+
+    @Test
+    void submit_executorThrows() throws Exception {
+        final var failures = new AtomicInteger(1);
+        final var executor = KeyedExecutor.<String>create(command -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("failed");
+            }
+            command.run();
+        });
+        // keep the queue of the key, so the second task uses the same queue
+        final var queue = executor.get("key");
+
+        final var thrown = assertThrows(IllegalStateException.class, () -> executor.submit("key", () -> "failed"));
+        assertEquals("failed", thrown.getMessage());
+
+        // the failed task has been removed from the queue, so the next one is scheduled
+        assertEquals("result", executor.submit("key", () -> "result").get(30, TimeUnit.SECONDS));
+        assertSame(queue, executor.get("key"));
+    }
+
+    @Test
+    void size_idleKeysAreRemoved() throws InterruptedException {
+        final var executorService = Executors.newFixedThreadPool(2);
+        try {
+            final var executor = KeyedExecutor.<Integer>create(executorService);
+            for (int i = 0; i < 5; i++) {
+                executor.submit(i, () -> "result").join();
+            }
+
+            // the futures are completed before the executor thread has let go of the queue, so collect garbage until it has
+            await().atMost(30, TimeUnit.SECONDS).until(() -> {
+                System.gc();
+                return executor.size() == 0;
+            });
+        } finally {
+            shutdown(executorService);
+        }
+    }
+
+}
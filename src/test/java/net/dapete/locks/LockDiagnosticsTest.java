@@ -0,0 +1,255 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockDiagnosticsTest {
+
+    @Test
+    void disabledByDefault() {
+        assertNull(Locks.reentrant().getDiagnostics());
+        assertNull(ReadWriteLocks.reentrant().getDiagnostics());
+        assertNull(Locks.<Integer>builder().reentrant().getDiagnostics());
+    }
+
+    @Test
+    void withSupplier_notSupported() {
+        final var locksBuilder = Locks.<Integer>builder().diagnostics();
+        assertThrows(IllegalStateException.class, () -> locksBuilder.withSupplier(ReentrantLock::new));
+        final var readWriteLocksBuilder = ReadWriteLocks.<Integer>builder().diagnostics();
+        assertThrows(IllegalStateException.class, () -> readWriteLocksBuilder.withSupplier(CompactReadWriteLock::new));
+    }
+
+    @Test
+    void getHeldLocks() {
+        final var locks = Locks.<Integer>builder().diagnostics().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        final var unlocked = locks.get(1);
+        final var lock = locks.lock(2);
+        try {
+            final var heldLocks = diagnostics.getHeldLocks();
+            assertEquals(1, heldLocks.size());
+            final var heldLock = heldLocks.get(0);
+            assertEquals(2, heldLock.getKey());
+            assertSame(Thread.currentThread(), heldLock.getOwner());
+            assertEquals(0, heldLock.getReadHolds());
+            assertEquals(List.of(), heldLock.getWaitingThreads());
+            assertEquals(Duration.ZERO, heldLock.getHeldFor());
+            assertTrue(heldLock.toString().contains("owner=" + Thread.currentThread().getName()));
+        } finally {
+            lock.unlock();
+        }
+        assertEquals(List.of(), diagnostics.getHeldLocks());
+        assertFalse(unlocked.isLocked());
+    }
+
+    @Test
+    void getHeldLocks_heldFor() throws InterruptedException {
+        final var locks = Locks.<Integer>builder().diagnostics().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        final var lock = locks.lock(1);
+        try {
+            assertEquals(Duration.ZERO, diagnostics.getHeldLocks().get(0).getHeldFor());
+            Thread.sleep(10);
+            assertTrue(diagnostics.getHeldLocks().get(0).getHeldFor().compareTo(Duration.ofMillis(10)) >= 0);
+        } finally {
+            lock.unlock();
+        }
+        assertEquals(List.of(), diagnostics.getHeldLocks());
+        // a hold seen after the lock has been released is a new hold
+        final var lockAgain = locks.lock(1);
+        try {
+            assertEquals(Duration.ZERO, diagnostics.getHeldLocks().get(0).getHeldFor());
+        } finally {
+            lockAgain.unlock();
+        }
+    }
+
+    @Test
+    void getHeldLocks_doesNotKeepLocks() {
+        final var locks = Locks.<Integer>builder().diagnostics().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        lockAndSample(locks, diagnostics);
+        System.gc();
+
+        // the hold seen by the last call must not keep the lock from being removed after it has been released
+        await().atMost(30, TimeUnit.SECONDS).until(() -> locks.size() == 0);
+    }
+
+    private static void lockAndSample(Locks<Integer, ReentrantLock> locks, LockDiagnostics<Integer> diagnostics) {
+        final var lock = locks.lock(1);
+        try {
+            assertEquals(1, diagnostics.getHeldLocks().size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void getHeldLocks_waitingThreads() throws InterruptedException {
+        final var locks = Locks.<Integer>builder().diagnostics().virtualThreadFriendly().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        final var lock = locks.lock(1);
+        final var thread = new Thread(() -> locks.lock(1).unlock());
+        try {
+            thread.start();
+            await().atMost(10, TimeUnit.SECONDS).until(() -> diagnostics.getHeldLocks().get(0).getWaitingThreads().contains(thread));
+        } finally {
+            lock.unlock();
+        }
+        thread.join();
+    }
+
+    @Test
+    void getHeldLocks_readWrite() {
+        final var locks = ReadWriteLocks.<Integer>builder().diagnostics().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        try (final var readHandle = locks.acquireRead(1); final var writeHandle = locks.acquireWrite(2)) {
+            assertNotNull(readHandle);
+            assertNotNull(writeHandle);
+            final var heldLocks = diagnostics.getHeldLocks();
+            assertEquals(2, heldLocks.size());
+            for (final var heldLock : heldLocks) {
+                if (heldLock.getKey() == 1) {
+                    assertNull(heldLock.getOwner());
+                    assertEquals(1, heldLock.getReadHolds());
+                } else {
+                    assertSame(Thread.currentThread(), heldLock.getOwner());
+                    assertEquals(0, heldLock.getReadHolds());
+                }
+            }
+        }
+        assertEquals(List.of(), diagnostics.getHeldLocks());
+    }
+
+    @Test
+    void findDeadlocks() throws InterruptedException {
+        final var locks = Locks.<Integer>builder().diagnostics().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        final var bothLocked = new CountDownLatch(2);
+        final var thread1 = new Thread(() -> lockInOrder(locks, 1, 2, bothLocked));
+        final var thread2 = new Thread(() -> lockInOrder(locks, 2, 1, bothLocked));
+        thread1.start();
+        thread2.start();
+        try {
+            await().atMost(10, TimeUnit.SECONDS).until(() -> !diagnostics.findDeadlocks().isEmpty());
+            final var deadlocks = diagnostics.findDeadlocks();
+            assertEquals(1, deadlocks.size());
+            final var deadlock = deadlocks.get(0);
+            assertEquals(2, deadlock.size());
+            // the owner of each lock waits for the next one
+            assertTrue(deadlock.get(1).getWaitingThreads().contains(deadlock.get(0).getOwner()));
+            assertTrue(deadlock.get(0).getWaitingThreads().contains(deadlock.get(1).getOwner()));
+        } finally {
+            thread1.interrupt();
+            thread2.interrupt();
+            thread1.join();
+            thread2.join();
+        }
+        assertEquals(List.of(), diagnostics.findDeadlocks());
+    }
+
+    private static void lockInOrder(Locks<Integer, ReentrantLock> locks, int first, int second, CountDownLatch bothLocked) {
+        try {
+            final var firstLock = locks.lockInterruptibly(first);
+            try {
+                bothLocked.countDown();
+                bothLocked.await();
+                locks.lockInterruptibly(second).unlock();
+            } finally {
+                firstLock.unlock();
+            }
+        } catch (InterruptedException e) {
+            // expected, ends the deadlock
+        }
+    }
+
+    @Test
+    void findDeadlocks_noDeadlock() {
+        final var locks = Locks.<Integer>builder().diagnostics().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        try (final var group = locks.lockAll(1, 2)) {
+            assertEquals(2, group.getLocks().size());
+            assertEquals(List.of(), diagnostics.findDeadlocks());
+        }
+    }
+
+    @Test
+    void checkLongHolds() throws InterruptedException {
+        final var locks = Locks.<Integer>builder().diagnostics().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        final var reported = new CopyOnWriteArrayList<LockDiagnostics.HeldLock<Integer>>();
+        final var lock = locks.lock(1);
+        try {
+            diagnostics.checkLongHolds(Duration.ofMillis(10), reported::add);
+            assertEquals(List.of(), reported);
+            Thread.sleep(20);
+            diagnostics.checkLongHolds(Duration.ofMillis(10), reported::add);
+            assertEquals(1, reported.size());
+            assertEquals(1, reported.get(0).getKey());
+            // only reported once
+            diagnostics.checkLongHolds(Duration.ofMillis(10), reported::add);
+            assertEquals(1, reported.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void watchLongHolds() {
+        final var locks = Locks.<Integer>builder().diagnostics().reentrant();
+        final var diagnostics = locks.getDiagnostics();
+        assertNotNull(diagnostics);
+
+        final var reported = new CopyOnWriteArrayList<LockDiagnostics.HeldLock<Integer>>();
+        try (final var watch = diagnostics.watchLongHolds(Duration.ofMillis(20), reported::add)) {
+            assertTrue(watch.isRunning());
+            final var lock = locks.lock(1);
+            try {
+                await().atMost(10, TimeUnit.SECONDS).until(() -> !reported.isEmpty());
+                assertEquals(1, reported.get(0).getKey());
+                assertTrue(reported.get(0).getHeldFor().compareTo(Duration.ofMillis(20)) >= 0);
+            } finally {
+                lock.unlock();
+            }
+            watch.close();
+            assertFalse(watch.isRunning());
+        }
+    }
+
+    @Test
+    void watchLongHolds_invalidThreshold() {
+        final var diagnostics = Locks.<Integer>builder().diagnostics().reentrant().getDiagnostics();
+        assertNotNull(diagnostics);
+        assertThrows(IllegalArgumentException.class, () -> diagnostics.watchLongHolds(Duration.ZERO, heldLock -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> diagnostics.watchLongHolds(Duration.ofMillis(-1), heldLock -> {
+        }));
+    }
+
+}
@@ -0,0 +1,51 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LockGroupTest {
+
+    @Test
+    void unlock_reverseOrderAndOnlyOnce() {
+        final Lock lock1 = mock();
+        final Lock lock2 = mock();
+        final var group = new LockGroup(new Lock[]{lock1, lock2}, new Object[]{lock1, lock2});
+
+        group.unlock();
+        group.close();
+
+        final var inOrder = inOrder(lock1, lock2);
+        inOrder.verify(lock2).unlock();
+        inOrder.verify(lock1).unlock();
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void unlock_unlocksAllIfOneFails() {
+        final Lock lock1 = mock();
+        final Lock lock2 = mock();
+        final var exception = new IllegalMonitorStateException();
+        doThrow(exception).when(lock2).unlock();
+        final var group = new LockGroup(new Lock[]{lock1, lock2}, new Object[]{lock1, lock2});
+
+        assertSame(exception, assertThrows(IllegalMonitorStateException.class, group::unlock));
+
+        verify(lock1).unlock();
+    }
+
+    @Test
+    void getLocks() {
+        final var lock = new ReentrantLock();
+        final var group = new LockGroup(new Lock[]{lock}, new Object[]{lock});
+
+        assertEquals(1, group.getLocks().size());
+        assertSame(lock, group.getLocks().get(0));
+        assertThrows(UnsupportedOperationException.class, () -> group.getLocks().clear());
+    }
+
+}
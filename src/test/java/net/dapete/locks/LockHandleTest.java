@@ -0,0 +1,37 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LockHandleTest {
+
+    @Test
+    void unlock_onlyOnce() {
+        final Lock lock = mock();
+        final var handle = new LockHandle<>(lock, lock);
+
+        handle.unlock();
+        handle.close();
+
+        verify(lock).unlock();
+    }
+
+    @Test
+    void getLock() {
+        final Lock lock = mock();
+        final Lock acquired = mock();
+        final var handle = new LockHandle<>(lock, acquired);
+
+        assertSame(lock, handle.getLock());
+
+        handle.close();
+
+        verify(acquired).unlock();
+        verifyNoInteractions(lock);
+    }
+
+}
@@ -0,0 +1,302 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockMetricsTest {
+
+    @Test
+    void disabledByDefault() {
+        assertNull(Locks.reentrant().getMetrics());
+        assertNull(ReadWriteLocks.reentrant().getMetrics());
+        assertNull(Locks.<Integer>builder().reentrant().getMetrics());
+    }
+
+    @Test
+    void lookups() {
+        final var locks = Locks.<Integer>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+
+        final var lock1 = locks.get(1);
+        locks.get(1);
+        final var lock2 = locks.get(2);
+        locks.getAll(List.of(1, 2));
+
+        assertEquals(5, metrics.getLookups());
+        assertEquals(2, metrics.getCreated());
+        assertEquals(3, metrics.getHits());
+        assertEquals(2, metrics.getLiveLocks());
+        assertNotSame(lock1, lock2);
+    }
+
+    @Test
+    void purged() {
+        final var locks = Locks.<Integer>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+
+        final var lockList = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            lockList.add(locks.get(i));
+        }
+        assertEquals(0, metrics.getPurged());
+
+        lockList.clear();
+        System.gc();
+
+        await().atMost(30, TimeUnit.SECONDS).until(() -> locks.size() == 0);
+        assertEquals(5, metrics.getPurged());
+        assertEquals(0, metrics.getLiveLocks());
+    }
+
+    @Test
+    void acquisitions_uncontended() {
+        final var locks = Locks.<Integer>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+
+        locks.lock(1).unlock();
+        try (final var handle = locks.acquire(1)) {
+            assertTrue(handle.getLock().isHeldByCurrentThread());
+        }
+        // not recorded, as this does not block
+        final var lock = locks.tryLock(1);
+        assertNotNull(lock);
+        lock.unlock();
+
+        assertEquals(2, metrics.getAcquisitions());
+        assertEquals(0, metrics.getContendedAcquisitions());
+        assertEquals(0, metrics.getWaitTimeNanos());
+        assertTrue(metrics.getMostContendedKeys().isEmpty());
+    }
+
+    @Test
+    void acquisitions_contended() throws Exception {
+        final var locks = Locks.<String>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+
+        final var lock = locks.lock("key");
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final var started = new CountDownLatch(1);
+            final var future = executor.submit(() -> {
+                started.countDown();
+                locks.lock("key").unlock();
+            });
+            started.await();
+            await().atMost(30, TimeUnit.SECONDS).until(lock::hasQueuedThreads);
+            Thread.sleep(10);
+            lock.unlock();
+            future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, metrics.getAcquisitions());
+        assertEquals(1, metrics.getContendedAcquisitions());
+        assertTrue(metrics.getWaitTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(1, sum(metrics.getWaitTimeHistogram()));
+        assertEquals(1, metrics.getWaitTimeHistogram()[LockMetrics.histogramBucket(metrics.getWaitTimeNanos())]);
+        assertEquals(Map.of("key", 1L), metrics.getMostContendedKeys());
+    }
+
+    @Test
+    void acquisitions_interrupted() {
+        final var locks = Locks.<Integer>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+
+        Thread.currentThread().interrupt();
+        try {
+            locks.lock(1).unlock();
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        // an interrupt does not make an acquisition contended
+        assertEquals(1, metrics.getAcquisitions());
+        assertEquals(0, metrics.getContendedAcquisitions());
+    }
+
+    @Test
+    void acquisitions_readWriteLocks() throws Exception {
+        final var locks = ReadWriteLocks.<String>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+
+        locks.readLock("key").readLock().unlock();
+        locks.readLockInterruptibly("key").readLock().unlock();
+        locks.writeLock("key").writeLock().unlock();
+        locks.writeLockInterruptibly("key").writeLock().unlock();
+        locks.acquireRead("key").close();
+        locks.acquireWrite("key").close();
+
+        assertEquals(6, metrics.getAcquisitions());
+        assertEquals(0, metrics.getContendedAcquisitions());
+    }
+
+    @Test
+    void acquisitions_lockAll() {
+        final var locks = Locks.<Integer>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+        final var readWriteLocks = ReadWriteLocks.<Integer>builder().metrics().reentrant();
+        final var readWriteMetrics = readWriteLocks.getMetrics();
+        assertNotNull(readWriteMetrics);
+
+        // the same key only locks its lock once
+        locks.lockAll(1, 2, 2).close();
+        readWriteLocks.readLockAll(1, 2).close();
+        readWriteLocks.writeLockAll(1).close();
+
+        assertEquals(2, metrics.getAcquisitions());
+        assertEquals(3, readWriteMetrics.getAcquisitions());
+    }
+
+    @Test
+    void histogramBucket() {
+        assertEquals(0, LockMetrics.histogramBucket(0));
+        assertEquals(1, LockMetrics.histogramBucket(1));
+        assertEquals(2, LockMetrics.histogramBucket(2));
+        assertEquals(2, LockMetrics.histogramBucket(3));
+        assertEquals(11, LockMetrics.histogramBucket(1024));
+        assertEquals(LockMetrics.HISTOGRAM_BUCKETS - 1, LockMetrics.histogramBucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    void mostContendedKeys() {
+        final var metrics = new LockMetrics(() -> 0);
+        for (int i = 0; i < 5; i++) {
+            metrics.recordContendedKey("a");
+        }
+        metrics.recordContendedKey("c");
+        for (int i = 0; i < 3; i++) {
+            metrics.recordContendedKey("b");
+        }
+
+        assertEquals(List.of("a", "b", "c"), new ArrayList<>(metrics.getMostContendedKeys().keySet()));
+        assertEquals(List.of(5L, 3L, 1L), new ArrayList<>(metrics.getMostContendedKeys().values()));
+    }
+
+    @Test
+    void mostContendedKeys_limited() {
+        final var metrics = new LockMetrics(() -> 0);
+        for (int key = 0; key < LockMetrics.MOST_CONTENDED_KEYS * 2; key++) {
+            metrics.recordContendedKey(key);
+        }
+
+        assertEquals(LockMetrics.MOST_CONTENDED_KEYS, metrics.getMostContendedKeys().size());
+    }
+
+    @Test
+    void mostContendedKeys_replacesLeastContended() {
+        final var metrics = new LockMetrics(() -> 0);
+        for (int i = 0; i < 10; i++) {
+            metrics.recordContendedKey("hot");
+        }
+        // fill the stripe of "hot", which "new" also belongs to
+        final int stripe = LockMetrics.contendedKeysStripe("hot");
+        String newKey = null;
+        int added = 1;
+        for (int i = 0; newKey == null; i++) {
+            final var key = "key" + i;
+            if (LockMetrics.contendedKeysStripe(key) == stripe) {
+                if (added < LockMetrics.TRACKED_KEYS / LockMetrics.CONTENDED_KEY_STRIPES) {
+                    metrics.recordContendedKey(key);
+                    added++;
+                } else {
+                    newKey = key;
+                }
+            }
+        }
+
+        // all keys of the stripe are tracked, so a new key replaces one with the lowest count and inherits it
+        metrics.recordContendedKey(newKey);
+
+        final var mostContendedKeys = metrics.getMostContendedKeys();
+        assertEquals(List.of("hot", newKey), new ArrayList<>(mostContendedKeys.keySet()).subList(0, 2));
+        assertEquals(10L, mostContendedKeys.get("hot"));
+        assertEquals(2L, mostContendedKeys.get(newKey));
+    }
+
+    @Test
+    void mostContendedKeys_stripes() {
+        final var metrics = new LockMetrics(() -> 0);
+        // keys in other stripes do not replace each other
+        for (int key = 0; key < LockMetrics.TRACKED_KEYS; key++) {
+            metrics.recordContendedKey(key);
+            metrics.recordContendedKey(key);
+        }
+        metrics.recordContendedKey(0);
+
+        assertEquals(3L, metrics.getMostContendedKeys().get("0"));
+    }
+
+    @Test
+    void snapshot() {
+        final var locks = Locks.<Integer>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+
+        final var lock = locks.lock(1);
+        final var snapshot = metrics.snapshot();
+        lock.unlock();
+        locks.lock(2).unlock();
+
+        assertEquals(1, snapshot.getLookups());
+        assertEquals(1, snapshot.getCreated());
+        assertEquals(0, snapshot.getHits());
+        assertEquals(1, snapshot.getLiveLocks());
+        assertEquals(1, snapshot.getAcquisitions());
+        assertEquals(LockMetrics.HISTOGRAM_BUCKETS, snapshot.getWaitTimeHistogram().length);
+        assertEquals(2, metrics.getLookups());
+        assertTrue(snapshot.toString().contains("lookups=1"));
+    }
+
+    @Test
+    void register() throws Exception {
+        final var locks = Locks.<Integer>builder().metrics().reentrant();
+        final var metrics = locks.getMetrics();
+        assertNotNull(metrics);
+        locks.lock(1).unlock();
+
+        final var server = ManagementFactory.getPlatformMBeanServer();
+        final var objectName = metrics.register("test,\"name\"");
+        try {
+            assertEquals(LockMetrics.JMX_DOMAIN, objectName.getDomain());
+            assertEquals("LockMetrics", objectName.getKeyProperty("type"));
+            assertTrue(server.isRegistered(objectName));
+            assertEquals(1L, server.getAttribute(objectName, "Acquisitions"));
+            assertEquals(1, server.getAttribute(objectName, "LiveLocks"));
+            assertThrows(IllegalStateException.class, () -> metrics.register("other"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(objectName));
+
+        // does nothing if not registered
+        metrics.unregister();
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (final long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+}
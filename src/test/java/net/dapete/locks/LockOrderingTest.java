@@ -0,0 +1,46 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockOrderingTest {
+
+    @Test
+    void lockAll_firstKeyOfEachValue() {
+        final var first = new ReentrantLock();
+        final var second = new ReentrantLock();
+        final var acquired = new ArrayList<String>();
+
+        try (final var group = LockOrdering.lockAll(List.of("a", "b", "c"), List.of(first, second, first), Function.identity(), (key, lock) -> {
+            acquired.add(key);
+            lock.lock();
+        })) {
+            assertEquals(2, group.getLocks().size());
+            assertTrue(first.isHeldByCurrentThread());
+            assertTrue(second.isHeldByCurrentThread());
+        }
+        assertEquals(2, acquired.size());
+        assertTrue(acquired.containsAll(List.of("a", "b")));
+        assertFalse(first.isLocked());
+        assertFalse(second.isLocked());
+    }
+
+    @Test
+    void tieBreaker() {
+        final var first = new Object();
+        final var second = new Object();
+
+        final long firstTieBreaker = LockOrdering.tieBreaker(first);
+
+        // the number is kept, so every thread orders the same values the same way
+        assertEquals(firstTieBreaker, LockOrdering.tieBreaker(first));
+        assertNotEquals(firstTieBreaker, LockOrdering.tieBreaker(second));
+    }
+
+}
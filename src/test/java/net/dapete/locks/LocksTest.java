@@ -1,14 +1,18 @@
 package net.dapete.locks;
 
+import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
+import static net.dapete.locks.TestThreads.runInOtherThread;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -57,6 +61,80 @@ class LocksTest {
         }
     }
 
+    @Test
+    void withSupplier_concurrencyLevel() {
+        final var locks = Locks.withSupplier(ReentrantLock::new, 8);
+
+        assertSame(locks.get(1), locks.get(1));
+        assertThrows(IllegalArgumentException.class, () -> Locks.withSupplier(ReentrantLock::new, 0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void reentrant_concurrencyLevel(boolean fair) {
+        final var locks = Locks.reentrant(fair, 8);
+
+        assertEquals(fair, locks.isFair());
+
+        final var lock = locks.lock(1);
+        try {
+            assertEquals(fair, lock.isFair());
+            assertSame(lock, locks.get(1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void builder() {
+        final var locks = Locks.builder(Integer.class)
+                .concurrencyLevel(4)
+                .cleanupLimit(10)
+                .reentrant(true);
+
+        assertTrue(locks.isFair());
+        assertEquals(4, locks.getConcurrencyLevel());
+
+        final var lock = locks.lock(1);
+        try {
+            assertTrue(lock.isLocked());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void builder_expectedKeys(boolean virtualThreadFriendly) {
+        final var builder = Locks.<Integer>builder()
+                .concurrencyLevel(4)
+                .expectedKeys(1000)
+                .loadFactor(0.5f);
+        if (virtualThreadFriendly) {
+            builder.virtualThreadFriendly();
+        }
+        final var locks = builder.reentrant();
+
+        final var held = new ArrayList<Object>();
+        for (int i = 0; i < 2000; i++) {
+            held.add(locks.get(i));
+        }
+        assertEquals(2000, locks.size());
+        assertSame(held.get(1999), locks.get(1999));
+    }
+
+    @Test
+    void builder_invalidSettings() {
+        final var builder = Locks.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.concurrencyLevel(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.cleanupLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.expectedKeys(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.loadFactor(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.loadFactor(Float.NaN));
+        assertThrows(IllegalArgumentException.class, () -> builder.loadFactor(Float.POSITIVE_INFINITY));
+    }
+
     @Test
     void testLocking() {
         final var locks = Locks.reentrant(Integer.class);
@@ -96,6 +174,158 @@ class LocksTest {
         assertEquals(0, locks.size(), "Initial size should be 0");
     }
 
+    @Test
+    void tryLock() throws Exception {
+        final var locks = Locks.reentrant(Integer.class);
+
+        final var lock = locks.tryLock(1);
+        assertNotNull(lock);
+        try {
+            assertTrue(lock.isHeldByCurrentThread());
+            assertNull(runInOtherThread(() -> locks.tryLock(1)));
+            assertNull(runInOtherThread(() -> locks.tryLock(1, 10, TimeUnit.MILLISECONDS)));
+        } finally {
+            lock.unlock();
+        }
+
+        final var lock2 = runInOtherThread(() -> {
+            final var l = locks.tryLock(1, 10, TimeUnit.SECONDS);
+            if (l != null) {
+                l.unlock();
+            }
+            return l;
+        });
+        assertSame(lock, lock2);
+    }
+
+    @Test
+    void lockInterruptibly() throws InterruptedException {
+        final var locks = Locks.reentrant(Integer.class);
+
+        final var lock = locks.lockInterruptibly(1);
+        try {
+            assertTrue(lock.isHeldByCurrentThread());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void lockInterruptibly_interruptedBeforeDoesNotCreateLock() {
+        final var locks = Locks.reentrant(Integer.class);
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.lockInterruptibly(1));
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.tryLock(1, 1, TimeUnit.SECONDS));
+
+        assertFalse(Thread.interrupted());
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void acquire() {
+        final var locks = Locks.reentrant(Integer.class);
+
+        final ReentrantLock lock;
+        try (final var handle = locks.acquire(1)) {
+            lock = handle.getLock();
+            assertSame(lock, locks.get(1));
+            assertTrue(lock.isHeldByCurrentThread());
+        }
+
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    void withLock() {
+        final var locks = Locks.reentrant(Integer.class);
+        final var lock = locks.get(1);
+
+        assertEquals("locked", locks.withLock(1, () -> lock.isHeldByCurrentThread() ? "locked" : "not locked"));
+        assertFalse(lock.isLocked());
+        final Integer result = locks.withLock(1, key -> lock.isHeldByCurrentThread() ? key + 1 : 0);
+        assertEquals(2, result);
+        assertFalse(lock.isLocked());
+
+        assertThrows(IllegalStateException.class, () -> locks.withLock(1, () -> {
+            throw new IllegalStateException();
+        }));
+        assertFalse(lock.isLocked());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void getAll(boolean virtualThreadFriendly) {
+        final var builder = Locks.<Integer>builder().concurrencyLevel(8);
+        if (virtualThreadFriendly) {
+            builder.virtualThreadFriendly();
+        }
+        final var locks = builder.reentrant();
+        final var keys = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(i % 300);
+        }
+
+        final var existing = locks.get(5);
+        final var all = locks.getAll(keys);
+
+        assertEquals(keys.size(), all.size());
+        assertEquals(300, locks.size());
+        assertSame(existing, all.get(5));
+        for (int i = 0; i < keys.size(); i++) {
+            assertSame(locks.get(keys.get(i)), all.get(i));
+        }
+    }
+
+    @Test
+    void getAll_array() {
+        final var locks = Locks.reentrant(Integer.class);
+
+        final var all = locks.getAll(2, 1, 2);
+
+        assertEquals(List.of(locks.get(2), locks.get(1), locks.get(2)), all);
+        assertTrue(locks.getAll(List.of()).isEmpty());
+    }
+
+    @Test
+    void lockAll() {
+        final var locks = Locks.reentrant(Integer.class);
+
+        final var lock1 = locks.get(1);
+        final var lock2 = locks.get(2);
+        try (final var group = locks.lockAll(1, 2, 1)) {
+            assertEquals(2, group.getLocks().size());
+            assertTrue(lock1.isHeldByCurrentThread());
+            assertTrue(lock2.isHeldByCurrentThread());
+            assertEquals(1, lock1.getHoldCount());
+        }
+
+        assertFalse(lock1.isLocked());
+        assertFalse(lock2.isLocked());
+    }
+
+    @Test
+    void lockAll_noDeadlockForOppositeOrder() throws InterruptedException {
+        final var locks = Locks.reentrant(Integer.class);
+        final var keys = List.of(1, 2, 3);
+        final var reversedKeys = List.of(3, 2, 1);
+
+        final Runnable runnable = () -> {
+            for (int i = 0; i < 10_000; i++) {
+                locks.lockAll(keys).unlock();
+            }
+        };
+        final var thread = new Thread(runnable);
+        thread.start();
+        for (int i = 0; i < 10_000; i++) {
+            locks.lockAll(reversedKeys).unlock();
+        }
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertFalse(thread.isAlive());
+    }
+
     @Test
     void lock() {
         final var locks = Locks.reentrant(Integer.class);
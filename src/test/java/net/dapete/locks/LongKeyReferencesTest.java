@@ -0,0 +1,148 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongKeyReferencesTest {
+
+    private static final class TestLongKeyReferences extends LongKeyReferences<Object> {
+
+        TestLongKeyReferences(int concurrencyLevel) {
+            super(Object::new, concurrencyLevel);
+        }
+
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "3, 4", "16, 16", "1000, 1024"})
+    void getConcurrencyLevel(int concurrencyLevel, int expected) {
+        assertEquals(expected, new TestLongKeyReferences(concurrencyLevel).getConcurrencyLevel());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, WeakKeyReferences.MAX_CONCURRENCY_LEVEL + 1})
+    void invalidConcurrencyLevel(int concurrencyLevel) {
+        assertThrows(IllegalArgumentException.class, () -> new TestLongKeyReferences(concurrencyLevel));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 16})
+    void get_identicalForSameKey(int concurrencyLevel) {
+        final var objects = new TestLongKeyReferences(concurrencyLevel);
+
+        final var object = objects.get(Long.MIN_VALUE);
+
+        assertSame(object, objects.get(Long.MIN_VALUE));
+        assertNotSame(object, objects.get(Long.MAX_VALUE));
+        assertNotSame(object, objects.get(0));
+        assertEquals(3, objects.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 16})
+    void get_manyKeys(int concurrencyLevel) {
+        final var objects = new TestLongKeyReferences(concurrencyLevel);
+
+        // multiples of a large power of two only differ in their high bits, so this also checks that these are spread over the tables
+        final var expected = new HashMap<Long, Object>();
+        for (long i = 0; i < 10_000; i++) {
+            expected.put(i << 32, objects.get(i << 32));
+        }
+
+        assertEquals(10_000, objects.size());
+        expected.forEach((key, object) -> assertSame(object, objects.get(key)));
+        assertEquals(10_000, objects.size());
+    }
+
+    @Test
+    void get_existingKeysWhileResizing() throws Exception {
+        final var objects = new TestLongKeyReferences(1);
+
+        final var expected = new HashMap<Long, Object>();
+        for (long i = 0; i < 100; i++) {
+            expected.put(i, objects.get(i));
+        }
+
+        // lookups of existing keys do not take the segment lock, so they run concurrently with the resizes caused by adding more keys
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final var adding = executor.submit(() -> {
+                for (long i = 100; i < 100_000; i++) {
+                    objects.get(i);
+                }
+            });
+            while (!adding.isDone()) {
+                expected.forEach((key, object) -> assertSame(object, objects.get(key)));
+            }
+            adding.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        expected.forEach((key, object) -> assertSame(object, objects.get(key)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 16})
+    void processQueue_removesOnlyUnusedValues(int concurrencyLevel) {
+        final var objects = new TestLongKeyReferences(concurrencyLevel);
+
+        final var keptObjects = new HashMap<Long, Object>();
+        final var droppedObjects = new ArrayList<>();
+        for (long i = 0; i < 10_000; i++) {
+            final var object = objects.get(i);
+            if (i % 3 == 0) {
+                keptObjects.put(i, object);
+            } else {
+                droppedObjects.add(object);
+            }
+        }
+        assertEquals(10_000, objects.size());
+
+        droppedObjects.clear();
+        System.gc();
+
+        // this relies on the removal keeping the remaining entries reachable from their probe sequences
+        await().atMost(30, TimeUnit.SECONDS).until(() -> objects.size() == keptObjects.size());
+        keptObjects.forEach((key, object) -> assertSame(object, objects.get(key)));
+        assertEquals(keptObjects.size(), objects.size());
+    }
+
+    @Test
+    void processQueue_tableShrinksAndGrowsAgain() {
+        final var objects = new TestLongKeyReferences(1);
+
+        final var droppedObjects = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            droppedObjects.add(objects.get(i));
+        }
+        droppedObjects.clear();
+        System.gc();
+
+        await().atMost(30, TimeUnit.SECONDS).until(() -> objects.size() == 0);
+
+        // the table shrinks again after most values have been removed, and new values can still be added
+        for (long i = 0; i < 100; i++) {
+            droppedObjects.add(objects.get(i));
+        }
+        assertEquals(100, objects.size());
+        for (long i = 0; i < 100; i++) {
+            assertSame(droppedObjects.get((int) i), objects.get(i));
+        }
+    }
+
+    @Test
+    void hash_spreadsHighBits() {
+        assertNotEquals((int) LongKeyReferences.hash(1L << 32), (int) LongKeyReferences.hash(2L << 32));
+    }
+
+}
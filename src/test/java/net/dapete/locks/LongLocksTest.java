@@ -0,0 +1,105 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLocksTest {
+
+    @Test
+    void reentrant() {
+        final var locks = LongLocks.reentrant();
+
+        assertFalse(locks.get(1).isFair());
+        assertEquals(LongKeyReferences.DEFAULT_CONCURRENCY_LEVEL, locks.getConcurrencyLevel());
+    }
+
+    @Test
+    void reentrant_fair() {
+        final var locks = LongLocks.reentrant(true, 4);
+
+        assertTrue(locks.get(1).isFair());
+        assertEquals(4, locks.getConcurrencyLevel());
+    }
+
+    @Test
+    void withSupplier() {
+        final var locks = LongLocks.withSupplier(() -> new ReentrantLock(true), 1);
+
+        assertTrue(locks.get(1).isFair());
+        assertEquals(1, locks.getConcurrencyLevel());
+        assertTrue(LongLocks.withSupplier(ReentrantLock::new).get(1) instanceof ReentrantLock);
+    }
+
+    @Test
+    void get() {
+        final var locks = LongLocks.reentrant();
+
+        final var lock = locks.get(Long.MAX_VALUE);
+
+        assertSame(lock, locks.get(Long.MAX_VALUE));
+        assertNotSame(lock, locks.get(Long.MIN_VALUE));
+        assertEquals(2, locks.size());
+    }
+
+    @Test
+    void lock() {
+        final var locks = LongLocks.reentrant();
+
+        final var lock = locks.lock(1);
+        try {
+            assertTrue(lock.isHeldByCurrentThread());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void tryLock() throws Exception {
+        final var locks = LongLocks.reentrant();
+
+        final var lock = locks.lock(1);
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            assertNull(executor.submit(() -> locks.tryLock(1)).get());
+            assertNull(executor.submit(() -> locks.tryLock(1, 10, TimeUnit.MILLISECONDS)).get());
+        } finally {
+            lock.unlock();
+            executor.shutdownNow();
+        }
+
+        final var tryLock = locks.tryLock(1);
+        assertSame(lock, tryLock);
+        assertNotNull(tryLock);
+        tryLock.unlock();
+    }
+
+    @Test
+    void lockInterruptibly() throws Exception {
+        final var locks = LongLocks.reentrant();
+
+        final var lock = locks.lockInterruptibly(1);
+        lock.unlock();
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.lockInterruptibly(2));
+        assertEquals(1, locks.size());
+    }
+
+    @Test
+    void acquire() {
+        final var locks = LongLocks.reentrant();
+
+        final ReentrantLock lock;
+        try (final var handle = locks.acquire(1)) {
+            lock = handle.getLock();
+            assertTrue(lock.isHeldByCurrentThread());
+        }
+        assertFalse(lock.isLocked());
+    }
+
+}
@@ -0,0 +1,104 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongReadWriteLocksTest {
+
+    @Test
+    void reentrant() {
+        final var locks = LongReadWriteLocks.reentrant();
+
+        assertFalse(locks.get(1).isFair());
+        assertEquals(LongKeyReferences.DEFAULT_CONCURRENCY_LEVEL, locks.getConcurrencyLevel());
+        assertTrue(LongReadWriteLocks.reentrant(true, 2).get(1).isFair());
+        assertTrue(LongReadWriteLocks.withSupplier(() -> new ReentrantReadWriteLock(true)).get(1).isFair());
+        assertEquals(2, LongReadWriteLocks.withSupplier(ReentrantReadWriteLock::new, 2).getConcurrencyLevel());
+    }
+
+    @Test
+    void get() {
+        final var locks = LongReadWriteLocks.reentrant();
+
+        final var lock = locks.get(Long.MAX_VALUE);
+
+        assertSame(lock, locks.get(Long.MAX_VALUE));
+        assertNotSame(lock, locks.get(Long.MIN_VALUE));
+        assertEquals(2, locks.size());
+    }
+
+    @Test
+    void readLock() throws Exception {
+        final var locks = LongReadWriteLocks.reentrant();
+
+        final var lock = locks.readLock(1);
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(1, lock.getReadHoldCount());
+            assertSame(lock, executor.submit(() -> {
+                final var otherLock = locks.tryReadLock(1);
+                if (otherLock != null) {
+                    otherLock.readLock().unlock();
+                }
+                return otherLock;
+            }).get());
+            assertNull(executor.submit(() -> locks.tryWriteLock(1)).get());
+            assertNull(executor.submit(() -> locks.tryWriteLock(1, 10, TimeUnit.MILLISECONDS)).get());
+        } finally {
+            lock.readLock().unlock();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeLock() throws Exception {
+        final var locks = LongReadWriteLocks.reentrant();
+
+        final var lock = locks.writeLock(1);
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            assertTrue(lock.isWriteLockedByCurrentThread());
+            assertNull(executor.submit(() -> locks.tryReadLock(1)).get());
+            assertNull(executor.submit(() -> locks.tryReadLock(1, 10, TimeUnit.MILLISECONDS)).get());
+        } finally {
+            lock.writeLock().unlock();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lockInterruptibly() throws Exception {
+        final var locks = LongReadWriteLocks.reentrant();
+
+        locks.readLockInterruptibly(1).readLock().unlock();
+        locks.writeLockInterruptibly(1).writeLock().unlock();
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.readLockInterruptibly(2));
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.writeLockInterruptibly(2));
+        assertEquals(1, locks.size());
+    }
+
+    @Test
+    void acquire() {
+        final var locks = LongReadWriteLocks.reentrant();
+
+        final ReentrantReadWriteLock lock;
+        try (final var handle = locks.acquireRead(1)) {
+            lock = handle.getLock();
+            assertEquals(1, lock.getReadHoldCount());
+        }
+        assertEquals(0, lock.getReadLockCount());
+        try (final var handle = locks.acquireWrite(1)) {
+            assertTrue(handle.getLock().isWriteLockedByCurrentThread());
+        }
+        assertFalse(lock.isWriteLocked());
+    }
+
+}
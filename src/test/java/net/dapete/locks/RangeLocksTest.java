@@ -0,0 +1,249 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeLocksTest {
+
+    @Test
+    void range_excludesOverlapping() {
+        final var locks = RangeLocks.<Integer>create();
+
+        try (final var range = locks.acquire(10, 20)) {
+            assertEquals(10, range.getFrom());
+            assertEquals(20, range.getTo());
+            assertEquals("RangeLock[10, 20)", range.toString());
+
+            assertNull(locks.tryAcquire(10));
+            assertNull(locks.tryAcquire(19));
+            assertNull(locks.tryAcquire(0, 11));
+            assertNull(locks.tryAcquire(19, 30));
+            assertNull(locks.tryAcquire(12, 15));
+            assertNull(locks.tryAcquire(0, 30));
+            assertEquals(1, locks.size());
+
+            // adjacent keys and ranges do not overlap
+            try (final var below = locks.tryAcquire(9); final var above = locks.tryAcquire(20);
+                 final var rangeBelow = locks.tryAcquire(0, 9); final var rangeAbove = locks.tryAcquire(21, 30)) {
+                assertNotNull(below);
+                assertNotNull(above);
+                assertNotNull(rangeBelow);
+                assertNotNull(rangeAbove);
+                assertEquals(5, locks.size());
+            }
+        }
+        assertEquals(0, locks.size());
+        try (final var range = locks.tryAcquire(0, 30)) {
+            assertNotNull(range);
+        }
+    }
+
+    @Test
+    void key_excludesSameKeyAndRanges() {
+        final var locks = RangeLocks.<String>create();
+
+        try (final var key = locks.acquire("b")) {
+            assertEquals("b", key.getFrom());
+            assertNull(key.getTo());
+            assertEquals("RangeLock[b]", key.toString());
+
+            assertNull(locks.tryAcquire("b"));
+            assertNull(locks.tryAcquire("a", "c"));
+            assertNull(locks.tryAcquire("b", "c"));
+            try (final var other = locks.tryAcquire("c"); final var range = locks.tryAcquire("a", "b")) {
+                assertNotNull(other);
+                assertNotNull(range);
+            }
+        }
+    }
+
+    @Test
+    void release() {
+        final var locks = RangeLocks.<Integer>create();
+
+        final var range = locks.acquire(0, 10);
+        assertFalse(range.isReleased());
+        range.release();
+        assertTrue(range.isReleased());
+        final var other = locks.acquire(5);
+        // releasing again has no effect on other locks
+        range.close();
+        assertNull(locks.tryAcquire(5));
+        other.close();
+    }
+
+    @Test
+    void invalidRange() {
+        final var locks = RangeLocks.<Integer>create();
+        assertThrows(IllegalArgumentException.class, () -> locks.acquire(10, 10));
+        assertThrows(IllegalArgumentException.class, () -> locks.tryAcquire(10, 5));
+        assertThrows(IllegalArgumentException.class, () -> locks.acquireInterruptibly(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> locks.tryAcquire(1, 0, 1, TimeUnit.SECONDS));
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void acquire_waitsInOrder() throws Exception {
+        final var locks = RangeLocks.<Integer>create();
+        final var executor = Executors.newFixedThreadPool(2);
+        try {
+            final var range = locks.acquire(0, 100);
+            final var keyFuture = executor.submit(() -> locks.acquire(50).release());
+            await().atMost(10, TimeUnit.SECONDS).until(() -> locks.size() == 2);
+            // overlaps both the held range and the waiting key
+            final var overlappingKey = locks.tryAcquire(50);
+            assertNull(overlappingKey);
+            assertFalse(keyFuture.isDone());
+            range.release();
+            keyFuture.get(10, TimeUnit.SECONDS);
+            assertEquals(0, locks.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void tryAcquire_timeout() throws Exception {
+        final var locks = RangeLocks.<Integer>create();
+
+        try (final var range = locks.acquire(0, 100)) {
+            assertNotNull(range);
+            final var executor = Executors.newSingleThreadExecutor();
+            try {
+                assertNull(executor.submit(() -> locks.tryAcquire(5, 10, TimeUnit.MILLISECONDS)).get());
+                assertNull(executor.submit(() -> locks.tryAcquire(90, 110, 10, TimeUnit.MILLISECONDS)).get());
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(1, locks.size());
+        }
+        try (final var key = locks.tryAcquire(5, 10, TimeUnit.MILLISECONDS)) {
+            assertNotNull(key);
+        }
+    }
+
+    @Test
+    void acquireInterruptibly_interrupted() throws InterruptedException {
+        final var locks = RangeLocks.<Integer>create();
+        final var interrupted = new CountDownLatch(1);
+
+        final Thread thread;
+        try (final var range = locks.acquire(0, 100)) {
+            assertNotNull(range);
+            thread = new Thread(() -> {
+                try {
+                    locks.acquireInterruptibly(50, 150).release();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            });
+            thread.start();
+            await().atMost(10, TimeUnit.SECONDS).until(() -> thread.getState() == Thread.State.WAITING);
+            thread.interrupt();
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+            thread.join();
+            // the abandoned request does not block later ones
+            try (final var key = locks.tryAcquire(120)) {
+                assertNotNull(key);
+            }
+        }
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.acquireInterruptibly(1));
+    }
+
+    @Test
+    void mutualExclusion() throws InterruptedException {
+        final var locks = RangeLocks.<Integer>create();
+        final var owners = new AtomicInteger[20];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = new AtomicInteger();
+        }
+        final var failures = new AtomicInteger();
+        final var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int id = t + 1;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final int from = (i * 7 + id) % owners.length;
+                    final int to = i % 3 == 0 ? from + 1 : Math.min(from + 1 + i % 5, owners.length);
+                    try (final var lock = i % 3 == 0 ? locks.acquire(from) : locks.acquire(from, to)) {
+                        assertNotNull(lock);
+                        for (int key = from; key < to; key++) {
+                            if (!owners[key].compareAndSet(0, id)) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                        for (int key = from; key < to; key++) {
+                            owners[key].compareAndSet(id, 0);
+                        }
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void mutualExclusion_simultaneousRequests() throws InterruptedException {
+        final var locks = RangeLocks.<Integer>create();
+        final int threadCount = 4;
+        final var holders = new AtomicInteger[4];
+        for (int i = 0; i < holders.length; i++) {
+            holders[i] = new AtomicInteger();
+        }
+        final var failures = new AtomicInteger();
+        // all threads request overlapping keys and ranges at the same moment in each round
+        final var barrier = new CyclicBarrier(threadCount);
+        final var threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int id = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    final int from = (i + id) % holders.length;
+                    final int to = (i + id) % 2 == 0 ? from + 1 : holders.length;
+                    try {
+                        barrier.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                        failures.incrementAndGet();
+                        return;
+                    }
+                    try (final var lock = to == from + 1 ? locks.acquire(from) : locks.acquire(from, to)) {
+                        assertNotNull(lock);
+                        for (int key = from; key < to; key++) {
+                            if (holders[key].incrementAndGet() != 1) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                        Thread.yield();
+                        for (int key = from; key < to; key++) {
+                            holders[key].decrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+        assertEquals(0, locks.size());
+    }
+
+}
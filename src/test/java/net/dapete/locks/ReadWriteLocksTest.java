@@ -1,14 +1,18 @@
 package net.dapete.locks;
 
+import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 
+import static net.dapete.locks.TestThreads.runInOtherThread;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -58,6 +62,80 @@ class ReadWriteLocksTest {
         }
     }
 
+    @Test
+    void withSupplier_concurrencyLevel() {
+        final var locks = ReadWriteLocks.withSupplier(ReentrantReadWriteLock::new, 8);
+
+        assertSame(locks.get(1), locks.get(1));
+        assertThrows(IllegalArgumentException.class, () -> ReadWriteLocks.withSupplier(ReentrantReadWriteLock::new, 0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void reentrant_concurrencyLevel(boolean fair) {
+        final var locks = ReadWriteLocks.reentrant(fair, 8);
+
+        assertEquals(fair, locks.isFair());
+
+        final var lock = locks.readLock(1);
+        try {
+            assertEquals(fair, lock.isFair());
+            assertSame(lock, locks.get(1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Test
+    void builder() {
+        final var locks = ReadWriteLocks.builder(Integer.class)
+                .concurrencyLevel(4)
+                .cleanupLimit(10)
+                .reentrant(true);
+
+        assertTrue(locks.isFair());
+        assertEquals(4, locks.getConcurrencyLevel());
+
+        final var lock = locks.readLock(1);
+        try {
+            assertEquals(1, lock.getReadLockCount());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void builder_expectedKeys(boolean virtualThreadFriendly) {
+        final var builder = ReadWriteLocks.<Integer>builder()
+                .concurrencyLevel(4)
+                .expectedKeys(1000)
+                .loadFactor(0.5f);
+        if (virtualThreadFriendly) {
+            builder.virtualThreadFriendly();
+        }
+        final var locks = builder.reentrant();
+
+        final var held = new ArrayList<Object>();
+        for (int i = 0; i < 2000; i++) {
+            held.add(locks.get(i));
+        }
+        assertEquals(2000, locks.size());
+        assertSame(held.get(1999), locks.get(1999));
+    }
+
+    @Test
+    void builder_invalidSettings() {
+        final var builder = ReadWriteLocks.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.concurrencyLevel(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.cleanupLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.expectedKeys(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.loadFactor(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.loadFactor(Float.NaN));
+        assertThrows(IllegalArgumentException.class, () -> builder.loadFactor(Float.POSITIVE_INFINITY));
+    }
+
     @Test
     void testLocking() {
         final var readWriteLocks = ReadWriteLocks.reentrant(Integer.class);
@@ -107,6 +185,193 @@ class ReadWriteLocksTest {
         lock.readLock().unlock();
     }
 
+    @Test
+    void tryReadLock() throws Exception {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+
+        final var lock = locks.tryReadLock(1);
+        assertNotNull(lock);
+        try {
+            assertEquals(1, lock.getReadLockCount());
+            assertNull(runInOtherThread(() -> locks.tryWriteLock(1)));
+            assertNull(runInOtherThread(() -> locks.tryWriteLock(1, 10, TimeUnit.MILLISECONDS)));
+            final var lock2 = runInOtherThread(() -> {
+                final var l = locks.tryReadLock(1, 10, TimeUnit.SECONDS);
+                if (l != null) {
+                    l.readLock().unlock();
+                }
+                return l;
+            });
+            assertSame(lock, lock2);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Test
+    void tryWriteLock() throws Exception {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+
+        final var lock = locks.tryWriteLock(1);
+        assertNotNull(lock);
+        try {
+            assertTrue(lock.isWriteLockedByCurrentThread());
+            assertNull(runInOtherThread(() -> locks.tryReadLock(1)));
+            assertNull(runInOtherThread(() -> locks.tryReadLock(1, 10, TimeUnit.MILLISECONDS)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Test
+    void lockInterruptibly() throws InterruptedException {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+
+        final var lock = locks.readLockInterruptibly(1);
+        assertEquals(1, lock.getReadLockCount());
+        lock.readLock().unlock();
+
+        final var lock2 = locks.writeLockInterruptibly(1);
+        assertTrue(lock2.isWriteLockedByCurrentThread());
+        lock2.writeLock().unlock();
+    }
+
+    @Test
+    void lockInterruptibly_interruptedBeforeDoesNotCreateLock() {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.readLockInterruptibly(1));
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.writeLockInterruptibly(1));
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.tryReadLock(1, 1, TimeUnit.SECONDS));
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.tryWriteLock(1, 1, TimeUnit.SECONDS));
+
+        assertFalse(Thread.interrupted());
+        assertEquals(0, locks.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void getAll(boolean virtualThreadFriendly) {
+        final var builder = ReadWriteLocks.<Integer>builder().concurrencyLevel(8);
+        if (virtualThreadFriendly) {
+            builder.virtualThreadFriendly();
+        }
+        final var locks = builder.reentrant();
+        final var keys = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(i % 300);
+        }
+
+        final var all = locks.getAll(keys);
+
+        assertEquals(keys.size(), all.size());
+        assertEquals(300, locks.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertSame(locks.get(keys.get(i)), all.get(i));
+        }
+        assertEquals(List.of(locks.get(2), locks.get(1)), locks.getAll(2, 1));
+    }
+
+    @Test
+    void acquireRead() {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+
+        final ReentrantReadWriteLock lock;
+        try (final var handle = locks.acquireRead(1)) {
+            lock = handle.getLock();
+            assertSame(lock, locks.get(1));
+            assertEquals(1, lock.getReadLockCount());
+        }
+
+        assertEquals(0, lock.getReadLockCount());
+    }
+
+    @Test
+    void acquireWrite() {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+
+        final ReentrantReadWriteLock lock;
+        try (final var handle = locks.acquireWrite(1)) {
+            lock = handle.getLock();
+            assertSame(lock, locks.get(1));
+            assertTrue(lock.isWriteLockedByCurrentThread());
+        }
+
+        assertFalse(lock.isWriteLocked());
+    }
+
+    @Test
+    void withReadLock() {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+        final var lock = locks.get(1);
+
+        final Integer readLockCount = locks.withReadLock(1, lock::getReadLockCount);
+        assertEquals(1, readLockCount);
+        assertEquals(0, lock.getReadLockCount());
+        final Integer result = locks.withReadLock(1, key -> key + lock.getReadLockCount());
+        assertEquals(2, result);
+        assertEquals(0, lock.getReadLockCount());
+
+        assertThrows(IllegalStateException.class, () -> locks.withReadLock(1, () -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(0, lock.getReadLockCount());
+    }
+
+    @Test
+    void withWriteLock() {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+        final var lock = locks.get(1);
+
+        assertTrue(locks.withWriteLock(1, lock::isWriteLockedByCurrentThread));
+        assertFalse(lock.isWriteLocked());
+        final Integer result = locks.withWriteLock(1, key -> lock.isWriteLockedByCurrentThread() ? key : 0);
+        assertEquals(1, result);
+        assertFalse(lock.isWriteLocked());
+
+        assertThrows(IllegalStateException.class, () -> locks.withWriteLock(1, key -> {
+            throw new IllegalStateException();
+        }));
+        assertFalse(lock.isWriteLocked());
+    }
+
+    @Test
+    void readLockAll() {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+
+        final var lock1 = locks.get(1);
+        final var lock2 = locks.get(2);
+        try (final var group = locks.readLockAll(List.of(1, 2))) {
+            assertEquals(2, group.getLocks().size());
+            assertEquals(1, lock1.getReadLockCount());
+            assertEquals(1, lock2.getReadLockCount());
+        }
+
+        assertEquals(0, lock1.getReadLockCount());
+        assertEquals(0, lock2.getReadLockCount());
+    }
+
+    @Test
+    void writeLockAll() {
+        final var locks = ReadWriteLocks.reentrant(Integer.class);
+
+        final var lock1 = locks.get(1);
+        final var lock2 = locks.get(2);
+        try (final var group = locks.writeLockAll(1, 2, 2)) {
+            assertEquals(2, group.getLocks().size());
+            assertTrue(lock1.isWriteLockedByCurrentThread());
+            assertTrue(lock2.isWriteLockedByCurrentThread());
+            assertEquals(1, lock2.getWriteHoldCount());
+        }
+
+        assertFalse(lock1.isWriteLocked());
+        assertFalse(lock2.isWriteLocked());
+    }
+
     @Test
     void writeLock() {
         final var locks = ReadWriteLocks.reentrant(Integer.class);
@@ -0,0 +1,52 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceCleanerTest {
+
+    @Test
+    void start_invalidInterval() {
+        assertThrows(IllegalArgumentException.class, () -> ReferenceCleaner.start(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> ReferenceCleaner.start(Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    void close() {
+        final var cleaner = ReferenceCleaner.start();
+        assertTrue(cleaner.isRunning());
+
+        cleaner.close();
+
+        assertFalse(cleaner.isRunning());
+    }
+
+    @Test
+    void removesUnusedLocks() {
+        try (final var cleaner = ReferenceCleaner.start(Duration.ofMillis(10))) {
+            final var locks = Locks.<Integer>builder().concurrencyLevel(4).metrics().cleaner(cleaner).reentrant();
+            final var metrics = locks.getMetrics();
+            assertNotNull(metrics);
+
+            final var lockList = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                lockList.add(locks.get(i));
+            }
+            assertEquals(5, locks.entryCount());
+
+            lockList.clear();
+            System.gc();
+
+            // neither entryCount() nor the metrics process the reference queues, so only the cleaner can have removed the entries
+            await().atMost(30, TimeUnit.SECONDS).until(() -> metrics.getPurged() == 5);
+            assertEquals(0, locks.entryCount());
+        }
+    }
+
+}
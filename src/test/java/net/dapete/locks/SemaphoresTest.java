@@ -0,0 +1,184 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemaphoresTest {
+
+    @Test
+    void create() {
+        final var semaphores = Semaphores.<String>create(3);
+
+        assertEquals(3, semaphores.getPermits());
+        assertEquals(3, semaphores.get("key").availablePermits());
+        assertFalse(semaphores.get("key").isFair());
+        assertTrue(Semaphores.<String>create(3, true).get("key").isFair());
+        assertEquals(4, Semaphores.create(1, false, 3).getConcurrencyLevel());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1})
+    void create_invalidPermits(int permits) {
+        assertThrows(IllegalArgumentException.class, () -> Semaphores.create(permits));
+    }
+
+    @Test
+    void builder() {
+        final var semaphores = Semaphores.builder(String.class)
+                .concurrencyLevel(4)
+                .virtualThreadFriendly()
+                .create(2, true);
+
+        assertEquals(4, semaphores.getConcurrencyLevel());
+        assertEquals(2, semaphores.get("key").availablePermits());
+        assertTrue(semaphores.get("key").isFair());
+        assertFalse(Semaphores.<String>builder().create(1).get("key").isFair());
+        assertThrows(IllegalArgumentException.class, () -> Semaphores.builder().create(0));
+        assertThrows(IllegalArgumentException.class, () -> Semaphores.builder().concurrencyLevel(0));
+    }
+
+    @Test
+    void get_identicalForEqualsKey() {
+        final var semaphores = Semaphores.<String>create(1);
+
+        assertSame(semaphores.get(new String("1")), semaphores.get(new String("1")));
+        assertNotSame(semaphores.get("1"), semaphores.get("2"));
+    }
+
+    @Test
+    void acquire() throws InterruptedException {
+        final var semaphores = Semaphores.<String>create(3);
+
+        try (final var one = semaphores.acquire("key"); final var two = semaphores.acquire("key", 2)) {
+            assertEquals(1, one.getCount());
+            assertEquals(2, two.getCount());
+            assertEquals(0, semaphores.get("key").availablePermits());
+            assertNull(semaphores.tryAcquire("key"));
+            assertNotNull(semaphores.tryAcquire("other"));
+
+            one.release();
+            assertTrue(one.isReleased());
+            assertEquals(1, semaphores.get("key").availablePermits());
+        }
+
+        assertEquals(3, semaphores.get("key").availablePermits());
+    }
+
+    @Test
+    void release_concurrently() throws Exception {
+        final var semaphores = Semaphores.<String>create(2);
+        final int threads = 4;
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 100; round++) {
+                final var permits = semaphores.acquire("key", 2);
+                final var start = new CountDownLatch(1);
+                final var futures = new ArrayList<Future<?>>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        permits.close();
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (final var future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+
+                assertTrue(permits.isReleased());
+                assertEquals(2, semaphores.get("key").availablePermits());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void acquire_invalidCount() {
+        final var semaphores = Semaphores.<String>create(2);
+
+        assertThrows(IllegalArgumentException.class, () -> semaphores.acquire("key", 0));
+        assertThrows(IllegalArgumentException.class, () -> semaphores.acquireUninterruptibly("key", 3));
+        assertThrows(IllegalArgumentException.class, () -> semaphores.tryAcquire("key", 3));
+        assertEquals(0, semaphores.size());
+    }
+
+    @Test
+    void acquire_interruptedBeforeDoesNotCreateSemaphore() {
+        final var semaphores = Semaphores.<String>create(1);
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> semaphores.acquire("key"));
+        assertEquals(0, semaphores.size());
+    }
+
+    @Test
+    void tryAcquire() throws InterruptedException {
+        final var semaphores = Semaphores.<String>create(2);
+
+        final var permits = semaphores.tryAcquire("key", 2);
+        assertNotNull(permits);
+        assertNull(semaphores.tryAcquire("key", 1, TimeUnit.MILLISECONDS));
+
+        permits.release();
+        // releasing again has no effect
+        permits.close();
+        assertEquals(2, semaphores.get("key").availablePermits());
+
+        final var timed = semaphores.tryAcquire("key", 2, 1, TimeUnit.SECONDS);
+        assertNotNull(timed);
+        timed.release();
+    }
+
+    @Test
+    void acquire_boundsConcurrency() throws InterruptedException {
+        final var semaphores = Semaphores.<String>create(2);
+        final var active = new AtomicInteger();
+        final var maxActive = new AtomicInteger();
+        final int threadCount = 8;
+        final var done = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    try (final var ignored = semaphores.acquireUninterruptibly("key")) {
+                        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                        active.decrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertTrue(maxActive.get() <= 2);
+    }
+
+    @Test
+    void size_semaphoresWithHeldPermitsAreKept() {
+        final var semaphores = Semaphores.<Integer>create(1);
+
+        final var held = semaphores.acquireUninterruptibly(0);
+        for (int i = 1; i < 5; i++) {
+            semaphores.acquireUninterruptibly(i).release();
+        }
+        System.gc();
+
+        await().atMost(30, TimeUnit.SECONDS).until(() -> semaphores.size() == 1);
+        assertNull(semaphores.tryAcquire(0));
+        held.release();
+    }
+
+}
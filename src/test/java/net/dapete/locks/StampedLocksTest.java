@@ -0,0 +1,161 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StampedLocksTest {
+
+    @Test
+    void create_concurrencyLevel() {
+        assertEquals(4, StampedLocks.create(3).getConcurrencyLevel());
+        assertThrows(IllegalArgumentException.class, () -> StampedLocks.create(0));
+    }
+
+    @Test
+    void builder() {
+        final var locks = StampedLocks.builder(String.class)
+                .concurrencyLevel(4)
+                .virtualThreadFriendly()
+                .create();
+
+        assertEquals(4, locks.getConcurrencyLevel());
+        try (final var stamp = locks.writeLock("key")) {
+            assertTrue(locks.get("key").isWriteLocked());
+        }
+        assertThrows(IllegalArgumentException.class, () -> StampedLocks.builder().concurrencyLevel(0));
+    }
+
+    @Test
+    void get_identicalForEqualsKey() {
+        final var locks = StampedLocks.<String>create();
+
+        assertSame(locks.get(new String("1")), locks.get(new String("1")));
+        assertNotSame(locks.get("1"), locks.get("2"));
+    }
+
+    @Test
+    void tryOptimisticRead() {
+        final var locks = StampedLocks.<String>create();
+
+        final var stamp = locks.tryOptimisticRead("key");
+        assertTrue(stamp.isOptimisticRead());
+        assertTrue(locks.validate(stamp));
+
+        // a read lock does not invalidate an optimistic read
+        locks.readLock("key").unlock();
+        assertTrue(stamp.validate());
+
+        // a write lock does
+        final var writeStamp = locks.writeLock("key");
+        assertFalse(stamp.validate());
+
+        // and no optimistic read is valid while it is held
+        final var duringWrite = locks.tryOptimisticRead("key");
+        assertFalse(duringWrite.isOptimisticRead());
+        assertFalse(duringWrite.validate());
+        duringWrite.unlock();
+
+        writeStamp.unlock();
+        assertFalse(stamp.validate());
+        assertTrue(locks.tryOptimisticRead("key").validate());
+    }
+
+    @Test
+    void readLock() {
+        final var locks = StampedLocks.<String>create();
+
+        try (final var stamp = locks.readLock("key")) {
+            assertTrue(stamp.isReadLock());
+            assertEquals(1, locks.get("key").getReadLockCount());
+
+            // other readers can still lock it, writers cannot
+            final var other = locks.tryReadLock("key");
+            assertNotNull(other);
+            other.unlock();
+            assertNull(locks.tryWriteLock("key"));
+        }
+
+        assertFalse(locks.get("key").isReadLocked());
+    }
+
+    @Test
+    void writeLock() throws InterruptedException {
+        final var locks = StampedLocks.<String>create();
+
+        final var stamp = locks.writeLock("key");
+        assertTrue(stamp.isWriteLock());
+        assertTrue(locks.get("key").isWriteLocked());
+        assertNull(locks.tryReadLock("key"));
+        assertNull(locks.tryWriteLock("key", 1, TimeUnit.MILLISECONDS));
+        assertNotNull(locks.tryWriteLock("other"));
+
+        stamp.unlock();
+        // unlocking again has no effect
+        stamp.close();
+
+        final var readStamp = locks.tryReadLock("key", 1, TimeUnit.SECONDS);
+        assertNotNull(readStamp);
+        readStamp.unlock();
+    }
+
+    @Test
+    void lockInterruptibly() throws InterruptedException {
+        final var locks = StampedLocks.<String>create();
+
+        locks.readLockInterruptibly("key").unlock();
+        locks.writeLockInterruptibly("key").unlock();
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> locks.writeLockInterruptibly("interrupted"));
+        assertEquals(1, locks.size());
+    }
+
+    @Test
+    void tryConvertToWriteLock() {
+        final var locks = StampedLocks.<String>create();
+
+        final var readStamp = locks.readLock("key");
+        final var writeStamp = readStamp.tryConvertToWriteLock();
+        assertNotNull(writeStamp);
+        assertTrue(writeStamp.isWriteLock());
+        // the converted stamp is no longer unlocked
+        readStamp.unlock();
+        assertTrue(locks.get("key").isWriteLocked());
+
+        final var optimisticStamp = writeStamp.tryConvertToOptimisticRead();
+        assertNotNull(optimisticStamp);
+        assertTrue(optimisticStamp.isOptimisticRead());
+        assertFalse(locks.get("key").isWriteLocked());
+
+        final var convertedRead = optimisticStamp.tryConvertToReadLock();
+        assertNotNull(convertedRead);
+        assertTrue(convertedRead.isReadLock());
+
+        // not possible while another reader holds the lock
+        final var otherRead = locks.readLock("key");
+        assertNull(convertedRead.tryConvertToWriteLock());
+        otherRead.unlock();
+        convertedRead.unlock();
+
+        assertFalse(locks.get("key").isReadLocked());
+    }
+
+    @Test
+    void size_unusedLocksAreRemoved() {
+        final var locks = StampedLocks.<Integer>create();
+
+        final var held = locks.readLock(0);
+        for (int i = 1; i < 5; i++) {
+            locks.writeLock(i).unlock();
+        }
+        System.gc();
+
+        await().atMost(30, TimeUnit.SECONDS).until(() -> locks.size() == 1);
+        held.unlock();
+    }
+
+}
@@ -0,0 +1,105 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StripedLocksTest {
+
+    @Test
+    void striped_createsLocksLazily() {
+        final Supplier<ReentrantLock> lockSupplier = mock();
+        when(lockSupplier.get()).thenAnswer(invocation -> new ReentrantLock());
+
+        final var locks = Locks.<Integer, ReentrantLock>striped(1 << 20, lockSupplier);
+        verifyNoInteractions(lockSupplier);
+        assertEquals(0, locks.size());
+
+        locks.lock(1).unlock();
+
+        verify(lockSupplier).get();
+        assertEquals(1, locks.size());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "3, 4", "16, 16", "1000, 1024"})
+    void getStripes(int stripes, int expected) {
+        assertEquals(expected, Locks.striped(stripes).getStripes());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, Stripes.MAX_STRIPES + 1})
+    void striped_invalidStripes(int stripes) {
+        assertThrows(IllegalArgumentException.class, () -> Locks.striped(stripes));
+    }
+
+    @Test
+    void get_identicalForEqualsKey() {
+        final var locks = Locks.<String>striped(16);
+
+        assertSame(locks.get(new String("1")), locks.get(new String("1")));
+    }
+
+    @Test
+    void get_boundedByStripes() {
+        final var locks = Locks.<Integer>striped(8);
+
+        for (int i = 0; i < 1000; i++) {
+            locks.get(i);
+        }
+
+        assertEquals(8, locks.size());
+    }
+
+    @Test
+    void lock() {
+        final var locks = Locks.<Integer>striped(8);
+
+        final var lock = locks.lock(1);
+        try {
+            assertTrue(lock.isHeldByCurrentThread());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void keyedLocks() throws InterruptedException {
+        final KeyedLocks<Integer, ReentrantLock> locks = Locks.striped(8);
+
+        final var lock = locks.tryLock(1);
+        assertNotNull(lock);
+        lock.unlock();
+        final var timedLock = locks.tryLock(1, 1, TimeUnit.SECONDS);
+        assertNotNull(timedLock);
+        timedLock.unlock();
+        locks.lockInterruptibly(1).unlock();
+        try (final var handle = locks.acquire(1)) {
+            assertTrue(handle.getLock().isHeldByCurrentThread());
+        }
+        final Integer result = locks.withLock(1, key -> locks.get(key).getHoldCount());
+        assertEquals(1, result);
+        assertFalse(locks.get(1).isLocked());
+    }
+
+    @Test
+    void lockAll_sharedStripe() {
+        final var locks = Locks.<Integer>striped(1);
+
+        // both keys share the only lock, which is only locked once
+        try (final var group = locks.lockAll(1, 2)) {
+            assertEquals(1, group.getLocks().size());
+            assertEquals(1, locks.get(1).getHoldCount());
+        }
+        assertFalse(locks.get(1).isLocked());
+    }
+
+}
@@ -0,0 +1,90 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StripedReadWriteLocksTest {
+
+    @Test
+    void striped_createsLocksLazily() {
+        final Supplier<ReentrantReadWriteLock> lockSupplier = mock();
+        when(lockSupplier.get()).thenAnswer(invocation -> new ReentrantReadWriteLock());
+
+        final var locks = ReadWriteLocks.<Integer, ReentrantReadWriteLock>striped(1 << 20, lockSupplier);
+        verifyNoInteractions(lockSupplier);
+        assertEquals(0, locks.size());
+
+        locks.readLock(1).readLock().unlock();
+
+        verify(lockSupplier).get();
+        assertEquals(1, locks.size());
+    }
+
+    @Test
+    void get_boundedByStripes() {
+        final var locks = ReadWriteLocks.<Integer>striped(8);
+
+        for (int i = 0; i < 1000; i++) {
+            locks.get(i);
+        }
+
+        assertEquals(8, locks.size());
+        assertEquals(8, locks.getStripes());
+    }
+
+    @Test
+    void readLock() {
+        final var locks = ReadWriteLocks.<Integer>striped(8);
+
+        final var lock = locks.readLock(1);
+
+        assertEquals(1, lock.getReadLockCount());
+
+        lock.readLock().unlock();
+    }
+
+    @Test
+    void writeLock() {
+        final var locks = ReadWriteLocks.<Integer>striped(8);
+
+        final var lock = locks.writeLock(1);
+
+        assertTrue(lock.isWriteLocked());
+
+        lock.writeLock().unlock();
+    }
+
+    @Test
+    void keyedReadWriteLocks() {
+        final KeyedReadWriteLocks<Integer, ReentrantReadWriteLock> locks = ReadWriteLocks.striped(8);
+
+        final Integer readLocks = locks.withReadLock(1, () -> locks.get(1).getReadLockCount());
+        assertEquals(1, readLocks);
+        final Boolean writeLocked = locks.withWriteLock(1, key -> locks.get(key).isWriteLocked());
+        assertTrue(writeLocked);
+        try (final var handle = locks.acquireWrite(1)) {
+            assertTrue(handle.getLock().isWriteLockedByCurrentThread());
+        }
+        final var lock = locks.tryWriteLock(1);
+        assertNotNull(lock);
+        lock.writeLock().unlock();
+        assertFalse(locks.get(1).isWriteLocked());
+    }
+
+    @Test
+    void readLockAll_sharedStripe() {
+        final var locks = ReadWriteLocks.<Integer>striped(1);
+
+        try (final var group = locks.readLockAll(1, 2)) {
+            assertEquals(1, group.getLocks().size());
+            assertEquals(1, locks.get(1).getReadLockCount());
+        }
+        assertEquals(0, locks.get(1).getReadLockCount());
+    }
+
+}
@@ -0,0 +1,34 @@
+package net.dapete.locks;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class TestThreads {
+
+    private TestThreads() {
+    }
+
+    /// Call `callable` in another thread and wait for its result. An exception thrown by `callable` is rethrown in the calling thread.
+    static <T> @Nullable T runInOtherThread(Callable<@Nullable T> callable) throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(callable).get();
+        } catch (ExecutionException e) {
+            final var cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
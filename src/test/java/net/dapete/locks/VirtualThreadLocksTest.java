@@ -0,0 +1,132 @@
+package net.dapete.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadLocksTest {
+
+    private static final int THREADS = 200_000;
+
+    private static final int KEYS = 2_000;
+
+    @Test
+    void virtualThreadFriendly() {
+        final var locks = Locks.<Integer>virtualThreadFriendly();
+
+        assertFalse(locks.isFair());
+        assertTrue(locks.getConcurrencyLevel() >= Runtime.getRuntime().availableProcessors());
+
+        final var lock = locks.lock(1);
+        try {
+            assertTrue(lock.isHeldByCurrentThread());
+            assertSame(lock, locks.get(1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void testLocking() {
+        final var locks = Locks.<Integer>virtualThreadFriendly();
+
+        final AtomicBoolean threadHasStarted = new AtomicBoolean(false);
+        final AtomicBoolean threadHasLocked = new AtomicBoolean(false);
+
+        final var lock = locks.lock(1);
+        try {
+
+            // lock the lock in a virtual thread and wait until it's running
+            Thread.ofVirtual().start(() -> {
+                threadHasStarted.set(true);
+                final var lock2 = locks.lock(1);
+                assertSame(lock, lock2);
+                try {
+                    threadHasLocked.set(true);
+                } finally {
+                    lock2.unlock();
+                }
+            });
+            await().atMost(10, TimeUnit.SECONDS).untilTrue(threadHasStarted);
+            assertFalse(threadHasLocked.get());
+
+        } finally {
+            lock.unlock();
+        }
+
+        await().atMost(10, TimeUnit.SECONDS).untilTrue(threadHasLocked);
+    }
+
+    @Test
+    void manyVirtualThreadsOnFewKeys() {
+        final var locks = Locks.<Integer>virtualThreadFriendly();
+        // not thread-safe on purpose, the locks must make sure increments for the same key never overlap
+        final var counters = new int[KEYS];
+
+        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < THREADS; i++) {
+                final int key = i % KEYS;
+                executor.execute(() -> {
+                    final var lock = locks.lock(key);
+                    try {
+                        final int value = counters[key];
+                        Thread.yield();
+                        counters[key] = value + 1;
+                    } finally {
+                        lock.unlock();
+                    }
+                });
+            }
+        }
+
+        for (int key = 0; key < KEYS; key++) {
+            assertEquals(THREADS / KEYS, counters[key], "counter for key " + key);
+        }
+    }
+
+    @Test
+    void manyVirtualThreadsUsingHandles() {
+        final var locks = Locks.<Integer>virtualThreadFriendly();
+        final var counters = new int[KEYS];
+
+        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < THREADS; i++) {
+                final int key = i % KEYS;
+                executor.execute(() -> {
+                    try (final var ignored = locks.acquire(key)) {
+                        final int value = counters[key];
+                        Thread.yield();
+                        counters[key] = value + 1;
+                    }
+                });
+            }
+        }
+
+        for (int key = 0; key < KEYS; key++) {
+            assertEquals(THREADS / KEYS, counters[key], "counter for key " + key);
+        }
+    }
+
+    @Test
+    void unusedLocksAreRemoved() {
+        final var locks = Locks.<Integer>virtualThreadFriendly();
+
+        final var lockList = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            lockList.add(locks.get(i));
+        }
+        assertEquals(5, locks.size());
+
+        lockList.clear();
+        System.gc();
+
+        await().atMost(30, TimeUnit.SECONDS).until(() -> locks.size() == 0);
+    }
+
+}
@@ -2,13 +2,18 @@ package net.dapete.locks;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.awaitility.Awaitility.await;
@@ -22,9 +27,25 @@ class WeakKeyReferencesTest {
             super(Object::new);
         }
 
+        private TestWeakKeyReferences(int concurrencyLevel) {
+            super(Object::new, settings(concurrencyLevel, Integer.MAX_VALUE));
+        }
+
+        private TestWeakKeyReferences(Settings settings) {
+            super(Object::new, settings);
+        }
+
+        private static Settings settings(int concurrencyLevel, int cleanupLimit) {
+            final var settings = new Settings();
+            settings.concurrencyLevel = concurrencyLevel;
+            settings.cleanupLimit = cleanupLimit;
+            return settings;
+        }
+
     }
 
     private static MethodHandle getReferenceMethodHandle;
+    private static MethodHandle segmentForMethodHandle;
     private static VarHandle referenceQueueVarHandle;
     private static MethodHandle processQueueMethodHandle;
 
@@ -37,7 +58,12 @@ class WeakKeyReferencesTest {
         getReferenceMethod.setAccessible(true);
         getReferenceMethodHandle = lookup.unreflect(getReferenceMethod);
 
-        referenceQueueVarHandle = privateLookup.findVarHandle(WeakKeyReferences.class, "referenceQueue", ReferenceQueue.class);
+        final var segmentForMethod = WeakKeyReferences.class.getDeclaredMethod("segmentFor", Object.class);
+        segmentForMethod.setAccessible(true);
+        segmentForMethodHandle = lookup.unreflect(segmentForMethod);
+
+        final var segmentClass = segmentForMethod.getReturnType();
+        referenceQueueVarHandle = MethodHandles.privateLookupIn(segmentClass, lookup).findVarHandle(segmentClass, "referenceQueue", ReferenceQueue.class);
 
         final var processQueueMethod = WeakKeyReferences.class.getDeclaredMethod("processQueue");
         processQueueMethod.setAccessible(true);
@@ -49,8 +75,19 @@ class WeakKeyReferencesTest {
         ((WeakKeyReference<?, ?>) objectReference).clear();
     }
 
-    private static ReferenceQueue<Object> getReferenceQueue(TestWeakKeyReferences objects) {
-        return (ReferenceQueue<Object>) referenceQueueVarHandle.get(objects);
+    private int countReferences(WeakKeyReferences<?, ?> objects, int keys) throws Throwable {
+        int count = 0;
+        for (int i = 0; i < keys; i++) {
+            if (getReferenceMethodHandle.invoke(objects, Integer.toString(i)) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static ReferenceQueue<Object> getReferenceQueue(TestWeakKeyReferences objects, String key) throws Throwable {
+        final var segment = segmentForMethodHandle.invoke(objects, key);
+        return (ReferenceQueue<Object>) referenceQueueVarHandle.get(segment);
     }
 
     @Test
@@ -109,10 +146,55 @@ class WeakKeyReferencesTest {
         assertSame(objects.get(key1), objects.get(key2));
     }
 
+    @Test
+    void get_identicalForConcurrentCallers() throws InterruptedException {
+        final var objects = new TestWeakKeyReferences();
+        final var threads = new Thread[8];
+        final var results = new Object[threads.length];
+        final var start = new CountDownLatch(1);
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                results[index] = objects.get("1");
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        for (final var result : results) {
+            assertSame(results[0], result);
+        }
+    }
+
+    @Test
+    void processQueue_keepsReplacedReference() throws Throwable {
+        final var objects = new TestWeakKeyReferences();
+
+        // get one object, clear and enqueue the reference to it, then replace it
+        objects.get("1");
+        final var oldReference = (WeakKeyReference<?, ?>) getReferenceMethodHandle.invoke(objects, "1");
+        oldReference.clear();
+        final var object2 = objects.get("1");
+        oldReference.enqueue();
+
+        processQueueMethodHandle.invoke(objects);
+
+        assertEquals(1, objects.size());
+        assertSame(object2, objects.get("1"));
+    }
+
     @Test
     void processQueue_ignoresNonKeyReference() throws Throwable {
         final var objects = new TestWeakKeyReferences();
-        final var queue = getReferenceQueue(objects);
+        final var queue = getReferenceQueue(objects, "1");
         final var nonKeyReference = new WeakReference<>(new Object(), queue);
         nonKeyReference.enqueue();
 
@@ -121,6 +203,116 @@ class WeakKeyReferencesTest {
         assertNull(queue.poll());
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, WeakKeyReferences.MAX_CONCURRENCY_LEVEL + 1})
+    void constructor_invalidConcurrencyLevel(int concurrencyLevel) {
+        assertThrows(IllegalArgumentException.class, () -> new TestWeakKeyReferences(concurrencyLevel));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "2, 2", "3, 4", "16, 16", "17, 32"})
+    void constructor_concurrencyLevelIsRoundedUp(int concurrencyLevel, int expected) {
+        assertEquals(expected, new TestWeakKeyReferences(concurrencyLevel).getConcurrencyLevel());
+    }
+
+    @Test
+    void get_withConcurrencyLevel() {
+        final var objects = new TestWeakKeyReferences(16);
+
+        final var objectList = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final var object = objects.get(Integer.toString(i));
+            assertSame(object, objects.get(Integer.toString(i)));
+            objectList.add(object);
+        }
+
+        assertEquals(100, objects.size());
+
+        objectList.clear();
+        System.gc();
+        await().atMost(30, TimeUnit.SECONDS).until(() -> objects.size() == 0);
+    }
+
+    @Test
+    void get_removesAtMostCleanupLimit() throws Throwable {
+        final var objects = new TestWeakKeyReferences(TestWeakKeyReferences.settings(1, 2));
+
+        // create five objects, then clear and enqueue the references to them
+        for (int i = 0; i < 5; i++) {
+            objects.get(Integer.toString(i));
+        }
+        for (int i = 0; i < 5; i++) {
+            final var reference = (WeakKeyReference<?, ?>) getReferenceMethodHandle.invoke(objects, Integer.toString(i));
+            reference.clear();
+            reference.enqueue();
+        }
+
+        // each call to get only removes two cleared references
+        objects.get("a");
+        assertEquals(3, countReferences(objects, 5));
+        objects.get("a");
+        assertEquals(1, countReferences(objects, 5));
+
+        // size always removes all cleared references
+        assertEquals(1, objects.size());
+    }
+
+    @Test
+    void virtualThreadFriendly() throws Throwable {
+        final var settings = new Settings();
+        settings.virtualThreadFriendly = true;
+        settings.cleanupLimit = 2;
+        final var objects = new TestWeakKeyReferences(settings);
+
+        final var object1 = objects.get("1");
+        assertSame(object1, objects.get("1"));
+        assertNotSame(object1, objects.get("2"));
+
+        // replace the object for "1", the cleared reference must not remove the new one
+        final var oldReference = (WeakKeyReference<?, ?>) getReferenceMethodHandle.invoke(objects, "1");
+        oldReference.clear();
+        final var object2 = objects.get("1");
+        assertNotSame(object1, object2);
+        oldReference.enqueue();
+        assertEquals(2, objects.size());
+        assertSame(object2, objects.get("1"));
+
+        for (int i = 0; i < 5; i++) {
+            objects.get(Integer.toString(i));
+        }
+        for (int i = 2; i < 5; i++) {
+            final var reference = (WeakKeyReference<?, ?>) getReferenceMethodHandle.invoke(objects, Integer.toString(i));
+            reference.clear();
+            reference.enqueue();
+        }
+
+        // one call removes at most two references, size removes all of them
+        objects.get("a");
+        assertEquals(3, countReferences(objects, 5));
+        assertEquals(3, objects.size());
+        assertSame(object2, objects.get("1"));
+    }
+
+    @Test
+    void get_doesNotRemoveWhileCleanerIsRunning() throws Throwable {
+        try (final var cleaner = ReferenceCleaner.start(Duration.ofDays(1))) {
+            final var settings = new Settings();
+            settings.cleaner = cleaner;
+            final var objects = new TestWeakKeyReferences(settings);
+
+            objects.get("1");
+            final var reference = (WeakKeyReference<?, ?>) getReferenceMethodHandle.invoke(objects, "1");
+            reference.clear();
+            reference.enqueue();
+
+            objects.get("2");
+            assertSame(reference, getReferenceMethodHandle.invoke(objects, "1"));
+
+            cleaner.clean();
+            assertNull(getReferenceMethodHandle.invoke(objects, "1"));
+        }
+    }
+
     @Test
     void size() {
         final var objects = new TestWeakKeyReferences();